@@ -47,12 +47,17 @@ public class SpringSecurityConfig {
                         .requestMatchers("/webhooks/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/apartments/**").permitAll() // Guest može da vidi apartmane
                         .requestMatchers(HttpMethod.GET, "/apartments/available").permitAll() // Guest može da vidi apartmane
+                        .requestMatchers(HttpMethod.POST, "/apartments/check-availability/batch").permitAll()
                         .requestMatchers(HttpMethod.GET, "/reviews/**").permitAll()   // Guest može da čita reviews
                         .requestMatchers("/contact/**").permitAll()  // Contact forma
                         .requestMatchers("/about").permitAll()       // About Us stranica
                         .requestMatchers("/amenities").permitAll() // Amenities list
                         .requestMatchers("/reservations").permitAll()
                         .requestMatchers(HttpMethod.DELETE, "/reservations/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/reservations/export").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/reservations/owner/*/export").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/reservations/import").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/reservations/*/cancel").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/reservations/{id}").permitAll()
                         .requestMatchers(HttpMethod.POST, "/notifications/sendEmail").permitAll()
                         .requestMatchers(HttpMethod.POST, "/notifications/sendBookingEmail/**").permitAll()
@@ -80,6 +85,7 @@ public class SpringSecurityConfig {
                         .requestMatchers(HttpMethod.PUT, "/apartments/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/apartments/**").hasRole("ADMIN")
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/owners/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
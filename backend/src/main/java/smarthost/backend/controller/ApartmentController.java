@@ -9,16 +9,31 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.cloudinary.Cloudinary;
 
 import smarthost.backend.dto.ApartmentDto;
 import smarthost.backend.dto.ApartmentImageDto;
+import smarthost.backend.dto.AvailabilityCalendarDto;
+import smarthost.backend.dto.PriceQuoteDto;
+import smarthost.backend.dto.PriceRuleDto;
+import smarthost.backend.enums.ExportFormat;
+import smarthost.backend.exceptions.NotFoundException;
 import smarthost.backend.model.ApartmentImage;
+import smarthost.backend.requests.ApartmentSearchRequest;
+import smarthost.backend.requests.AvailabilityCheckRequest;
 import smarthost.backend.requests.CreateApartmentRequest;
+import smarthost.backend.requests.PriceRuleRequest;
 import smarthost.backend.model.Apartment;
 import smarthost.backend.requests.UpdateApartmentRequest;
+import smarthost.backend.response.ApartmentSearchResponse;
+import smarthost.backend.response.AvailabilityCheckResult;
 import smarthost.backend.services.ApartmentService;
+import smarthost.backend.services.ExportService;
+import smarthost.backend.services.PriceQuoteService;
+import smarthost.backend.services.PriceRuleService;
+import smarthost.backend.utils.ExportUtils;
 
 import java.time.LocalDate;
 import java.util.HashMap;
@@ -33,10 +48,17 @@ public class ApartmentController {
     private static final Logger logger = LoggerFactory.getLogger(ApartmentController.class);
 
     private final ApartmentService apartmentService;
+    private final ExportService exportService;
+    private final PriceQuoteService priceQuoteService;
+    private final PriceRuleService priceRuleService;
 
     @Autowired
-    public ApartmentController(ApartmentService apartmentService) {
+    public ApartmentController(ApartmentService apartmentService, ExportService exportService,
+                               PriceQuoteService priceQuoteService, PriceRuleService priceRuleService) {
         this.apartmentService = apartmentService;
+        this.exportService = exportService;
+        this.priceQuoteService = priceQuoteService;
+        this.priceRuleService = priceRuleService;
     }
 
     @GetMapping
@@ -45,6 +67,129 @@ public class ApartmentController {
         return ResponseEntity.ok(apartments);
     }
 
+    /**
+     * Filtered, keyset-paginated apartment search.
+     * Pass the returned nextCursor back as cursor to get the following page.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ApartmentSearchResponse> searchApartments(@ModelAttribute ApartmentSearchRequest request) {
+        try {
+            return ResponseEntity.ok(apartmentService.searchApartments(request));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid apartment search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Stream every apartment as NDJSON (default) or CSV (?format=csv)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportApartments(
+            @RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat = ExportUtils.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> exportService.exportApartments(exportFormat, out);
+        return ExportUtils.response(exportFormat, "apartments", body);
+    }
+
+    /**
+     * Availability calendars for several apartments at once, e.g. ?ids=1,2,3&from=2025-01-01&to=2025-07-01
+     */
+    @GetMapping("/calendar")
+    public ResponseEntity<List<AvailabilityCalendarDto>> getAvailabilityCalendars(
+            @RequestParam List<Long> ids,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(apartmentService.getAvailabilityCalendars(ids, from, to));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid calendar request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Run-length encoded availability of one apartment for [from, to), up to 18 months
+     */
+    @GetMapping("/{id}/calendar")
+    public ResponseEntity<AvailabilityCalendarDto> getAvailabilityCalendar(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(apartmentService.getAvailabilityCalendar(id, from, to));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid calendar request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Nightly breakdown and total price of a stay, the same figures a booking is checked against
+     */
+    @GetMapping("/{id}/quote")
+    public ResponseEntity<PriceQuoteDto> getPriceQuote(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkIn,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkOut,
+            @RequestParam(required = false) Integer guests) {
+        try {
+            return ResponseEntity.ok(priceQuoteService.quote(id, checkIn, checkOut, guests));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid quote request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{id}/price-rules")
+    public ResponseEntity<List<PriceRuleDto>> getPriceRules(@PathVariable Long id) {
+        return ResponseEntity.ok(priceRuleService.getPriceRules(id));
+    }
+
+    @PostMapping("/{id}/price-rules")
+    public ResponseEntity<PriceRuleDto> createPriceRule(@PathVariable Long id, @RequestBody PriceRuleRequest request) {
+        try {
+            return ResponseEntity.status(201).body(priceRuleService.createPriceRule(id, request));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid price rule: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PutMapping("/{id}/price-rules/{ruleId}")
+    public ResponseEntity<PriceRuleDto> updatePriceRule(
+            @PathVariable Long id,
+            @PathVariable Long ruleId,
+            @RequestBody PriceRuleRequest request) {
+        try {
+            return ResponseEntity.ok(priceRuleService.updatePriceRule(id, ruleId, request));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid price rule: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @DeleteMapping("/{id}/price-rules/{ruleId}")
+    public ResponseEntity<Void> deletePriceRule(@PathVariable Long id, @PathVariable Long ruleId) {
+        try {
+            priceRuleService.deletePriceRule(id, ruleId);
+            return ResponseEntity.noContent().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ApartmentDto> getApartmentById(@PathVariable Long id) {
         ApartmentDto apartment = apartmentService.getApartmentById(id);
@@ -150,23 +295,39 @@ public class ApartmentController {
         }
     }
 
+    /**
+     * Check availability for many (apartmentId, checkIn, checkOut) tuples in one call.
+     * Each result says whether the stay is available and, if not, why.
+     */
+    @PostMapping("/check-availability/batch")
+    public ResponseEntity<List<AvailabilityCheckResult>> checkAvailabilityBatch(
+            @RequestBody List<AvailabilityCheckRequest> checks) {
+        try {
+            return ResponseEntity.ok(apartmentService.checkAvailability(checks));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid availability batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Get all available apartments for given date range and number of guests
      * Optional apartmentId parameter - if provided and available, it will be shown
-     * first in results
+     * first in results; optional sort ("price" or "price_desc") orders the rest by stay total
      */
     @GetMapping("/available")
     public ResponseEntity<List<ApartmentDto>> getAvailableApartments(
             @RequestParam(name = "checkIn") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkin,
             @RequestParam(name = "checkOut") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkout,
             @RequestParam(name = "guests") Integer guests,
-            @RequestParam(name = "apartmentId", required = false) Long apartmentId) {
+            @RequestParam(name = "apartmentId", required = false) Long apartmentId,
+            @RequestParam(name = "sort", required = false) String sort) {
         try {
             // LocalDate checkInDate = LocalDate.parse(checkin);
             // LocalDate checkOutDate = LocalDate.parse(checkout);
 
             List<ApartmentDto> availableApartments = apartmentService.getAvailableApartments(checkin, checkout, guests,
-                    apartmentId);
+                    apartmentId, sort);
             System.out.println("AVAILABLE APARTMENTS: " + availableApartments);
             return ResponseEntity.ok(availableApartments);
         } catch (Exception e) {
@@ -0,0 +1,58 @@
+package smarthost.backend.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import smarthost.backend.dto.DailyRevenueDto;
+import smarthost.backend.dto.OwnerAnalyticsDto;
+import smarthost.backend.services.AnalyticsService;
+import smarthost.backend.services.FinanceService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/owners")
+@CrossOrigin(origins = "*")
+public class FinanceController {
+
+    private final FinanceService financeService;
+    private final AnalyticsService analyticsService;
+
+    public FinanceController(FinanceService financeService, AnalyticsService analyticsService) {
+        this.financeService = financeService;
+        this.analyticsService = analyticsService;
+    }
+
+    /**
+     * Daily income of an owner's apartments for [from, to), read from the pre-aggregated finance reports.
+     */
+    @GetMapping("/{ownerId}/revenue/daily")
+    public ResponseEntity<List<DailyRevenueDto>> getDailyRevenue(
+            @PathVariable Long ownerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(financeService.getDailyRevenue(ownerId, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Revenue, occupancy, ADR and RevPAR of an owner's apartments for [from, to), per apartment
+     * and in total, by day, week or month.
+     */
+    @GetMapping("/{ownerId}/analytics")
+    public ResponseEntity<OwnerAnalyticsDto> getAnalytics(
+            @PathVariable Long ownerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "month") String granularity) {
+        try {
+            return ResponseEntity.ok(analyticsService.getOwnerAnalytics(ownerId, from, to, granularity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -5,9 +5,19 @@ import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.enums.ExportFormat;
+import smarthost.backend.exceptions.IdempotencyKeyException;
+import smarthost.backend.exceptions.NotFoundException;
+import smarthost.backend.exceptions.PriceMismatchException;
 import smarthost.backend.model.Reservation;
 import smarthost.backend.requests.CreateReservationRequest;
+import smarthost.backend.requests.ImportReservationRequest;
+import smarthost.backend.response.ReservationImportResponse;
+import smarthost.backend.services.ExportService;
+import smarthost.backend.services.PaymentService;
+import smarthost.backend.utils.ExportUtils;
 import smarthost.backend.services.ReservationService;
 
 import java.util.List;
@@ -20,11 +30,46 @@ public class ReservationController {
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    /**
+     * Create a reservation. Clients may send an Idempotency-Key header to retry safely:
+     * a repeat with the same key and body returns the original reservation.
+     * A total that no longer matches the server's price gets a 409 with the current quote.
+     */
     @PostMapping
-    public ResponseEntity<ReservationDto> createReservation(
+    public ResponseEntity<?> createReservation(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody CreateReservationRequest request) throws StripeException {
-        ReservationDto reservation = reservationService.createReservation(request);
-        return ResponseEntity.status(201).body(reservation);
+        try {
+            ReservationDto reservation = reservationService.createReservation(request, idempotencyKey);
+            return ResponseEntity.status(201).body(reservation);
+        } catch (IdempotencyKeyException e) {
+            return ResponseEntity.status(e.getStatus()).build();
+        } catch (PriceMismatchException e) {
+            // The client should show the current quote before booking again
+            return ResponseEntity.status(409).body(e.getQuote());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Bulk-import reservations from another PMS (admin only). All rows are imported or none are.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ReservationImportResponse> importReservations(
+            @RequestBody List<ImportReservationRequest> reservations) {
+        try {
+            List<Long> ids = reservationService.importReservations(reservations);
+            return ResponseEntity.status(201).body(new ReservationImportResponse(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ReservationImportResponse.rejected(e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
@@ -46,6 +91,21 @@ public class ReservationController {
         }
     }
 
+    /**
+     * Cancel a confirmed stay (admin only); its income is removed from the finance reports.
+     */
+    @PutMapping("/{reservationId}/cancel")
+    public ResponseEntity<Void> cancelReservation(@PathVariable Long reservationId) {
+        try {
+            paymentService.cancelReservation(reservationId);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(409).build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/client/{clientId}")
     public ResponseEntity<List<ReservationDto>> getClientReservations(
             @PathVariable Long clientId) {
@@ -60,4 +120,32 @@ public class ReservationController {
         List<ReservationDto> reservations = reservationService.getReservationsByOwner(Long.valueOf(ownerId));
         return ResponseEntity.ok(reservations);
     }
-}
\ No newline at end of file
+
+    /**
+     * Stream every reservation as NDJSON (default) or CSV (?format=csv)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReservations(
+            @RequestParam(defaultValue = "ndjson") String format) {
+        return export(format, "reservations", null);
+    }
+
+    /**
+     * Stream the reservations of an owner's apartments as NDJSON (default) or CSV (?format=csv)
+     */
+    @GetMapping("/owner/{ownerId}/export")
+    public ResponseEntity<StreamingResponseBody> exportOwnerReservations(
+            @PathVariable Long ownerId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        return export(format, "reservations-owner-" + ownerId, ownerId);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String format, String fileName, Long ownerId) {
+        ExportFormat exportFormat = ExportUtils.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> exportService.exportReservations(ownerId, exportFormat, out);
+        return ExportUtils.response(exportFormat, fileName, body);
+    }
+}
@@ -5,8 +5,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import smarthost.backend.dto.RatingSummaryDto;
 import smarthost.backend.dto.ReviewDto;
+import smarthost.backend.dto.ReviewSearchHitDto;
+import smarthost.backend.exceptions.DuplicateReviewException;
+import smarthost.backend.exceptions.NotFoundException;
 import smarthost.backend.requests.CreateReviewRequest;
+import smarthost.backend.response.ReviewPageResponse;
+import smarthost.backend.services.RatingStatsService;
+import smarthost.backend.services.ReviewSearchService;
 import smarthost.backend.services.ReviewService;
 
 import java.util.List;
@@ -18,6 +25,12 @@ public class ReviewController {
 
     @Autowired
     private ReviewService reviewService;
+
+    @Autowired
+    private RatingStatsService ratingStatsService;
+
+    @Autowired
+    private ReviewSearchService reviewSearchService;
     
     @Autowired
     private smarthost.backend.repository.UserRepository userRepository;
@@ -27,6 +40,8 @@ public class ReviewController {
         try {
             ReviewDto dto = reviewService.createReview(request);
             return ResponseEntity.status(201).body(dto);
+        } catch (DuplicateReviewException e) {
+            return ResponseEntity.status(409).build();
         } catch (Exception e) {
             logger.error("Error creating review", e);
             return ResponseEntity.badRequest().build();
@@ -38,6 +53,32 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.getAll());
     }
 
+    /**
+     * Reviews a page at a time, sorted newest, highest or lowest; pass nextCursor back for the next page
+     */
+    @GetMapping("/page")
+    public ResponseEntity<ReviewPageResponse> getPage(@RequestParam(required = false) String sort,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String cursor) {
+        return page(null, null, sort, limit, cursor);
+    }
+
+    /**
+     * Reviews whose comments best match the keywords in q, best first, optionally only for some apartments
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<ReviewSearchHitDto>> search(@RequestParam(required = false) String q,
+                                                           @RequestParam(required = false) List<Long> apartmentIds,
+                                                           @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(reviewSearchService.search(q, apartmentIds, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ReviewDto> getById(@PathVariable Long id) {
         try {
@@ -52,11 +93,48 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.getByApartment(apartmentId));
     }
 
+    @GetMapping("/apartment/{apartmentId}/page")
+    public ResponseEntity<ReviewPageResponse> getApartmentPage(@PathVariable Long apartmentId,
+                                                               @RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(required = false) String cursor) {
+        return page(apartmentId, null, sort, limit, cursor);
+    }
+
+    /**
+     * Review count, average rating and rating histogram of an apartment, without loading its reviews
+     */
+    @GetMapping("/apartment/{apartmentId}/summary")
+    public ResponseEntity<RatingSummaryDto> getApartmentSummary(@PathVariable Long apartmentId) {
+        try {
+            return ResponseEntity.ok(ratingStatsService.getSummary(apartmentId));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/client/{clientId}")
     public ResponseEntity<List<ReviewDto>> getByClient(@PathVariable Long clientId) {
         return ResponseEntity.ok(reviewService.getByClient(clientId));
     }
 
+    @GetMapping("/client/{clientId}/page")
+    public ResponseEntity<ReviewPageResponse> getClientPage(@PathVariable Long clientId,
+                                                            @RequestParam(required = false) String sort,
+                                                            @RequestParam(required = false) Integer limit,
+                                                            @RequestParam(required = false) String cursor) {
+        return page(null, clientId, sort, limit, cursor);
+    }
+
+    private ResponseEntity<ReviewPageResponse> page(Long apartmentId, Long clientId, String sort,
+                                                    Integer limit, String cursor) {
+        try {
+            return ResponseEntity.ok(reviewService.getPage(apartmentId, clientId, sort, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/unreviewed")
     public ResponseEntity<List<smarthost.backend.dto.UnreviewedReservationDto>> getUnreviewedForCurrentUser() {
         try {
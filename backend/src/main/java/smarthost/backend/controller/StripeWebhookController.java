@@ -2,86 +2,50 @@ package smarthost.backend.controller;
 
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
-import com.stripe.model.checkout.Session;
 import com.stripe.net.Webhook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import smarthost.backend.services.PaymentService;
+import smarthost.backend.services.StripeEventService;
 
 @RestController
 @RequestMapping("/webhooks")
 public class StripeWebhookController {
 
+    private static final Logger logger = LoggerFactory.getLogger(StripeWebhookController.class);
+
     @Value("${stripe.webhook.secret}")
     private String webhookSecret;
 
     @Autowired
-    private PaymentService paymentService;
+    private StripeEventService stripeEventService;
 
+    /**
+     * Verify and store the event, then acknowledge; processing happens on the event workers,
+     * so Stripe never waits on (or retries because of) our payment handling.
+     */
     @PostMapping("/stripe")
     public ResponseEntity<String> handleStripeWebhook(
             @RequestBody String payload,
             @RequestHeader("Stripe-Signature") String sigHeader) {
-
-        System.out.println("========================================");
-        System.out.println("WEBHOOK RECEIVED!");
-        System.out.println("========================================");
-
+        Event event;
         try {
-            Event event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
-
-            System.out.println("Event Type: " + event.getType());
-
-            if ("checkout.session.completed".equals(event.getType())) {
-                com.google.gson.JsonParser parser = new com.google.gson.JsonParser();
-                com.google.gson.JsonObject eventJson = parser.parse(payload).getAsJsonObject();
-                com.google.gson.JsonObject data = eventJson.getAsJsonObject("data");
-                com.google.gson.JsonObject object = data.getAsJsonObject("object");
-                String sessionId = object.get("id").getAsString();
-
-                // Retrieve the full session from Stripe API
-                Session session = Session.retrieve(sessionId);
-                String reservationId = session.getMetadata().get("reservationId");
-
-                if (reservationId == null || reservationId.isEmpty()) {
-                    System.err.println("ERROR: reservationId not found in metadata!");
-                    System.err.println("Available metadata keys: " + session.getMetadata().keySet());
-                    return ResponseEntity.status(400).body("Missing reservationId in metadata");
-                }
-
-                switch (event.getType()) {
-                    case "checkout.session.completed":
-                        System.out.println("Payment successful for reservation: " + reservationId);
-                        paymentService.handleSuccessfulPayment(
-                                Long.parseLong(reservationId),
-                                session.getId(),
-                                session.getPaymentIntent()
-                        );
-                        break;
-
-                    case "checkout.session.expired":
-                        System.out.println("Session expired, deleting reservation: " + reservationId);
-                        paymentService.deleteReservation(Long.parseLong(reservationId));
-                        break;
-
-                    default:
-                        System.out.println("Unhandled event type: " + event.getType());
-                }
-
-            }
-
-            return ResponseEntity.ok("Webhook received");
-
+            event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
         } catch (SignatureVerificationException e) {
-            System.err.println("WEBHOOK SIGNATURE VERIFICATION FAILED!");
-            e.printStackTrace();
+            logger.warn("Stripe webhook signature verification failed: {}", e.getMessage());
             return ResponseEntity.badRequest().body("Invalid signature");
-        } catch (Exception e) {
-            System.err.println("WEBHOOK ERROR!");
-            e.printStackTrace();
+        }
+
+        try {
+            boolean accepted = stripeEventService.ingest(event, payload);
+            return ResponseEntity.ok(accepted ? "Webhook received" : "Duplicate event");
+        } catch (RuntimeException e) {
+            // Not stored, so let Stripe deliver it again
+            logger.error("Could not store Stripe event {}", event.getId(), e);
             return ResponseEntity.status(500).body("Webhook error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Revenue figures for [start, end): occupancy rate is nights sold over available nights (0 to 1),
+ * ADR is revenue per night sold and RevPAR revenue per available night.
+ */
+@Data
+public class AnalyticsPeriodDto {
+    private LocalDate start;
+    private LocalDate end;
+    private BigDecimal revenue;
+    private long nightsSold;
+    private long availableNights;
+    private BigDecimal occupancyRate;
+    private BigDecimal adr;
+    private BigDecimal revPar;
+
+    public LocalDate getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDate start) {
+        this.start = start;
+    }
+
+    public LocalDate getEnd() {
+        return end;
+    }
+
+    public void setEnd(LocalDate end) {
+        this.end = end;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    public long getNightsSold() {
+        return nightsSold;
+    }
+
+    public void setNightsSold(long nightsSold) {
+        this.nightsSold = nightsSold;
+    }
+
+    public long getAvailableNights() {
+        return availableNights;
+    }
+
+    public void setAvailableNights(long availableNights) {
+        this.availableNights = availableNights;
+    }
+
+    public BigDecimal getOccupancyRate() {
+        return occupancyRate;
+    }
+
+    public void setOccupancyRate(BigDecimal occupancyRate) {
+        this.occupancyRate = occupancyRate;
+    }
+
+    public BigDecimal getAdr() {
+        return adr;
+    }
+
+    public void setAdr(BigDecimal adr) {
+        this.adr = adr;
+    }
+
+    public BigDecimal getRevPar() {
+        return revPar;
+    }
+
+    public void setRevPar(BigDecimal revPar) {
+        this.revPar = revPar;
+    }
+}
@@ -0,0 +1,45 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ApartmentAnalyticsDto {
+    private Long apartmentId;
+    private String apartmentName;
+    private AnalyticsPeriodDto summary;
+    private List<AnalyticsPeriodDto> periods;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public String getApartmentName() {
+        return apartmentName;
+    }
+
+    public void setApartmentName(String apartmentName) {
+        this.apartmentName = apartmentName;
+    }
+
+    public AnalyticsPeriodDto getSummary() {
+        return summary;
+    }
+
+    public void setSummary(AnalyticsPeriodDto summary) {
+        this.summary = summary;
+    }
+
+    public List<AnalyticsPeriodDto> getPeriods() {
+        return periods;
+    }
+
+    public void setPeriods(List<AnalyticsPeriodDto> periods) {
+        this.periods = periods;
+    }
+}
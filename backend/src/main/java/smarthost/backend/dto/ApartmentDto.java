@@ -28,6 +28,11 @@ public class ApartmentDto {
     private LocalDateTime createdAt;
     private List<ApartmentImageDto> images;
     private List<AmenityDto> amenities;
+    // Total for the searched stay, set only when the search had dates
+    private BigDecimal stayTotal;
+    // From the precomputed rating aggregates; averageRating is null without reviews
+    private BigDecimal averageRating;
+    private Integer reviewCount;
 
 
     public Long getId() {
@@ -157,4 +162,28 @@ public class ApartmentDto {
     public void setAmenities(List<AmenityDto> amenities) {
         this.amenities = amenities;
     }
-}
\ No newline at end of file
+
+    public BigDecimal getStayTotal() {
+        return stayTotal;
+    }
+
+    public void setStayTotal(BigDecimal stayTotal) {
+        this.stayTotal = stayTotal;
+    }
+
+    public BigDecimal getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(BigDecimal averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public Integer getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(Integer reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+}
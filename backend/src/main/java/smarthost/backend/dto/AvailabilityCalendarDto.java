@@ -0,0 +1,50 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Per-day availability of one apartment for [from, to), run-length encoded:
+ * consecutive days with the same availability are collapsed into one run.
+ */
+@Data
+public class AvailabilityCalendarDto {
+    private Long apartmentId;
+    private LocalDate from;
+    private LocalDate to;
+    private List<AvailabilityRunDto> runs;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public List<AvailabilityRunDto> getRuns() {
+        return runs;
+    }
+
+    public void setRuns(List<AvailabilityRunDto> runs) {
+        this.runs = runs;
+    }
+}
@@ -0,0 +1,39 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * A run of consecutive nights starting on {@code start} that are all free or all booked.
+ */
+@Data
+public class AvailabilityRunDto {
+    private LocalDate start;
+    private Integer nights;
+    private Boolean available;
+
+    public LocalDate getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDate start) {
+        this.start = start;
+    }
+
+    public Integer getNights() {
+        return nights;
+    }
+
+    public void setNights(Integer nights) {
+        this.nights = nights;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,36 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+public class DailyRevenueDto {
+    private LocalDate date;
+    private BigDecimal income;
+
+    public DailyRevenueDto() {
+    }
+
+    public DailyRevenueDto(LocalDate date, BigDecimal income) {
+        this.date = date;
+        this.income = income;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public BigDecimal getIncome() {
+        return income;
+    }
+
+    public void setIncome(BigDecimal income) {
+        this.income = income;
+    }
+}
@@ -0,0 +1,39 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Price of the night starting on date.
+ */
+@Data
+public class NightlyPriceDto {
+    private LocalDate date;
+    private BigDecimal price;
+
+    public NightlyPriceDto() {
+    }
+
+    public NightlyPriceDto(LocalDate date, BigDecimal price) {
+        this.date = date;
+        this.price = price;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+}
@@ -0,0 +1,74 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+import smarthost.backend.enums.AnalyticsGranularity;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class OwnerAnalyticsDto {
+    private Long ownerId;
+    private LocalDate from;
+    private LocalDate to;
+    private AnalyticsGranularity granularity;
+    private AnalyticsPeriodDto summary;
+    private List<AnalyticsPeriodDto> periods;
+    private List<ApartmentAnalyticsDto> apartments;
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public AnalyticsGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(AnalyticsGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public AnalyticsPeriodDto getSummary() {
+        return summary;
+    }
+
+    public void setSummary(AnalyticsPeriodDto summary) {
+        this.summary = summary;
+    }
+
+    public List<AnalyticsPeriodDto> getPeriods() {
+        return periods;
+    }
+
+    public void setPeriods(List<AnalyticsPeriodDto> periods) {
+        this.periods = periods;
+    }
+
+    public List<ApartmentAnalyticsDto> getApartments() {
+        return apartments;
+    }
+
+    public void setApartments(List<ApartmentAnalyticsDto> apartments) {
+        this.apartments = apartments;
+    }
+}
@@ -0,0 +1,77 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Server-side price of a stay: one entry per night and their sum.
+ */
+@Data
+public class PriceQuoteDto {
+    private Long apartmentId;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+    private Integer guests;
+    private int nights;
+    private List<NightlyPriceDto> nightly;
+    private BigDecimal total;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public void setCheckIn(LocalDate checkIn) {
+        this.checkIn = checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public void setCheckOut(LocalDate checkOut) {
+        this.checkOut = checkOut;
+    }
+
+    public Integer getGuests() {
+        return guests;
+    }
+
+    public void setGuests(Integer guests) {
+        this.guests = guests;
+    }
+
+    public int getNights() {
+        return nights;
+    }
+
+    public void setNights(int nights) {
+        this.nights = nights;
+    }
+
+    public List<NightlyPriceDto> getNightly() {
+        return nightly;
+    }
+
+    public void setNightly(List<NightlyPriceDto> nightly) {
+        this.nightly = nightly;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+}
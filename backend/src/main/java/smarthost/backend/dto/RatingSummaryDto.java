@@ -0,0 +1,50 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Rating aggregates of an apartment: average (null without reviews) and the number of reviews per
+ * rating from 1 to 5.
+ */
+@Data
+public class RatingSummaryDto {
+    private Long apartmentId;
+    private int reviewCount;
+    private BigDecimal averageRating;
+    private Map<Integer, Integer> ratingCounts;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(int reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+
+    public BigDecimal getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(BigDecimal averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public Map<Integer, Integer> getRatingCounts() {
+        return ratingCounts;
+    }
+
+    public void setRatingCounts(Map<Integer, Integer> ratingCounts) {
+        this.ratingCounts = ratingCounts;
+    }
+}
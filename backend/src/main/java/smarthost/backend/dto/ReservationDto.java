@@ -23,6 +23,41 @@ public class ReservationDto {
     // Nested DTOs
     private GuestInformationDto guestInformation;
 
+    public ReservationDto() {
+    }
+
+    /**
+     * Flat constructor for JPQL constructor expressions: reservation columns followed by the
+     * columns of the LEFT JOINed guest information, which are all null when there is none.
+     */
+    public ReservationDto(Long id, Long clientId, Long apartmentId, LocalDate checkIn, LocalDate checkOut,
+                          Integer guests, BigDecimal totalPrice, ReservationStatus status, String accessCode,
+                          String specialRequest, LocalDateTime createdAt,
+                          String guestFirstName, String guestLastName, String guestEmail, String guestPhone,
+                          String guestAddress, String guestCity, String guestCountry) {
+        this.id = id;
+        this.clientId = clientId;
+        this.apartmentId = apartmentId;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.guests = guests;
+        this.totalPrice = totalPrice;
+        this.status = status;
+        this.accessCode = accessCode;
+        this.specialRequest = specialRequest;
+        this.createdAt = createdAt;
+        if (guestFirstName != null) {
+            GuestInformationDto guest = new GuestInformationDto();
+            guest.setFirstName(guestFirstName);
+            guest.setLastName(guestLastName);
+            guest.setEmail(guestEmail);
+            guest.setPhone(guestPhone);
+            guest.setAddress(guestAddress);
+            guest.setCity(guestCity);
+            guest.setCountry(guestCountry);
+            this.guestInformation = guest;
+        }
+    }
 
     public Long getId() {
         return id;
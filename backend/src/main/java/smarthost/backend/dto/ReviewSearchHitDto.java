@@ -0,0 +1,28 @@
+package smarthost.backend.dto;
+
+import lombok.Data;
+
+/**
+ * A review matching a search, with its BM25 relevance score (higher is better).
+ */
+@Data
+public class ReviewSearchHitDto {
+    private double score;
+    private ReviewDto review;
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public ReviewDto getReview() {
+        return review;
+    }
+
+    public void setReview(ReviewDto review) {
+        this.review = review;
+    }
+}
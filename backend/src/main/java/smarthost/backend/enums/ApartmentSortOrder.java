@@ -0,0 +1,7 @@
+package smarthost.backend.enums;
+
+public enum ApartmentSortOrder {
+    PRICE_ASC,
+    PRICE_DESC,
+    NEWEST
+}
@@ -0,0 +1,6 @@
+package smarthost.backend.enums;
+
+public enum ExportFormat {
+    NDJSON,
+    CSV
+}
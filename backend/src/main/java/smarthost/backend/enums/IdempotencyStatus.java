@@ -0,0 +1,6 @@
+package smarthost.backend.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
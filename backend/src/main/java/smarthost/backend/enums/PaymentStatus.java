@@ -3,5 +3,7 @@ package smarthost.backend.enums;
 public enum PaymentStatus {
     PENDING,
     PAID,
-    FAILED
+    FAILED,
+    // Paid after the hold lapsed and its nights were rebooked; the guest must be refunded
+    REFUND_REQUIRED
 }
@@ -0,0 +1,7 @@
+package smarthost.backend.enums;
+
+public enum ReviewSortOrder {
+    NEWEST,
+    HIGHEST,
+    LOWEST
+}
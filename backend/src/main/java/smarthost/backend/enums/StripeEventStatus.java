@@ -0,0 +1,9 @@
+package smarthost.backend.enums;
+
+public enum StripeEventStatus {
+    RECEIVED,
+    PROCESSING,
+    PROCESSED,
+    IGNORED,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package smarthost.backend.enums;
+
+public enum UnavailabilityReason {
+    INVALID_DATES,
+    PAST_DATES,
+    APARTMENT_NOT_FOUND,
+    BOOKED
+}
@@ -0,0 +1,11 @@
+package smarthost.backend.exceptions;
+
+/**
+ * The reservation already has a review; each reservation can be reviewed once.
+ */
+public class DuplicateReviewException extends RuntimeException {
+
+    public DuplicateReviewException(Long reservationId) {
+        super("A review for reservation " + reservationId + " already exists");
+    }
+}
@@ -0,0 +1,19 @@
+package smarthost.backend.exceptions;
+
+/**
+ * An Idempotency-Key that cannot be honoured: still in use by its first request (409),
+ * reused with a different payload (422) or malformed (400).
+ */
+public class IdempotencyKeyException extends RuntimeException {
+
+    private final int status;
+
+    public IdempotencyKeyException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,11 @@
+package smarthost.backend.exceptions;
+
+/**
+ * The requested apartment, price rule or reservation does not exist.
+ */
+public class NotFoundException extends RuntimeException {
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
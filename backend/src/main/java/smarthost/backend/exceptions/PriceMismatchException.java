@@ -0,0 +1,30 @@
+package smarthost.backend.exceptions;
+
+import smarthost.backend.dto.PriceQuoteDto;
+
+import java.math.BigDecimal;
+
+/**
+ * The total a client sent for a booking differs from the server's quote, e.g. because it was
+ * computed before a price rule changed.
+ */
+public class PriceMismatchException extends RuntimeException {
+
+    private final PriceQuoteDto quote;
+
+    public PriceMismatchException(BigDecimal submittedTotal, PriceQuoteDto quote) {
+        super("Submitted total " + submittedTotal + " does not match quoted total " + quote.getTotal());
+        this.quote = quote;
+    }
+
+    /**
+     * The server's current quote, for the client to show before booking again.
+     */
+    public PriceQuoteDto getQuote() {
+        return quote;
+    }
+
+    public BigDecimal getQuotedTotal() {
+        return quote.getTotal();
+    }
+}
@@ -4,10 +4,12 @@ import org.springframework.stereotype.Component;
 import smarthost.backend.dto.AmenityDto;
 import smarthost.backend.dto.ApartmentDto;
 import smarthost.backend.dto.ApartmentImageDto;
+import smarthost.backend.dto.PriceRuleDto;
 import smarthost.backend.enums.ApartmentStatus;
 import smarthost.backend.model.Amenity;
 import smarthost.backend.model.Apartment;
 import smarthost.backend.model.ApartmentImage;
+import smarthost.backend.model.PriceRule;
 import smarthost.backend.requests.CreateApartmentRequest;
 import smarthost.backend.requests.UpdateApartmentRequest;
 
@@ -36,6 +38,10 @@ public class ApartmentMapper {
     }
 
     public ApartmentDto mapToDto(Apartment apartment, List<ApartmentImage> images) {
+        return mapToDto(apartment, images, apartment.getAmenities());
+    }
+
+    public ApartmentDto mapToDto(Apartment apartment, List<ApartmentImage> images, List<Amenity> amenities) {
         ApartmentDto dto = new ApartmentDto();
         dto.setId(apartment.getId());
         dto.setOwnerId(apartment.getOwnerId());
@@ -52,7 +58,7 @@ public class ApartmentMapper {
         dto.setStatus(apartment.getStatus());
         dto.setCreatedAt(apartment.getCreatedAt());
         dto.setImages(images.stream().map(this::mapImageToDto).collect(Collectors.toList()));
-        dto.setAmenities(apartment.getAmenities().stream().map(this::mapAmenityToDto).collect(Collectors.toList()));
+        dto.setAmenities(amenities.stream().map(this::mapAmenityToDto).collect(Collectors.toList()));
         return dto;
     }
 
@@ -72,6 +78,18 @@ public class ApartmentMapper {
         return dto;
     }
 
+    public PriceRuleDto mapToPriceRuleDto(PriceRule rule) {
+        PriceRuleDto dto = new PriceRuleDto();
+        dto.setId(rule.getId());
+        dto.setApartmentId(rule.getApartmentId());
+        dto.setRuleName(rule.getRuleName());
+        dto.setStartDate(rule.getStartDate());
+        dto.setEndDate(rule.getEndDate());
+        dto.setDayOfWeek(rule.getDayOfWeek());
+        dto.setPercentage(rule.getPercentage());
+        return dto;
+    }
+
     public void updateApartmentFromRequest(Apartment apartment, UpdateApartmentRequest request) {
         apartment.setName(request.getName());
         apartment.setDescription(request.getDescription());
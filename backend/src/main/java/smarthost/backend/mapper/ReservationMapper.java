@@ -7,10 +7,28 @@ import smarthost.backend.enums.ReservationStatus;
 import smarthost.backend.model.GuestInformation;
 import smarthost.backend.model.Reservation;
 import smarthost.backend.requests.CreateReservationRequest;
+import smarthost.backend.requests.ImportReservationRequest;
 
 @Component
 public class ReservationMapper {
 
+    /**
+     * Map an imported reservation to a Reservation entity; status defaults to CONFIRMED
+     */
+    public Reservation mapToReservation(ImportReservationRequest request) {
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(request.getApartmentId());
+        reservation.setClientId(request.getClientId());
+        reservation.setCheckIn(request.getCheckIn());
+        reservation.setCheckOut(request.getCheckOut());
+        reservation.setGuests(request.getGuests());
+        reservation.setTotalPrice(request.getTotalPrice());
+        reservation.setSpecialRequest(request.getSpecialRequest());
+        reservation.setAccessCode(request.getAccessCode());
+        reservation.setStatus(request.getStatus() != null ? request.getStatus() : ReservationStatus.CONFIRMED);
+        return reservation;
+    }
+
     /**
      * Map CreateReservationRequest to Reservation entity
      */
@@ -11,7 +11,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "apartments")
+@Table(name = "apartments", indexes = {
+        // Keyset pagination for apartment search: (sort key, id), optionally behind an equality filter
+        @Index(name = "idx_apartments_price_id", columnList = "base_price, id"),
+        @Index(name = "idx_apartments_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_apartments_city_price_id", columnList = "city, base_price, id"),
+        @Index(name = "idx_apartments_status_price_id", columnList = "status, base_price, id")
+})
 @Data
 public class Apartment {
 
@@ -0,0 +1,103 @@
+package smarthost.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Review count, rating sum and rating histogram of one apartment, kept in step with the reviews
+ * table so listings can show ratings without loading reviews.
+ */
+@Entity
+@Table(name = "apartment_rating_stats")
+@Data
+public class ApartmentRatingStats {
+
+    @Id
+    @Column(name = "apartment_id")
+    private Long apartmentId;
+
+    @Column(name = "review_count", nullable = false)
+    private Integer reviewCount = 0;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "rating_1", nullable = false)
+    private Integer rating1 = 0;
+
+    @Column(name = "rating_2", nullable = false)
+    private Integer rating2 = 0;
+
+    @Column(name = "rating_3", nullable = false)
+    private Integer rating3 = 0;
+
+    @Column(name = "rating_4", nullable = false)
+    private Integer rating4 = 0;
+
+    @Column(name = "rating_5", nullable = false)
+    private Integer rating5 = 0;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public Integer getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(Integer reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+
+    public Long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(Long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Integer getRating1() {
+        return rating1;
+    }
+
+    public void setRating1(Integer rating1) {
+        this.rating1 = rating1;
+    }
+
+    public Integer getRating2() {
+        return rating2;
+    }
+
+    public void setRating2(Integer rating2) {
+        this.rating2 = rating2;
+    }
+
+    public Integer getRating3() {
+        return rating3;
+    }
+
+    public void setRating3(Integer rating3) {
+        this.rating3 = rating3;
+    }
+
+    public Integer getRating4() {
+        return rating4;
+    }
+
+    public void setRating4(Integer rating4) {
+        this.rating4 = rating4;
+    }
+
+    public Integer getRating5() {
+        return rating5;
+    }
+
+    public void setRating5(Integer rating5) {
+        this.rating5 = rating5;
+    }
+}
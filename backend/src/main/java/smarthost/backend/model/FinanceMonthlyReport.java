@@ -0,0 +1,41 @@
+package smarthost.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Income and nights sold of one apartment for one calendar month, the sum of its
+ * {@link FinanceReport} rows. Written alongside them by {@link smarthost.backend.services.FinanceService}.
+ */
+@Entity
+@Table(name = "finance_monthly_reports", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_finance_monthly_reports_apartment_month", columnNames = {"apartment_id", "report_month"})
+})
+@Data
+public class FinanceMonthlyReport {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "apartment_id", nullable = false)
+    private Long apartmentId;
+
+    // First day of the month
+    @Column(name = "report_month", nullable = false)
+    private LocalDate reportMonth;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal income;
+
+    @Column(name = "nights_sold", nullable = false)
+    private Integer nightsSold;
+
+    // Relationships
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "apartment_id", insertable = false, updatable = false)
+    private Apartment apartment;
+}
@@ -6,8 +6,15 @@ import lombok.Data;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+/**
+ * Income and nights sold of one apartment for one night: the daily level of the revenue rollups,
+ * summed per month into {@link FinanceMonthlyReport}. Kept up to date by
+ * {@link smarthost.backend.services.FinanceService}.
+ */
 @Entity
-@Table(name = "finance_reports")
+@Table(name = "finance_reports", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_finance_reports_apartment_date", columnNames = {"apartment_id", "report_date"})
+})
 @Data
 public class FinanceReport {
 
@@ -24,6 +31,9 @@ public class FinanceReport {
     @Column(name = "daily_income", nullable = false, precision = 10, scale = 2)
     private BigDecimal dailyIncome;
 
+    @Column(name = "nights_sold", nullable = false)
+    private Integer nightsSold;
+
     // Relationships
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "apartment_id", insertable = false, updatable = false)
@@ -2,14 +2,19 @@ package smarthost.backend.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import smarthost.backend.utils.IdGenerators;
 
 @Entity
 @Table(name = "guest_information")
 @Data
 public class GuestInformation {
 
+    // Pooled table ids instead of IDENTITY so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "guest_information_ids")
+    @TableGenerator(name = "guest_information_ids", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.NAME_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.GUEST_INFORMATION, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "reservation_id", nullable = false)
@@ -0,0 +1,95 @@
+package smarthost.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Effective price of one night of one apartment, materialized from its base price and price rules
+ * so stay totals are a range sum over the primary key.
+ */
+@Entity
+@Table(name = "price_calendar", indexes = {
+        @Index(name = "idx_price_calendar_stay_date", columnList = "stay_date")
+})
+@IdClass(PriceCalendarDay.Key.class)
+@Data
+public class PriceCalendarDay {
+
+    @Id
+    @Column(name = "apartment_id")
+    private Long apartmentId;
+
+    @Id
+    @Column(name = "stay_date")
+    private LocalDate stayDate;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal price;
+
+    public PriceCalendarDay() {
+    }
+
+    public PriceCalendarDay(Long apartmentId, LocalDate stayDate, BigDecimal price) {
+        this.apartmentId = apartmentId;
+        this.stayDate = stayDate;
+        this.price = price;
+    }
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public LocalDate getStayDate() {
+        return stayDate;
+    }
+
+    public void setStayDate(LocalDate stayDate) {
+        this.stayDate = stayDate;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public static class Key implements Serializable {
+        private Long apartmentId;
+        private LocalDate stayDate;
+
+        public Key() {
+        }
+
+        public Key(Long apartmentId, LocalDate stayDate) {
+            this.apartmentId = apartmentId;
+            this.stayDate = stayDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(apartmentId, key.apartmentId) && Objects.equals(stayDate, key.stayDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apartmentId, stayDate);
+        }
+    }
+}
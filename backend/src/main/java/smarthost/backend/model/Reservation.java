@@ -2,6 +2,7 @@ package smarthost.backend.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import smarthost.backend.utils.IdGenerators;
 import smarthost.backend.enums.ReservationStatus;
 import org.hibernate.annotations.CreationTimestamp;
 
@@ -15,8 +16,12 @@ import java.util.List;
 @Data
 public class Reservation {
 
+    // Pooled table ids instead of IDENTITY so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "reservation_ids")
+    @TableGenerator(name = "reservation_ids", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.NAME_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.RESERVATIONS, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "client_id")
@@ -50,6 +55,13 @@ public class Reservation {
     @Column(name = "special_request", length = 300)
     private String specialRequest;
 
+    @Column(name = "stripe_session_id")
+    private String stripeSessionId;
+
+    // End of a PENDING hold's lease; null once confirmed
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -207,4 +219,20 @@ public class Reservation {
     public void setCancellationToken(String cancellationToken) {
         this.cancellationToken = cancellationToken;
     }
-}
\ No newline at end of file
+
+    public String getStripeSessionId() {
+        return stripeSessionId;
+    }
+
+    public void setStripeSessionId(String stripeSessionId) {
+        this.stripeSessionId = stripeSessionId;
+    }
+
+    public LocalDateTime getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+
+    public void setHoldExpiresAt(LocalDateTime holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+}
@@ -8,10 +8,21 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reviews")
+@Table(name = "reviews", uniqueConstraints = {
+        // One review per reservation, enforced on insert rather than checked first
+        @UniqueConstraint(name = Review.UK_RESERVATION, columnNames = "reservation_id")
+}, indexes = {
+        // Keyset pages of review listings
+        @Index(name = "idx_reviews_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_reviews_apartment_created_id", columnList = "apartment_id, created_at, id"),
+        @Index(name = "idx_reviews_apartment_rating_created_id", columnList = "apartment_id, rating, created_at, id"),
+        @Index(name = "idx_reviews_client_created_id", columnList = "client_id, created_at, id")
+})
 @Data
 public class Review {
 
+    public static final String UK_RESERVATION = "uk_reviews_reservation";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -0,0 +1,37 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.model.ApartmentRatingStats;
+
+@Repository
+public interface ApartmentRatingStatsRepository extends JpaRepository<ApartmentRatingStats, Long> {
+
+    /**
+     * Count one more review with the given rating, in a single statement.
+     *
+     * @return 0 if the apartment has no stats row yet
+     */
+    @Modifying
+    @Query("UPDATE ApartmentRatingStats s SET s.reviewCount = s.reviewCount + 1, s.ratingSum = s.ratingSum + :rating, " +
+            "s.rating1 = s.rating1 + CASE WHEN :rating = 1 THEN 1 ELSE 0 END, " +
+            "s.rating2 = s.rating2 + CASE WHEN :rating = 2 THEN 1 ELSE 0 END, " +
+            "s.rating3 = s.rating3 + CASE WHEN :rating = 3 THEN 1 ELSE 0 END, " +
+            "s.rating4 = s.rating4 + CASE WHEN :rating = 4 THEN 1 ELSE 0 END, " +
+            "s.rating5 = s.rating5 + CASE WHEN :rating = 5 THEN 1 ELSE 0 END " +
+            "WHERE s.apartmentId = :apartmentId")
+    int addRating(@Param("apartmentId") Long apartmentId, @Param("rating") int rating);
+
+    /**
+     * Create an empty stats row unless one exists; safe against a concurrent insert.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO apartment_rating_stats " +
+            "(apartment_id, review_count, rating_sum, rating_1, rating_2, rating_3, rating_4, rating_5) " +
+            "VALUES (:apartmentId, 0, 0, 0, 0, 0, 0, 0) ON DUPLICATE KEY UPDATE apartment_id = apartment_id",
+            nativeQuery = true)
+    int insertEmpty(@Param("apartmentId") Long apartmentId);
+}
@@ -1,16 +1,85 @@
 package smarthost.backend.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import smarthost.backend.enums.ReservationStatus;
 import smarthost.backend.model.Apartment;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
+public interface ApartmentRepository extends JpaRepository<Apartment, Long>, ApartmentRepositoryCustom {
     List<Apartment> findByOwnerId(Long ownerId);
+
+    @Query("SELECT a.id FROM Apartment a")
+    List<Long> findAllIds();
+
+    /**
+     * Load the apartment and lock its row until the transaction ends (SELECT ... FOR UPDATE).
+     * Used to serialize bookings of the same apartment across application instances.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Apartment a WHERE a.id = :id")
+    Optional<Apartment> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Lock several apartments at once, in id order so concurrent callers cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Apartment a WHERE a.id IN :ids ORDER BY a.id")
+    List<Apartment> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * All apartments in id order, fetched from the driver in batches for exports.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM Apartment a ORDER BY a.id")
+    Stream<Apartment> streamAll();
+
+    /**
+     * Amenity join rows for the given apartments as [apartmentId, Amenity] pairs,
+     * so listings can attach amenities without touching each lazy collection.
+     */
+    @Query("SELECT a.id, am FROM Apartment a JOIN a.amenities am WHERE a.id IN :apartmentIds")
+    List<Object[]> findAmenitiesByApartmentIds(@Param("apartmentIds") Collection<Long> apartmentIds);
+
+    /**
+     * Every apartment-amenity link as [apartmentId, amenityId] pairs, for the amenity index.
+     */
+    @Query("SELECT a.id, am.id FROM Apartment a JOIN a.amenities am")
+    List<Object[]> findAllAmenityLinks();
+
+    /**
+     * Blocking stays overlapping [from, to) for the given apartments as
+     * [apartmentId, checkIn, checkOut, reservationId] rows. Apartments without such stays still yield one row with null dates, so a single query
+     * also tells which of the IDs exist.
+     */
+    @Query("SELECT a.id, r.checkIn, r.checkOut, r.id FROM Apartment a " +
+           "LEFT JOIN Reservation r ON r.apartmentId = a.id AND r.status IN :statuses " +
+           "AND " + ReservationRepository.LIVE_HOLD + " AND r.checkOut > :from AND r.checkIn < :to " +
+           "WHERE a.id IN :apartmentIds")
+    List<Object[]> findStaysByApartmentIdsInRange(
+            @Param("apartmentIds") Collection<Long> apartmentIds,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
     
     /**
      * Find apartments by IDs that can accommodate the specified number of guests
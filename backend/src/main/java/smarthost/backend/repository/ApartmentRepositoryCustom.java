@@ -0,0 +1,21 @@
+package smarthost.backend.repository;
+
+import smarthost.backend.enums.ApartmentSortOrder;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.requests.ApartmentSearchRequest;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ApartmentRepositoryCustom {
+
+    /**
+     * One keyset page of apartments matching the filters, ordered by the sort key and id.
+     *
+     * @param amenityMatches apartments already known to have every requested amenity, or null to
+     *                       check the requested amenities in SQL
+     * @param after position of the last row of the previous page, or null for the first page
+     */
+    List<Apartment> search(ApartmentSearchRequest filters, Collection<Long> amenityMatches,
+                           ApartmentSortOrder sort, ApartmentSearchCursor after, int limit);
+}
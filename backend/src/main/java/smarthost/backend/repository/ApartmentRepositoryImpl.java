@@ -0,0 +1,187 @@
+package smarthost.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import smarthost.backend.enums.ApartmentSortOrder;
+import smarthost.backend.model.Amenity;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.model.PriceCalendarDay;
+import smarthost.backend.requests.ApartmentSearchRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class ApartmentRepositoryImpl implements ApartmentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Apartment> search(ApartmentSearchRequest filters, Collection<Long> amenityMatches,
+                                  ApartmentSortOrder sort, ApartmentSearchCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Apartment> query = cb.createQuery(Apartment.class);
+        Root<Apartment> apartment = query.from(Apartment.class);
+
+        List<Predicate> predicates = filterPredicates(cb, query, apartment, filters, amenityMatches);
+        if (after != null) {
+            predicates.add(seekPredicate(cb, query, apartment, filters, sort, after));
+        }
+
+        Path<Long> id = apartment.get("id");
+        List<Order> order = new ArrayList<>();
+        switch (sort) {
+            case PRICE_DESC -> {
+                order.add(cb.desc(priceKey(cb, query, apartment, filters)));
+                order.add(cb.desc(id));
+            }
+            case NEWEST -> {
+                order.add(cb.desc(apartment.get("createdAt")));
+                order.add(cb.desc(id));
+            }
+            default -> {
+                order.add(cb.asc(priceKey(cb, query, apartment, filters)));
+                order.add(cb.asc(id));
+            }
+        }
+
+        query.select(apartment)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(order);
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, CriteriaQuery<?> query,
+                                             Root<Apartment> apartment, ApartmentSearchRequest filters,
+                                             Collection<Long> amenityMatches) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filters.getCity() != null && !filters.getCity().isBlank()) {
+            predicates.add(cb.equal(apartment.get("city"), filters.getCity().trim()));
+        }
+        if (filters.getStatus() != null) {
+            predicates.add(cb.equal(apartment.get("status"), filters.getStatus()));
+        }
+        if (filters.getMinBedrooms() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(apartment.get("bedrooms"), filters.getMinBedrooms()));
+        }
+        if (filters.getMinBathrooms() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(apartment.get("bathrooms"), filters.getMinBathrooms()));
+        }
+        if (filters.getMinSizeM2() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(apartment.get("sizeM2"), filters.getMinSizeM2()));
+        }
+        if (filters.getMaxSizeM2() != null) {
+            predicates.add(cb.lessThanOrEqualTo(apartment.get("sizeM2"), filters.getMaxSizeM2()));
+        }
+        if (filters.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(apartment.get("basePrice"), filters.getMinPrice()));
+        }
+        if (filters.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(apartment.get("basePrice"), filters.getMaxPrice()));
+        }
+        if (hasStay(filters)) {
+            // Only apartments whose calendar prices every night of the stay
+            Subquery<Long> nights = query.subquery(Long.class);
+            Root<PriceCalendarDay> night = nights.from(PriceCalendarDay.class);
+            nights.select(cb.count(night)).where(stayNights(cb, night, apartment, filters));
+            predicates.add(cb.equal(nights, ChronoUnit.DAYS.between(filters.getCheckIn(), filters.getCheckOut())));
+            if (filters.getMinTotal() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(stayTotal(cb, query, apartment, filters), filters.getMinTotal()));
+            }
+            if (filters.getMaxTotal() != null) {
+                predicates.add(cb.lessThanOrEqualTo(stayTotal(cb, query, apartment, filters), filters.getMaxTotal()));
+            }
+        }
+        if (amenityMatches != null) {
+            predicates.add(apartment.get("id").in(amenityMatches));
+        } else if (filters.getAmenityIds() != null) {
+            // One EXISTS per required amenity: the apartment must have all of them
+            for (Long amenityId : filters.getAmenityIds()) {
+                Subquery<Long> hasAmenity = query.subquery(Long.class);
+                Root<Apartment> correlated = hasAmenity.correlate(apartment);
+                Join<Apartment, Amenity> amenity = correlated.join("amenities");
+                hasAmenity.select(amenity.get("id")).where(cb.equal(amenity.get("id"), amenityId));
+                predicates.add(cb.exists(hasAmenity));
+            }
+        }
+        return predicates;
+    }
+
+    private static boolean hasStay(ApartmentSearchRequest filters) {
+        return filters.getCheckIn() != null && filters.getCheckOut() != null;
+    }
+
+    /**
+     * Sort key of the price orders: the stay total when the search has dates, else the base price.
+     */
+    private Expression<BigDecimal> priceKey(CriteriaBuilder cb, CriteriaQuery<?> query,
+                                            Root<Apartment> apartment, ApartmentSearchRequest filters) {
+        return hasStay(filters) ? stayTotal(cb, query, apartment, filters) : apartment.get("basePrice");
+    }
+
+    /**
+     * Range sum of the apartment's price calendar over the stay's nights.
+     */
+    private Subquery<BigDecimal> stayTotal(CriteriaBuilder cb, CriteriaQuery<?> query,
+                                           Root<Apartment> apartment, ApartmentSearchRequest filters) {
+        Subquery<BigDecimal> total = query.subquery(BigDecimal.class);
+        Root<PriceCalendarDay> night = total.from(PriceCalendarDay.class);
+        total.select(cb.sum(night.get("price"))).where(stayNights(cb, night, apartment, filters));
+        return total;
+    }
+
+    private Predicate stayNights(CriteriaBuilder cb, Root<PriceCalendarDay> night,
+                                 Root<Apartment> apartment, ApartmentSearchRequest filters) {
+        return cb.and(
+                cb.equal(night.get("apartmentId"), apartment.get("id")),
+                cb.greaterThanOrEqualTo(night.get("stayDate"), filters.getCheckIn()),
+                cb.lessThan(night.get("stayDate"), filters.getCheckOut()));
+    }
+
+    /**
+     * Rows strictly after the cursor in the page order: (key, id) > (cursorKey, cursorId),
+     * flipped for descending orders.
+     */
+    private Predicate seekPredicate(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Apartment> apartment,
+                                    ApartmentSearchRequest filters, ApartmentSortOrder sort,
+                                    ApartmentSearchCursor after) {
+        Path<Long> id = apartment.get("id");
+        BigDecimal priceAfter = hasStay(filters) ? after.getStayTotal() : after.getBasePrice();
+        switch (sort) {
+            case PRICE_DESC -> {
+                return cb.or(
+                        cb.lessThan(priceKey(cb, query, apartment, filters), priceAfter),
+                        cb.and(cb.equal(priceKey(cb, query, apartment, filters), priceAfter),
+                                cb.lessThan(id, after.getId())));
+            }
+            case NEWEST -> {
+                Path<LocalDateTime> createdAt = apartment.get("createdAt");
+                return cb.or(
+                        cb.lessThan(createdAt, after.getCreatedAt()),
+                        cb.and(cb.equal(createdAt, after.getCreatedAt()), cb.lessThan(id, after.getId())));
+            }
+            default -> {
+                return cb.or(
+                        cb.greaterThan(priceKey(cb, query, apartment, filters), priceAfter),
+                        cb.and(cb.equal(priceKey(cb, query, apartment, filters), priceAfter),
+                                cb.greaterThan(id, after.getId())));
+            }
+        }
+    }
+}
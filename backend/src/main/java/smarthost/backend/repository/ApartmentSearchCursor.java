@@ -0,0 +1,111 @@
+package smarthost.backend.repository;
+
+import smarthost.backend.enums.ApartmentSortOrder;
+import smarthost.backend.model.Apartment;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position of the last apartment on a search page: the sort key plus the id as tie-breaker.
+ * For a search with dates the price key is the stay total, and the cursor is bound to those dates.
+ * Travels to clients as an opaque URL-safe string.
+ */
+public class ApartmentSearchCursor {
+
+    private final ApartmentSortOrder sort;
+    private final BigDecimal basePrice;
+    private final LocalDateTime createdAt;
+    private final Long id;
+    private final BigDecimal stayTotal;
+    private final LocalDate checkIn;
+    private final LocalDate checkOut;
+
+    private ApartmentSearchCursor(ApartmentSortOrder sort, BigDecimal basePrice, LocalDateTime createdAt, Long id,
+                                  BigDecimal stayTotal, LocalDate checkIn, LocalDate checkOut) {
+        this.sort = sort;
+        this.basePrice = basePrice;
+        this.createdAt = createdAt;
+        this.id = id;
+        this.stayTotal = stayTotal;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+    }
+
+    /**
+     * Position after an apartment on a page of a search for [checkIn, checkOut), or of a search
+     * without dates when checkIn is null.
+     */
+    public static ApartmentSearchCursor after(ApartmentSortOrder sort, Apartment apartment, BigDecimal stayTotal,
+                                              LocalDate checkIn, LocalDate checkOut) {
+        return new ApartmentSearchCursor(sort, apartment.getBasePrice(), apartment.getCreatedAt(), apartment.getId(),
+                stayTotal, checkIn, checkOut);
+    }
+
+    public String encode() {
+        String key;
+        if (sort == ApartmentSortOrder.NEWEST) {
+            key = createdAt.toString();
+        } else {
+            key = (checkIn != null ? stayTotal : basePrice).toPlainString();
+        }
+        String raw = sort.name() + "|" + key + "|" + id;
+        if (checkIn != null) {
+            raw += "|" + checkIn + "|" + checkOut;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode()} for the same sort order and stay dates.
+     */
+    public static ApartmentSearchCursor decode(String cursor, ApartmentSortOrder expectedSort,
+                                               LocalDate checkIn, LocalDate checkOut) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            ApartmentSortOrder sort = ApartmentSortOrder.valueOf(parts[0]);
+            if (sort != expectedSort) {
+                throw new IllegalArgumentException("Cursor was issued for a different sort order");
+            }
+            boolean dated = parts.length == 5
+                    && LocalDate.parse(parts[3]).equals(checkIn) && LocalDate.parse(parts[4]).equals(checkOut);
+            if (checkIn != null ? !dated : parts.length != 3) {
+                throw new IllegalArgumentException("Cursor was issued for a different stay");
+            }
+            Long id = Long.valueOf(parts[2]);
+            if (sort == ApartmentSortOrder.NEWEST) {
+                return new ApartmentSearchCursor(sort, null, LocalDateTime.parse(parts[1]), id, null, checkIn, checkOut);
+            }
+            BigDecimal key = new BigDecimal(parts[1]);
+            return checkIn != null
+                    ? new ApartmentSearchCursor(sort, null, null, id, key, checkIn, checkOut)
+                    : new ApartmentSearchCursor(sort, key, null, id, null, null, null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid search cursor", e);
+        }
+    }
+
+    public ApartmentSortOrder getSort() {
+        return sort;
+    }
+
+    public BigDecimal getBasePrice() {
+        return basePrice;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public BigDecimal getStayTotal() {
+        return stayTotal;
+    }
+}
@@ -0,0 +1,27 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.model.FinanceMonthlyReport;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FinanceMonthlyReportRepository extends JpaRepository<FinanceMonthlyReport, Long> {
+
+    @Query("SELECT m FROM FinanceMonthlyReport m WHERE m.reportMonth >= :from AND m.reportMonth < :to")
+    List<FinanceMonthlyReport> findInRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Monthly rollups of an owner's apartments, as [apartmentId, reportMonth, income, nightsSold] rows.
+     */
+    @Query("SELECT m.apartmentId, m.reportMonth, m.income, m.nightsSold FROM FinanceMonthlyReport m " +
+            "JOIN Apartment a ON a.id = m.apartmentId " +
+            "WHERE a.ownerId = :ownerId AND m.reportMonth >= :from AND m.reportMonth < :to")
+    List<Object[]> findByOwner(@Param("ownerId") Long ownerId,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to);
+}
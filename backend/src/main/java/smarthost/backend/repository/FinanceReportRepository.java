@@ -0,0 +1,37 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.model.FinanceReport;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FinanceReportRepository extends JpaRepository<FinanceReport, Long> {
+
+    @Query("SELECT f FROM FinanceReport f WHERE f.reportDate >= :from AND f.reportDate < :to")
+    List<FinanceReport> findInRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Daily rows of an owner's apartments, as [apartmentId, reportDate, dailyIncome, nightsSold] rows.
+     */
+    @Query("SELECT f.apartmentId, f.reportDate, f.dailyIncome, f.nightsSold FROM FinanceReport f " +
+            "JOIN Apartment a ON a.id = f.apartmentId " +
+            "WHERE a.ownerId = :ownerId AND f.reportDate >= :from AND f.reportDate < :to")
+    List<Object[]> findByOwner(@Param("ownerId") Long ownerId,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to);
+
+    /**
+     * Income of all of an owner's apartments per day, as [reportDate, income] rows in date order.
+     */
+    @Query("SELECT f.reportDate, SUM(f.dailyIncome) FROM FinanceReport f JOIN Apartment a ON a.id = f.apartmentId " +
+            "WHERE a.ownerId = :ownerId AND f.reportDate >= :from AND f.reportDate < :to " +
+            "GROUP BY f.reportDate ORDER BY f.reportDate")
+    List<Object[]> sumDailyIncomeByOwner(@Param("ownerId") Long ownerId,
+                                         @Param("from") LocalDate from,
+                                         @Param("to") LocalDate to);
+}
@@ -0,0 +1,77 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.enums.IdempotencyStatus;
+import smarthost.backend.model.IdempotencyKey;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // Guest requests have no client id; they only match other guest requests
+    String SAME_CLIENT = "((k.clientId IS NULL AND :clientId IS NULL) OR k.clientId = :clientId)";
+
+    /**
+     * Claim a key with a plain INSERT, so two requests racing on the same key (on any node)
+     * end with exactly one winner and one duplicate-key error.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, client_id, request_hash, status, created_at, expires_at) " +
+                   "VALUES (:key, :clientId, :requestHash, 'IN_PROGRESS', :now, :expiresAt)", nativeQuery = true)
+    int insertClaim(
+            @Param("key") String key,
+            @Param("clientId") Long clientId,
+            @Param("requestHash") String requestHash,
+            @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Take over a key whose record has expired, or whose first request (by the same client)
+     * died without finishing.
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.clientId = :clientId, k.requestHash = :requestHash, k.status = :inProgress, " +
+           "k.reservationId = null, k.responseBody = null, k.createdAt = :now, k.expiresAt = :expiresAt " +
+           "WHERE k.idempotencyKey = :key AND (k.expiresAt <= :now OR (k.status = :inProgress " +
+           "AND k.createdAt < :abandonedBefore AND " + SAME_CLIENT + "))")
+    int reclaim(
+            @Param("key") String key,
+            @Param("clientId") Long clientId,
+            @Param("requestHash") String requestHash,
+            @Param("inProgress") IdempotencyStatus inProgress,
+            @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt,
+            @Param("abandonedBefore") LocalDateTime abandonedBefore);
+
+    /**
+     * Store the outcome, only if the key is still held by the claim made at claimedAt: once a
+     * retry has reclaimed an abandoned key, the original request can no longer complete it.
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.status = :completed, k.reservationId = :reservationId, " +
+           "k.responseBody = :responseBody " +
+           "WHERE k.idempotencyKey = :key AND k.status = :inProgress AND k.createdAt = :claimedAt")
+    int complete(
+            @Param("key") String key,
+            @Param("inProgress") IdempotencyStatus inProgress,
+            @Param("claimedAt") LocalDateTime claimedAt,
+            @Param("completed") IdempotencyStatus completed,
+            @Param("reservationId") Long reservationId,
+            @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k " +
+           "WHERE k.idempotencyKey = :key AND k.status = :inProgress AND k.createdAt = :claimedAt")
+    int deleteInProgress(@Param("key") String key,
+                         @Param("inProgress") IdempotencyStatus inProgress,
+                         @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
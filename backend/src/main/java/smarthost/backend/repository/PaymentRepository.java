@@ -2,8 +2,11 @@ package smarthost.backend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import smarthost.backend.enums.PaymentStatus;
 import smarthost.backend.model.Payment;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
+
+    boolean existsByReservationIdAndStatus(Long reservationId, PaymentStatus status);
 }
@@ -0,0 +1,47 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.model.PriceCalendarDay;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PriceCalendarRepository extends JpaRepository<PriceCalendarDay, PriceCalendarDay.Key> {
+
+    @Query("SELECT p FROM PriceCalendarDay p " +
+            "WHERE p.apartmentId = :apartmentId AND p.stayDate >= :from AND p.stayDate < :to")
+    List<PriceCalendarDay> findRange(@Param("apartmentId") Long apartmentId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+
+    /**
+     * Stay totals for [from, to) as [apartmentId, total, nights] rows; nights falls short of the
+     * stay length when part of it is not in the calendar.
+     */
+    @Query("SELECT p.apartmentId, SUM(p.price), COUNT(p) FROM PriceCalendarDay p " +
+            "WHERE p.apartmentId IN :apartmentIds AND p.stayDate >= :from AND p.stayDate < :to " +
+            "GROUP BY p.apartmentId")
+    List<Object[]> sumStays(@Param("apartmentIds") Collection<Long> apartmentIds,
+                            @Param("from") LocalDate from,
+                            @Param("to") LocalDate to);
+
+    /**
+     * Last materialized night per apartment, as [apartmentId, stayDate] rows.
+     */
+    @Query("SELECT p.apartmentId, MAX(p.stayDate) FROM PriceCalendarDay p GROUP BY p.apartmentId")
+    List<Object[]> findLastDays();
+
+    @Modifying
+    @Query("DELETE FROM PriceCalendarDay p WHERE p.stayDate < :before")
+    int deleteBefore(@Param("before") LocalDate before);
+
+    @Modifying
+    @Query("DELETE FROM PriceCalendarDay p WHERE p.apartmentId = :apartmentId")
+    int deleteByApartmentId(@Param("apartmentId") Long apartmentId);
+}
@@ -0,0 +1,28 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.model.PriceRule;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PriceRuleRepository extends JpaRepository<PriceRule, Long> {
+    List<PriceRule> findByApartmentIdOrderById(Long apartmentId);
+
+    Optional<PriceRule> findByIdAndApartmentId(Long id, Long apartmentId);
+
+    /**
+     * Rules of the given apartments that cover at least one night of [from, to).
+     */
+    @Query("SELECT r FROM PriceRule r WHERE r.apartmentId IN :apartmentIds " +
+            "AND (r.startDate IS NULL OR r.startDate < :to) AND (r.endDate IS NULL OR r.endDate >= :from)")
+    List<PriceRule> findCovering(@Param("apartmentIds") Collection<Long> apartmentIds,
+                                 @Param("from") LocalDate from,
+                                 @Param("to") LocalDate to);
+}
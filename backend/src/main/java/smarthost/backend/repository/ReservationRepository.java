@@ -1,51 +1,230 @@
 package smarthost.backend.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import smarthost.backend.model.Reservation;
+import smarthost.backend.dto.ReservationDto;
 import smarthost.backend.enums.ReservationStatus;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
-    
-    List<Reservation> findByApartmentId(Long apartmentId);
-    
-    List<Reservation> findByClientId(Long clientId);
+
+    /**
+     * Condition keeping only stays that still block their dates: confirmed reservations have no
+     * expiry, PENDING holds only until their lease runs out. Queries using it bind :now.
+     */
+    String LIVE_HOLD = "(r.holdExpiresAt IS NULL OR r.holdExpiresAt > :now)";
     
     /**
-     * Check if apartment is available for the given date range.
-     * Returns any existing reservations that overlap with the requested dates.
+     * Whether any reservation with one of the given statuses overlaps the date range,
+     * without loading the reservations themselves.
      */
-    @Query("SELECT r FROM Reservation r WHERE r.apartmentId = :apartmentId " +
-           "AND r.status IN :statuses " +
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM Reservation r " +
+           "WHERE r.apartmentId = :apartmentId " +
+           "AND r.status IN :statuses AND " + LIVE_HOLD + " " +
            "AND NOT (r.checkOut <= :checkIn OR r.checkIn >= :checkOut)")
-    List<Reservation> findOverlappingReservations(
+    boolean existsOverlappingReservation(
             @Param("apartmentId") Long apartmentId,
             @Param("checkIn") LocalDate checkIn,
             @Param("checkOut") LocalDate checkOut,
-            @Param("statuses") List<ReservationStatus> statuses);
-    
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
     /**
      * Find all apartments that are available for the given date range.
      * Returns apartment IDs that have no conflicting reservations.
      */
     @Query("SELECT DISTINCT a.id FROM Apartment a WHERE a.id NOT IN " +
            "(SELECT r.apartmentId FROM Reservation r WHERE " +
-           "r.status IN :statuses AND " +
+           "r.status IN :statuses AND " + LIVE_HOLD + " AND " +
            "NOT (r.checkOut <= :checkIn OR r.checkIn >= :checkOut))")
     List<Long> findAvailableApartmentIds(
             @Param("checkIn") LocalDate checkIn,
             @Param("checkOut") LocalDate checkOut,
-            @Param("statuses") List<ReservationStatus> statuses);
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Stays with one of the given statuses that overlap [from, to), projected for in-memory indexes.
+     */
+    @Query("SELECT r.id AS id, r.apartmentId AS apartmentId, r.checkIn AS checkIn, " +
+           "r.checkOut AS checkOut, r.status AS status, r.holdExpiresAt AS holdExpiresAt FROM Reservation r " +
+           "WHERE r.status IN :statuses AND " + LIVE_HOLD + " AND r.checkOut > :from AND r.checkIn < :to")
+    List<ReservationSpan> findSpansInRange(
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Stays with one of the given statuses that end after the given day.
+     */
+    @Query("SELECT r.id AS id, r.apartmentId AS apartmentId, r.checkIn AS checkIn, " +
+           "r.checkOut AS checkOut, r.status AS status, r.holdExpiresAt AS holdExpiresAt FROM Reservation r " +
+           "WHERE r.status IN :statuses AND " + LIVE_HOLD + " AND r.checkOut > :from")
+    List<ReservationSpan> findSpansEndingAfter(
+            @Param("from") LocalDate from,
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
+    @Query("SELECT r.id AS id, r.apartmentId AS apartmentId, r.checkIn AS checkIn, " +
+           "r.checkOut AS checkOut, r.status AS status, r.holdExpiresAt AS holdExpiresAt FROM Reservation r " +
+           "WHERE r.apartmentId = :apartmentId AND r.status IN :statuses AND " + LIVE_HOLD + " " +
+           "AND r.checkOut > :from")
+    List<ReservationSpan> findSpansByApartmentEndingAfter(
+            @Param("apartmentId") Long apartmentId,
+            @Param("from") LocalDate from,
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Number of stays per apartment that end after the given day, as [apartmentId, count] rows.
+     */
+    @Query("SELECT r.apartmentId, COUNT(r) FROM Reservation r " +
+           "WHERE r.status IN :statuses AND " + LIVE_HOLD + " AND r.checkOut > :from GROUP BY r.apartmentId")
+    List<Object[]> countSpansEndingAfterByApartment(
+            @Param("from") LocalDate from,
+            @Param("statuses") List<ReservationStatus> statuses,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Oldest expired PENDING holds first, one batch at a time for the sweeper.
+     */
+    @Query("SELECT r.id FROM Reservation r WHERE r.status = :pending AND r.holdExpiresAt <= :now " +
+           "ORDER BY r.holdExpiresAt")
+    List<Long> findExpiredHoldIds(
+            @Param("pending") ReservationStatus pending,
+            @Param("now") LocalDateTime now,
+            Pageable page);
+
+    /**
+     * Cancel the given holds in one statement, skipping any that were confirmed or
+     * extended since they were selected.
+     */
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :cancelled " +
+           "WHERE r.id IN :ids AND r.status = :pending AND r.holdExpiresAt <= :now")
+    int expireHolds(
+            @Param("ids") List<Long> ids,
+            @Param("pending") ReservationStatus pending,
+            @Param("cancelled") ReservationStatus cancelled,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Give PENDING reservations created before hold leases existed an expiry.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Reservation r SET r.holdExpiresAt = :expiresAt " +
+           "WHERE r.status = :pending AND r.holdExpiresAt IS NULL")
+    int leaseUnexpiringHolds(
+            @Param("pending") ReservationStatus pending,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.id = :id")
+    Optional<Reservation> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Lock the given reservations that still have the status, so a concurrent payment
+     * confirmation cannot change them until the caller's transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids AND r.status = :status ORDER BY r.id")
+    List<Reservation> findByIdInAndStatusForUpdate(@Param("ids") Collection<Long> ids,
+                                                   @Param("status") ReservationStatus status);
+
+    /**
+     * Bulk removal of released holds: children first, since these statements bypass JPA cascades.
+     */
+    @Modifying
+    @Query("DELETE FROM GuestInformation g WHERE g.reservationId IN :ids")
+    int deleteGuestInformationByReservationIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Payment p WHERE p.reservationId IN :ids")
+    int deletePaymentsByReservationIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.id IN :ids AND r.status = :status")
+    int deleteByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") ReservationStatus status);
+
+    @Modifying
+    @Query("UPDATE Reservation r SET r.stripeSessionId = :sessionId WHERE r.id = :id")
+    int attachStripeSession(@Param("id") Long id, @Param("sessionId") String sessionId);
+
+    @Query("SELECT r.clientId FROM Reservation r WHERE r.id = :id")
+    Optional<Long> findClientIdById(@Param("id") Long id);
+
+    @Query("SELECT r.apartmentId FROM Reservation r WHERE r.id = :id")
+    Optional<Long> findApartmentIdById(@Param("id") Long id);
+
+    /**
+     * Stays of the given status overlapping [from, to), as [apartmentId, checkIn, checkOut, totalPrice] rows.
+     */
+    @Query("SELECT r.apartmentId, r.checkIn, r.checkOut, r.totalPrice FROM Reservation r " +
+            "WHERE r.status = :status AND r.checkOut > :from AND r.checkIn < :to")
+    List<Object[]> findIncomeInRange(@Param("status") ReservationStatus status,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+
+    /**
+     * Select clause building ReservationDto rows straight from columns, with guest information
+     * taken from a single LEFT JOIN instead of a lazy load per reservation.
+     */
+    String RESERVATION_DTO_SELECT = "SELECT new smarthost.backend.dto.ReservationDto(" +
+            "r.id, r.clientId, r.apartmentId, r.checkIn, r.checkOut, r.guests, r.totalPrice, r.status, " +
+            "r.accessCode, r.specialRequest, r.createdAt, " +
+            "g.firstName, g.lastName, g.email, g.phone, g.address, g.city, g.country) " +
+            "FROM Reservation r LEFT JOIN GuestInformation g ON g.reservationId = r.id ";
+
+    @Query(RESERVATION_DTO_SELECT)
+    List<ReservationDto> findAllDtos();
+
+    @Query(RESERVATION_DTO_SELECT + "WHERE r.clientId = :clientId")
+    List<ReservationDto> findDtosByClientId(@Param("clientId") Long clientId);
+
+    @Query(RESERVATION_DTO_SELECT + "WHERE r.apartmentId = :apartmentId")
+    List<ReservationDto> findDtosByApartmentId(@Param("apartmentId") Long apartmentId);
+
+    @Query(RESERVATION_DTO_SELECT + "JOIN Apartment a ON r.apartmentId = a.id WHERE a.ownerId = :ownerId")
+    List<ReservationDto> findDtosByApartmentOwnerId(@Param("ownerId") Long ownerId);
+
+    /**
+     * Streaming variants for exports: rows are fetched from the driver in batches and never
+     * become managed entities, so memory stays flat whatever the row count.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RESERVATION_DTO_SELECT + "ORDER BY r.id")
+    Stream<ReservationDto> streamAllDtos();
 
-    // findByApartmentOwnerId
-    @Query("SELECT r FROM Reservation r JOIN Apartment a ON r.apartmentId = a.id WHERE a.ownerId = :ownerId")
-    List<Reservation> findByApartmentOwnerId(@Param("ownerId") Long ownerId);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RESERVATION_DTO_SELECT + "JOIN Apartment a ON r.apartmentId = a.id WHERE a.ownerId = :ownerId ORDER BY r.id")
+    Stream<ReservationDto> streamDtosByApartmentOwnerId(@Param("ownerId") Long ownerId);
 
     /**
      * Find confirmed reservations for a client that are in the past and don't have a review yet
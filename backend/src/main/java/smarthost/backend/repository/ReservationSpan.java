@@ -0,0 +1,24 @@
+package smarthost.backend.repository;
+
+import smarthost.backend.enums.ReservationStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of a reservation's stay, used to build in-memory indexes
+ * without hydrating full Reservation entities.
+ */
+public interface ReservationSpan {
+    Long getId();
+
+    Long getApartmentId();
+
+    LocalDate getCheckIn();
+
+    LocalDate getCheckOut();
+
+    ReservationStatus getStatus();
+
+    LocalDateTime getHoldExpiresAt();
+}
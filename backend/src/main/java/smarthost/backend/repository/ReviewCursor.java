@@ -0,0 +1,70 @@
+package smarthost.backend.repository;
+
+import smarthost.backend.enums.ReviewSortOrder;
+import smarthost.backend.model.Review;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position of the last review on a page: (createdAt, id), preceded by the rating when
+ * sorting by rating. Travels to clients as an opaque URL-safe string.
+ */
+public class ReviewCursor {
+
+    private final ReviewSortOrder sort;
+    private final Integer rating;
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    private ReviewCursor(ReviewSortOrder sort, Integer rating, LocalDateTime createdAt, Long id) {
+        this.sort = sort;
+        this.rating = rating;
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static ReviewCursor after(ReviewSortOrder sort, Review review) {
+        return new ReviewCursor(sort, review.getRating(), review.getCreatedAt(), review.getId());
+    }
+
+    public String encode() {
+        String raw = sort.name() + "|" + (sort == ReviewSortOrder.NEWEST ? "" : rating) + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode()} for the same sort order.
+     */
+    public static ReviewCursor decode(String cursor, ReviewSortOrder expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            ReviewSortOrder sort = ReviewSortOrder.valueOf(parts[0]);
+            if (sort != expectedSort) {
+                throw new IllegalArgumentException("Cursor was issued for a different sort order");
+            }
+            Integer rating = sort == ReviewSortOrder.NEWEST ? null : Integer.valueOf(parts[1]);
+            return new ReviewCursor(sort, rating, LocalDateTime.parse(parts[2]), Long.valueOf(parts[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid review cursor", e);
+        }
+    }
+
+    public ReviewSortOrder getSort() {
+        return sort;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
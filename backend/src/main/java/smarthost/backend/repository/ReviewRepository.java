@@ -1,14 +1,52 @@
 package smarthost.backend.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import smarthost.backend.model.Review;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ReviewRepository extends JpaRepository<Review, Long> {
+public interface ReviewRepository extends JpaRepository<Review, Long>, ReviewRepositoryCustom {
+
+	@Override
+	@EntityGraph(attributePaths = {"reservation", "reservation.guestInformation", "reservation.review", "apartment", "client"})
+	List<Review> findAll();
+
+	@EntityGraph(attributePaths = {"reservation", "reservation.guestInformation", "reservation.review", "apartment", "client"})
 	List<Review> findByApartmentId(Long apartmentId);
+
+	@EntityGraph(attributePaths = {"reservation", "reservation.guestInformation", "reservation.review", "apartment", "client"})
 	List<Review> findByClientId(Long clientId);
+
 	Review findByReservationId(Long reservationId);
 
+	/**
+	 * A review with everything its DTO shows (reservation, guest information, apartment and client)
+	 * in one joined query.
+	 */
+	@EntityGraph(attributePaths = {"reservation", "reservation.guestInformation", "reservation.review", "apartment", "client"})
+	Optional<Review> findWithDetailsById(Long id);
+
+	@EntityGraph(attributePaths = {"reservation", "reservation.guestInformation", "reservation.review", "apartment", "client"})
+	List<Review> findWithDetailsByIdIn(Collection<Long> ids);
+
+	/**
+	 * Comments of reviews with an id above the given one, as [id, apartmentId, comment] rows in id
+	 * order, for walking the table a batch at a time.
+	 */
+	@Query("SELECT r.id, r.apartmentId, r.comment FROM Review r WHERE r.id > :afterId AND r.comment IS NOT NULL ORDER BY r.id")
+	List<Object[]> findCommentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+	/**
+	 * Review counts per apartment and rating, as [apartmentId, rating, count] rows.
+	 */
+	@Query("SELECT r.apartmentId, r.rating, COUNT(r) FROM Review r WHERE r.rating IS NOT NULL GROUP BY r.apartmentId, r.rating")
+	List<Object[]> countByApartmentAndRating();
+
 }
@@ -0,0 +1,19 @@
+package smarthost.backend.repository;
+
+import smarthost.backend.enums.ReviewSortOrder;
+import smarthost.backend.model.Review;
+
+import java.util.List;
+
+public interface ReviewRepositoryCustom {
+
+    /**
+     * One keyset page of reviews, with the reservation, guest information, apartment and client
+     * fetched in the same query.
+     *
+     * @param apartmentId only this apartment's reviews, or null for any
+     * @param clientId    only this client's reviews, or null for any
+     * @param after       position of the last row of the previous page, or null for the first page
+     */
+    List<Review> findPage(Long apartmentId, Long clientId, ReviewSortOrder sort, ReviewCursor after, int limit);
+}
@@ -0,0 +1,92 @@
+package smarthost.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import smarthost.backend.enums.ReviewSortOrder;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.model.Review;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReviewRepositoryImpl implements ReviewRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Review> findPage(Long apartmentId, Long clientId, ReviewSortOrder sort, ReviewCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Review> query = cb.createQuery(Review.class);
+        Root<Review> review = query.from(Review.class);
+
+        // To-one associations only, so the row limit still applies in SQL
+        Fetch<Review, Reservation> reservation = review.fetch("reservation", JoinType.LEFT);
+        reservation.fetch("guestInformation", JoinType.LEFT);
+        reservation.fetch("review", JoinType.LEFT);
+        review.fetch("apartment", JoinType.LEFT);
+        review.fetch("client", JoinType.LEFT);
+
+        Path<Integer> rating = review.get("rating");
+        Path<LocalDateTime> createdAt = review.get("createdAt");
+        Path<Long> id = review.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (apartmentId != null) {
+            predicates.add(cb.equal(review.get("apartmentId"), apartmentId));
+        }
+        if (clientId != null) {
+            predicates.add(cb.equal(review.get("clientId"), clientId));
+        }
+        if (sort != ReviewSortOrder.NEWEST) {
+            predicates.add(cb.isNotNull(rating));
+        }
+        if (after != null) {
+            predicates.add(seekPredicate(cb, sort, after, rating, createdAt, id));
+        }
+
+        query.select(review).where(predicates.toArray(new Predicate[0]));
+        switch (sort) {
+            case HIGHEST -> query.orderBy(cb.desc(rating), cb.desc(createdAt), cb.desc(id));
+            case LOWEST -> query.orderBy(cb.asc(rating), cb.asc(createdAt), cb.asc(id));
+            default -> query.orderBy(cb.desc(createdAt), cb.desc(id));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Rows strictly after the cursor in the sort order: rating sorts move every key in the same
+     * direction so one (rating, created_at, id) index serves both of them.
+     */
+    private static Predicate seekPredicate(CriteriaBuilder cb, ReviewSortOrder sort, ReviewCursor after,
+                                           Path<Integer> rating, Path<LocalDateTime> createdAt, Path<Long> id) {
+        if (sort == ReviewSortOrder.LOWEST) {
+            Predicate afterTime = cb.or(
+                    cb.greaterThan(createdAt, after.getCreatedAt()),
+                    cb.and(cb.equal(createdAt, after.getCreatedAt()), cb.greaterThan(id, after.getId())));
+            return cb.or(
+                    cb.greaterThan(rating, after.getRating()),
+                    cb.and(cb.equal(rating, after.getRating()), afterTime));
+        }
+        Predicate beforeTime = cb.or(
+                cb.lessThan(createdAt, after.getCreatedAt()),
+                cb.and(cb.equal(createdAt, after.getCreatedAt()), cb.lessThan(id, after.getId())));
+        if (sort == ReviewSortOrder.HIGHEST) {
+            return cb.or(
+                    cb.lessThan(rating, after.getRating()),
+                    cb.and(cb.equal(rating, after.getRating()), beforeTime));
+        }
+        return beforeTime;
+    }
+}
@@ -0,0 +1,85 @@
+package smarthost.backend.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import smarthost.backend.enums.StripeEventStatus;
+import smarthost.backend.model.StripeEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StripeEventRepository extends JpaRepository<StripeEvent, String> {
+
+    /**
+     * Store a delivery with a plain INSERT, so a redelivered event id fails on the primary key
+     * instead of overwriting the stored event.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stripe_events (event_id, type, reservation_id, payload, status, attempts, received_at) " +
+                   "VALUES (:eventId, :type, :reservationId, :payload, 'RECEIVED', 0, :now)", nativeQuery = true)
+    int insertReceived(
+            @Param("eventId") String eventId,
+            @Param("type") String type,
+            @Param("reservationId") Long reservationId,
+            @Param("payload") String payload,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Take an event for processing. Only one caller on any node wins; events stuck in
+     * PROCESSING since before staleBefore (a worker died) can be taken again.
+     */
+    @Modifying
+    @Query("UPDATE StripeEvent e SET e.status = :processing, e.attempts = e.attempts + 1, e.claimedAt = :now " +
+           "WHERE e.eventId = :eventId AND (e.status IN :claimable " +
+           "OR (e.status = :processing AND e.claimedAt < :staleBefore))")
+    int claim(
+            @Param("eventId") String eventId,
+            @Param("processing") StripeEventStatus processing,
+            @Param("claimable") List<StripeEventStatus> claimable,
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("UPDATE StripeEvent e SET e.status = :status, e.processedAt = :now, e.lastError = null " +
+           "WHERE e.eventId IN :eventIds")
+    int markDone(
+            @Param("eventIds") List<String> eventIds,
+            @Param("status") StripeEventStatus status,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE StripeEvent e SET e.status = :failed, e.lastError = :error WHERE e.eventId = :eventId")
+    int markFailed(
+            @Param("eventId") String eventId,
+            @Param("failed") StripeEventStatus failed,
+            @Param("error") String error);
+
+    // Failed for good: attempts is set to the limit so the event is not redispatched
+    @Modifying
+    @Query("UPDATE StripeEvent e SET e.status = :failed, e.attempts = :maxAttempts, e.lastError = :error " +
+           "WHERE e.eventId = :eventId")
+    int markAbandoned(
+            @Param("eventId") String eventId,
+            @Param("failed") StripeEventStatus failed,
+            @Param("maxAttempts") int maxAttempts,
+            @Param("error") String error);
+
+    /**
+     * Events that still need a worker, oldest first, as [eventId, reservationId, type] rows.
+     */
+    @Query("SELECT e.eventId, e.reservationId, e.type FROM StripeEvent e " +
+           "WHERE e.status = :received OR (e.status = :failed AND e.attempts < :maxAttempts) " +
+           "OR (e.status = :processing AND e.claimedAt < :staleBefore) ORDER BY e.receivedAt")
+    List<Object[]> findUnprocessed(
+            @Param("received") StripeEventStatus received,
+            @Param("failed") StripeEventStatus failed,
+            @Param("processing") StripeEventStatus processing,
+            @Param("maxAttempts") int maxAttempts,
+            @Param("staleBefore") LocalDateTime staleBefore,
+            Pageable page);
+}
@@ -0,0 +1,165 @@
+package smarthost.backend.requests;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import smarthost.backend.enums.ApartmentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Filters and paging for the apartment search endpoint.
+ * sort is "price" (default), "price_desc" or "newest"; cursor is the opaque nextCursor of the previous page.
+ * With checkIn and checkOut, price sorts use the stay total and minTotal/maxTotal filter on it.
+ */
+@Data
+public class ApartmentSearchRequest {
+    private String city;
+    private Integer minBedrooms;
+    private Integer minBathrooms;
+    private BigDecimal minSizeM2;
+    private BigDecimal maxSizeM2;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private List<Long> amenityIds;
+    private ApartmentStatus status;
+    private String sort;
+    private String cursor;
+    private Integer limit;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate checkIn;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate checkOut;
+    private BigDecimal minTotal;
+    private BigDecimal maxTotal;
+
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public Integer getMinBedrooms() {
+        return minBedrooms;
+    }
+
+    public void setMinBedrooms(Integer minBedrooms) {
+        this.minBedrooms = minBedrooms;
+    }
+
+    public Integer getMinBathrooms() {
+        return minBathrooms;
+    }
+
+    public void setMinBathrooms(Integer minBathrooms) {
+        this.minBathrooms = minBathrooms;
+    }
+
+    public BigDecimal getMinSizeM2() {
+        return minSizeM2;
+    }
+
+    public void setMinSizeM2(BigDecimal minSizeM2) {
+        this.minSizeM2 = minSizeM2;
+    }
+
+    public BigDecimal getMaxSizeM2() {
+        return maxSizeM2;
+    }
+
+    public void setMaxSizeM2(BigDecimal maxSizeM2) {
+        this.maxSizeM2 = maxSizeM2;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public List<Long> getAmenityIds() {
+        return amenityIds;
+    }
+
+    public void setAmenityIds(List<Long> amenityIds) {
+        this.amenityIds = amenityIds;
+    }
+
+    public ApartmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ApartmentStatus status) {
+        this.status = status;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public void setCheckIn(LocalDate checkIn) {
+        this.checkIn = checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public void setCheckOut(LocalDate checkOut) {
+        this.checkOut = checkOut;
+    }
+
+    public BigDecimal getMinTotal() {
+        return minTotal;
+    }
+
+    public void setMinTotal(BigDecimal minTotal) {
+        this.minTotal = minTotal;
+    }
+
+    public BigDecimal getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(BigDecimal maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+}
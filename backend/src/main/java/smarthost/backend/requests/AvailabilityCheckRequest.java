@@ -0,0 +1,36 @@
+package smarthost.backend.requests;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class AvailabilityCheckRequest {
+    private Long apartmentId;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public void setCheckIn(LocalDate checkIn) {
+        this.checkIn = checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public void setCheckOut(LocalDate checkOut) {
+        this.checkOut = checkOut;
+    }
+}
@@ -0,0 +1,105 @@
+package smarthost.backend.requests;
+
+import lombok.Data;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.enums.ReservationStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One reservation migrated from another property management system. Status defaults to CONFIRMED.
+ */
+@Data
+public class ImportReservationRequest {
+    private Long apartmentId;
+    private Long clientId;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+    private Integer guests;
+    private BigDecimal totalPrice;
+    private ReservationStatus status;
+    private String accessCode;
+    private String specialRequest;
+    private GuestInformationDto guestInformation;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public Long getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(Long clientId) {
+        this.clientId = clientId;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public void setCheckIn(LocalDate checkIn) {
+        this.checkIn = checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public void setCheckOut(LocalDate checkOut) {
+        this.checkOut = checkOut;
+    }
+
+    public Integer getGuests() {
+        return guests;
+    }
+
+    public void setGuests(Integer guests) {
+        this.guests = guests;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(BigDecimal totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public ReservationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReservationStatus status) {
+        this.status = status;
+    }
+
+    public String getAccessCode() {
+        return accessCode;
+    }
+
+    public void setAccessCode(String accessCode) {
+        this.accessCode = accessCode;
+    }
+
+    public String getSpecialRequest() {
+        return specialRequest;
+    }
+
+    public void setSpecialRequest(String specialRequest) {
+        this.specialRequest = specialRequest;
+    }
+
+    public GuestInformationDto getGuestInformation() {
+        return guestInformation;
+    }
+
+    public void setGuestInformation(GuestInformationDto guestInformation) {
+        this.guestInformation = guestInformation;
+    }
+}
@@ -0,0 +1,59 @@
+package smarthost.backend.requests;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A seasonal or weekday price adjustment. Dates are inclusive and optional; dayOfWeek is a
+ * comma-separated list such as "FRI,SAT" or empty for every day; percentage +20.00 means +20%.
+ */
+@Data
+public class PriceRuleRequest {
+    private String ruleName;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String dayOfWeek;
+    private BigDecimal percentage;
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public void setRuleName(String ruleName) {
+        this.ruleName = ruleName;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getDayOfWeek() {
+        return dayOfWeek;
+    }
+
+    public void setDayOfWeek(String dayOfWeek) {
+        this.dayOfWeek = dayOfWeek;
+    }
+
+    public BigDecimal getPercentage() {
+        return percentage;
+    }
+
+    public void setPercentage(BigDecimal percentage) {
+        this.percentage = percentage;
+    }
+}
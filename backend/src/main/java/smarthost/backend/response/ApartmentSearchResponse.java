@@ -0,0 +1,35 @@
+package smarthost.backend.response;
+
+import smarthost.backend.dto.ApartmentDto;
+
+import java.util.List;
+
+public class ApartmentSearchResponse {
+    private List<ApartmentDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public List<ApartmentDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ApartmentDto> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
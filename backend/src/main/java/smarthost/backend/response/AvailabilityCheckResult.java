@@ -0,0 +1,56 @@
+package smarthost.backend.response;
+
+import smarthost.backend.enums.UnavailabilityReason;
+
+import java.time.LocalDate;
+
+/**
+ * Outcome of one availability probe; reason is set only when the stay is unavailable.
+ */
+public class AvailabilityCheckResult {
+    private Long apartmentId;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+    private boolean available;
+    private UnavailabilityReason reason;
+
+    public Long getApartmentId() {
+        return apartmentId;
+    }
+
+    public void setApartmentId(Long apartmentId) {
+        this.apartmentId = apartmentId;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public void setCheckIn(LocalDate checkIn) {
+        this.checkIn = checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public void setCheckOut(LocalDate checkOut) {
+        this.checkOut = checkOut;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public UnavailabilityReason getReason() {
+        return reason;
+    }
+
+    public void setReason(UnavailabilityReason reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,51 @@
+package smarthost.backend.response;
+
+import java.util.List;
+
+/**
+ * Ids of the imported reservations in request order, or the reason the whole import was rejected.
+ */
+public class ReservationImportResponse {
+    private int imported;
+    private List<Long> reservationIds;
+    private String error;
+
+    public ReservationImportResponse() {
+    }
+
+    public ReservationImportResponse(List<Long> reservationIds) {
+        this.imported = reservationIds.size();
+        this.reservationIds = reservationIds;
+    }
+
+    public static ReservationImportResponse rejected(String error) {
+        ReservationImportResponse response = new ReservationImportResponse();
+        response.setError(error);
+        response.setReservationIds(List.of());
+        return response;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public List<Long> getReservationIds() {
+        return reservationIds;
+    }
+
+    public void setReservationIds(List<Long> reservationIds) {
+        this.reservationIds = reservationIds;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
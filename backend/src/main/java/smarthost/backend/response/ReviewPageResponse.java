@@ -0,0 +1,35 @@
+package smarthost.backend.response;
+
+import smarthost.backend.dto.ReviewDto;
+
+import java.util.List;
+
+public class ReviewPageResponse {
+    private List<ReviewDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public List<ReviewDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ReviewDto> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,154 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import smarthost.backend.model.Amenity;
+import smarthost.backend.repository.AmenityRepository;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory amenity index for search.
+ * Every amenity gets a bit position and every apartment a bitmask of the amenities it has,
+ * so "has all of these amenities" is a word-by-word containment test instead of a join per amenity.
+ * Masks are copy-on-write, so lookups never lock.
+ */
+@Service
+public class AmenityIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmenityIndexService.class);
+
+    private final AmenityRepository amenityRepository;
+    private final ApartmentRepository apartmentRepository;
+
+    private volatile Snapshot snapshot;
+
+    public AmenityIndexService(AmenityRepository amenityRepository, ApartmentRepository apartmentRepository) {
+        this.amenityRepository = amenityRepository;
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    /**
+     * Load bit positions and masks from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Snapshot rebuilt = new Snapshot();
+        for (Amenity amenity : amenityRepository.findAll()) {
+            rebuilt.bitFor(amenity.getId());
+        }
+        for (Long apartmentId : apartmentRepository.findAllIds()) {
+            rebuilt.masks.put(apartmentId, new long[0]);
+        }
+        List<Object[]> links = apartmentRepository.findAllAmenityLinks();
+        for (Object[] link : links) {
+            Long apartmentId = (Long) link[0];
+            long[] mask = rebuilt.masks.getOrDefault(apartmentId, new long[0]);
+            rebuilt.masks.put(apartmentId, withBit(mask, rebuilt.bitFor((Long) link[1])));
+        }
+        this.snapshot = rebuilt;
+        logger.info("Amenity index loaded: {} amenities, {} apartments, {} links",
+                rebuilt.bits.size(), rebuilt.masks.size(), links.size());
+    }
+
+    /**
+     * IDs of apartments that have every one of the given amenities.
+     * Empty when the index is not loaded yet and the caller must ask the database.
+     */
+    public Optional<List<Long>> findApartmentsWithAll(Collection<Long> amenityIds) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        long[] required = new long[0];
+        for (Long amenityId : amenityIds) {
+            Integer bit = current.bits.get(amenityId);
+            if (bit == null) {
+                // No apartment has an amenity the index has never seen
+                return Optional.of(new ArrayList<>());
+            }
+            required = withBit(required, bit);
+        }
+        List<Long> matches = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : current.masks.entrySet()) {
+            if (containsAll(entry.getValue(), required)) {
+                matches.add(entry.getKey());
+            }
+        }
+        return Optional.of(matches);
+    }
+
+    /**
+     * Replace an apartment's amenity set once the current transaction commits.
+     */
+    public void setAmenities(Long apartmentId, Collection<Long> amenityIds) {
+        List<Long> ids = new ArrayList<>(amenityIds);
+        TransactionUtils.afterCommit(() -> putMask(apartmentId, ids));
+    }
+
+    public void removeApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> dropApartment(apartmentId));
+    }
+
+    private synchronized void putMask(Long apartmentId, List<Long> amenityIds) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        long[] mask = new long[0];
+        for (Long amenityId : amenityIds) {
+            mask = withBit(mask, current.bitFor(amenityId));
+        }
+        current.masks.put(apartmentId, mask);
+    }
+
+    private synchronized void dropApartment(Long apartmentId) {
+        if (snapshot != null) {
+            snapshot.masks.remove(apartmentId);
+        }
+    }
+
+    /**
+     * Copy of the mask with the bit set, grown to fit when needed.
+     */
+    private static long[] withBit(long[] mask, int bit) {
+        int word = bit >>> 6;
+        long[] copy = Arrays.copyOf(mask, Math.max(mask.length, word + 1));
+        copy[word] |= 1L << bit;
+        return copy;
+    }
+
+    private static boolean containsAll(long[] mask, long[] required) {
+        for (int w = 0; w < required.length; w++) {
+            long have = w < mask.length ? mask[w] : 0L;
+            if ((have & required[w]) != required[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Amenity bit positions and per-apartment masks, swapped atomically on rebuild.
+     * Positions are never reused, so a mask stays valid for as long as its snapshot.
+     */
+    private static final class Snapshot {
+        private final Map<Long, Integer> bits = new ConcurrentHashMap<>();
+        private final Map<Long, long[]> masks = new ConcurrentHashMap<>();
+
+        private int bitFor(Long amenityId) {
+            return bits.computeIfAbsent(amenityId, id -> bits.size());
+        }
+    }
+}
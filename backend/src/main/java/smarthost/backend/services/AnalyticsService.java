@@ -0,0 +1,241 @@
+package smarthost.backend.services;
+
+import org.springframework.stereotype.Service;
+import smarthost.backend.dto.AnalyticsPeriodDto;
+import smarthost.backend.dto.ApartmentAnalyticsDto;
+import smarthost.backend.dto.OwnerAnalyticsDto;
+import smarthost.backend.enums.AnalyticsGranularity;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.FinanceMonthlyReportRepository;
+import smarthost.backend.repository.FinanceReportRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Owner revenue analytics (revenue, occupancy, ADR, RevPAR) per apartment and in total, read from
+ * the finance rollups. Monthly views take whole months from finance_monthly_reports and only the
+ * partial months at either end from the daily rows, so a multi-year range costs a row per
+ * apartment and month rather than a look at every reservation.
+ */
+@Service
+public class AnalyticsService {
+
+    private static final int MAX_DAY_PERIODS = 366;
+    private static final int MAX_WEEK_DAYS = 3 * 366;
+    private static final int MAX_MONTHS = 240;
+
+    private final ApartmentRepository apartmentRepository;
+    private final FinanceReportRepository financeReportRepository;
+    private final FinanceMonthlyReportRepository financeMonthlyReportRepository;
+
+    public AnalyticsService(ApartmentRepository apartmentRepository,
+                            FinanceReportRepository financeReportRepository,
+                            FinanceMonthlyReportRepository financeMonthlyReportRepository) {
+        this.apartmentRepository = apartmentRepository;
+        this.financeReportRepository = financeReportRepository;
+        this.financeMonthlyReportRepository = financeMonthlyReportRepository;
+    }
+
+    /**
+     * Analytics for [from, to) in periods of the given granularity ("day", "week" or "month").
+     * Weeks start on Monday and months on the 1st; the first and last period are cut to the range.
+     *
+     * @throws IllegalArgumentException if the range or granularity is invalid, or the range too long for it
+     */
+    public OwnerAnalyticsDto getOwnerAnalytics(Long ownerId, LocalDate from, LocalDate to, String granularity) {
+        AnalyticsGranularity unit = parse(granularity);
+        validateRange(from, to, unit);
+
+        List<LocalDate> starts = periodStarts(from, to, unit);
+        TreeMap<LocalDate, Integer> periodIndex = new TreeMap<>();
+        for (int i = 0; i < starts.size(); i++) {
+            periodIndex.put(starts.get(i), i);
+        }
+
+        List<Apartment> apartments = new ArrayList<>(apartmentRepository.findByOwnerId(ownerId));
+        apartments.sort(Comparator.comparing(Apartment::getId));
+        Map<Long, Sums> sumsByApartment = new HashMap<>();
+        for (Apartment apartment : apartments) {
+            sumsByApartment.put(apartment.getId(), new Sums(starts.size()));
+        }
+
+        // Whole months from the monthly rollup, the rest from daily rows
+        LocalDate monthsFrom = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate monthsTo = to.withDayOfMonth(1);
+        boolean useMonths = unit == AnalyticsGranularity.MONTH && monthsFrom.isBefore(monthsTo);
+        if (useMonths) {
+            for (Object[] row : financeMonthlyReportRepository.findByOwner(ownerId, monthsFrom, monthsTo)) {
+                add(sumsByApartment, periodIndex, row);
+            }
+            if (from.isBefore(monthsFrom)) {
+                for (Object[] row : financeReportRepository.findByOwner(ownerId, from, monthsFrom)) {
+                    add(sumsByApartment, periodIndex, row);
+                }
+            }
+            if (monthsTo.isBefore(to)) {
+                for (Object[] row : financeReportRepository.findByOwner(ownerId, monthsTo, to)) {
+                    add(sumsByApartment, periodIndex, row);
+                }
+            }
+        } else {
+            for (Object[] row : financeReportRepository.findByOwner(ownerId, from, to)) {
+                add(sumsByApartment, periodIndex, row);
+            }
+        }
+
+        long[] periodDays = new long[starts.size()];
+        for (int i = 0; i < starts.size(); i++) {
+            LocalDate end = i + 1 < starts.size() ? starts.get(i + 1) : to;
+            periodDays[i] = ChronoUnit.DAYS.between(starts.get(i), end);
+        }
+
+        Sums total = new Sums(starts.size());
+        List<ApartmentAnalyticsDto> apartmentDtos = new ArrayList<>();
+        for (Apartment apartment : apartments) {
+            Sums sums = sumsByApartment.get(apartment.getId());
+            total.add(sums);
+            ApartmentAnalyticsDto dto = new ApartmentAnalyticsDto();
+            dto.setApartmentId(apartment.getId());
+            dto.setApartmentName(apartment.getName());
+            dto.setPeriods(periods(sums, starts, to, periodDays, 1));
+            dto.setSummary(summary(sums, from, to, 1));
+            apartmentDtos.add(dto);
+        }
+
+        OwnerAnalyticsDto analytics = new OwnerAnalyticsDto();
+        analytics.setOwnerId(ownerId);
+        analytics.setFrom(from);
+        analytics.setTo(to);
+        analytics.setGranularity(unit);
+        analytics.setPeriods(periods(total, starts, to, periodDays, apartments.size()));
+        analytics.setSummary(summary(total, from, to, apartments.size()));
+        analytics.setApartments(apartmentDtos);
+        return analytics;
+    }
+
+    private static AnalyticsGranularity parse(String granularity) {
+        for (AnalyticsGranularity candidate : AnalyticsGranularity.values()) {
+            if (candidate.name().equalsIgnoreCase(granularity)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("granularity must be day, week or month");
+    }
+
+    private static void validateRange(LocalDate from, LocalDate to, AnalyticsGranularity unit) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        long days = ChronoUnit.DAYS.between(from, to);
+        if (unit == AnalyticsGranularity.DAY && days > MAX_DAY_PERIODS) {
+            throw new IllegalArgumentException("At most " + MAX_DAY_PERIODS + " days per request by day");
+        }
+        if (unit == AnalyticsGranularity.WEEK && days > MAX_WEEK_DAYS) {
+            throw new IllegalArgumentException("At most " + MAX_WEEK_DAYS + " days per request by week");
+        }
+        if (unit == AnalyticsGranularity.MONTH && ChronoUnit.MONTHS.between(from.withDayOfMonth(1), to) >= MAX_MONTHS) {
+            throw new IllegalArgumentException("At most " + MAX_MONTHS + " months per request");
+        }
+    }
+
+    private static List<LocalDate> periodStarts(LocalDate from, LocalDate to, AnalyticsGranularity unit) {
+        List<LocalDate> starts = new ArrayList<>();
+        for (LocalDate start = from; start.isBefore(to); start = nextStart(start, unit)) {
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    private static LocalDate nextStart(LocalDate date, AnalyticsGranularity unit) {
+        return switch (unit) {
+            case DAY -> date.plusDays(1);
+            case WEEK -> date.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1).plusMonths(1);
+        };
+    }
+
+    /**
+     * Add one rollup row, [apartmentId, date, income, nightsSold], to the period its date falls in.
+     */
+    private static void add(Map<Long, Sums> sumsByApartment, TreeMap<LocalDate, Integer> periodIndex, Object[] row) {
+        Sums sums = sumsByApartment.get((Long) row[0]);
+        Map.Entry<LocalDate, Integer> period = periodIndex.floorEntry((LocalDate) row[1]);
+        if (sums == null || period == null) {
+            return;
+        }
+        sums.revenue[period.getValue()] = sums.revenue[period.getValue()].add((BigDecimal) row[2]);
+        sums.nights[period.getValue()] += ((Number) row[3]).longValue();
+    }
+
+    private static List<AnalyticsPeriodDto> periods(Sums sums, List<LocalDate> starts, LocalDate to,
+                                                    long[] periodDays, int apartmentCount) {
+        List<AnalyticsPeriodDto> periods = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            LocalDate end = i + 1 < starts.size() ? starts.get(i + 1) : to;
+            periods.add(period(starts.get(i), end, sums.revenue[i], sums.nights[i], periodDays[i] * apartmentCount));
+        }
+        return periods;
+    }
+
+    private static AnalyticsPeriodDto summary(Sums sums, LocalDate from, LocalDate to, int apartmentCount) {
+        BigDecimal revenue = BigDecimal.ZERO.setScale(2);
+        long nights = 0;
+        for (int i = 0; i < sums.revenue.length; i++) {
+            revenue = revenue.add(sums.revenue[i]);
+            nights += sums.nights[i];
+        }
+        return period(from, to, revenue, nights, ChronoUnit.DAYS.between(from, to) * apartmentCount);
+    }
+
+    private static AnalyticsPeriodDto period(LocalDate start, LocalDate end, BigDecimal revenue,
+                                             long nightsSold, long availableNights) {
+        AnalyticsPeriodDto period = new AnalyticsPeriodDto();
+        period.setStart(start);
+        period.setEnd(end);
+        period.setRevenue(revenue);
+        period.setNightsSold(nightsSold);
+        period.setAvailableNights(availableNights);
+        period.setOccupancyRate(ratio(BigDecimal.valueOf(nightsSold), availableNights, 4));
+        period.setAdr(ratio(revenue, nightsSold, 2));
+        period.setRevPar(ratio(revenue, availableNights, 2));
+        return period;
+    }
+
+    private static BigDecimal ratio(BigDecimal numerator, long denominator, int scale) {
+        if (denominator == 0) {
+            return BigDecimal.ZERO.setScale(scale);
+        }
+        return numerator.divide(BigDecimal.valueOf(denominator), scale, RoundingMode.HALF_UP);
+    }
+
+    private static final class Sums {
+        private final BigDecimal[] revenue;
+        private final long[] nights;
+
+        private Sums(int periods) {
+            revenue = new BigDecimal[periods];
+            nights = new long[periods];
+            Arrays.fill(revenue, BigDecimal.ZERO.setScale(2));
+        }
+
+        private void add(Sums other) {
+            for (int i = 0; i < revenue.length; i++) {
+                revenue[i] = revenue[i].add(other.revenue[i]);
+                nights[i] += other.nights[i];
+            }
+        }
+    }
+}
@@ -6,35 +6,68 @@ import org.springframework.web.multipart.MultipartFile;
 import smarthost.backend.dto.AmenityDto;
 import smarthost.backend.dto.ApartmentDto;
 import smarthost.backend.dto.ApartmentImageDto;
+import smarthost.backend.dto.AvailabilityCalendarDto;
+import smarthost.backend.dto.AvailabilityRunDto;
+import smarthost.backend.enums.ApartmentSortOrder;
 import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.enums.UnavailabilityReason;
+import smarthost.backend.exceptions.NotFoundException;
 import smarthost.backend.mapper.ApartmentMapper;
 import smarthost.backend.model.Amenity;
 import smarthost.backend.model.ApartmentImage;
-import smarthost.backend.model.Reservation;
+import smarthost.backend.model.ApartmentRatingStats;
 import smarthost.backend.repository.AmenityRepository;
 import smarthost.backend.repository.ApartmentImageRepository;
+import smarthost.backend.repository.ApartmentSearchCursor;
 import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.ApartmentSearchRequest;
+import smarthost.backend.requests.AvailabilityCheckRequest;
 import smarthost.backend.requests.CreateApartmentRequest;
 import smarthost.backend.model.Apartment;
 import smarthost.backend.repository.ApartmentRepository;
 import smarthost.backend.requests.UpdateApartmentRequest;
+import smarthost.backend.response.ApartmentSearchResponse;
+import smarthost.backend.response.AvailabilityCheckResult;
+import smarthost.backend.utils.StayIntervalTree;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.io.IOException;
 
 @Service
 public class ApartmentService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CALENDAR_MONTHS = 18;
+    private static final int MAX_CALENDAR_APARTMENTS = 100;
+    private static final int MAX_AVAILABILITY_CHECKS = 1000;
+
     private final ApartmentRepository apartmentRepository;
     private final ApartmentImageRepository apartmentImageRepository;
     private final AmenityRepository amenityRepository;
     private final ReservationRepository reservationRepository;
     private final ApartmentMapper apartmentMapper;
     private final CloudinaryService cloudinaryService;
+    private final AvailabilityIndexService availabilityIndexService;
+    private final ReservationCalendarService reservationCalendarService;
+    private final AmenityIndexService amenityIndexService;
+    private final PriceQuoteService priceQuoteService;
+    private final PriceCalendarService priceCalendarService;
+    private final RatingStatsService ratingStatsService;
+    private final ReviewSearchService reviewSearchService;
 
     @Autowired
     public ApartmentService(ApartmentRepository apartmentRepository,
@@ -42,25 +75,121 @@ public class ApartmentService {
                             AmenityRepository amenityRepository,
                             ReservationRepository reservationRepository,
                             ApartmentMapper apartmentMapper, 
-                            CloudinaryService cloudinaryService) {
+                            CloudinaryService cloudinaryService,
+                            AvailabilityIndexService availabilityIndexService,
+                            ReservationCalendarService reservationCalendarService,
+                            AmenityIndexService amenityIndexService,
+                            PriceQuoteService priceQuoteService,
+                            PriceCalendarService priceCalendarService,
+                            RatingStatsService ratingStatsService,
+                            ReviewSearchService reviewSearchService) {
         this.apartmentRepository = apartmentRepository;
         this.apartmentImageRepository = apartmentImageRepository;
         this.amenityRepository = amenityRepository;
         this.reservationRepository = reservationRepository;
         this.apartmentMapper = apartmentMapper;
         this.cloudinaryService = cloudinaryService;
+        this.availabilityIndexService = availabilityIndexService;
+        this.reservationCalendarService = reservationCalendarService;
+        this.amenityIndexService = amenityIndexService;
+        this.priceQuoteService = priceQuoteService;
+        this.priceCalendarService = priceCalendarService;
+        this.ratingStatsService = ratingStatsService;
+        this.reviewSearchService = reviewSearchService;
     }
 
     public List<ApartmentDto> getAllApartments() {
         List<Apartment> apartments = apartmentRepository.findAll();
-        return apartments.stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return mapToDtos(apartments);
+    }
+
+    /**
+     * Filtered apartment search with keyset pagination on (basePrice, id) or (createdAt, id).
+     * With stay dates, price sorts and total filters use the stay total summed from the price
+     * calendar, and each result carries that total.
+     * Fetches one extra row to know whether another page exists.
+     */
+    public ApartmentSearchResponse searchApartments(ApartmentSearchRequest request) {
+        ApartmentSortOrder sort = parseSort(request.getSort());
+        boolean hasStay = validateStay(request);
+        int limit = request.getLimit() == null || request.getLimit() <= 0
+                ? DEFAULT_PAGE_SIZE
+                : Math.min(request.getLimit(), MAX_PAGE_SIZE);
+        ApartmentSearchCursor after = request.getCursor() == null || request.getCursor().isBlank()
+                ? null
+                : ApartmentSearchCursor.decode(request.getCursor(), sort, request.getCheckIn(), request.getCheckOut());
+
+        // Resolve required amenities from the bitmask index; fall back to SQL until it is loaded
+        List<Long> amenityMatches = null;
+        if (request.getAmenityIds() != null && !request.getAmenityIds().isEmpty()) {
+            amenityMatches = amenityIndexService.findApartmentsWithAll(request.getAmenityIds()).orElse(null);
+            if (amenityMatches != null && amenityMatches.isEmpty()) {
+                ApartmentSearchResponse empty = new ApartmentSearchResponse();
+                empty.setItems(new ArrayList<>());
+                return empty;
+            }
+        }
+
+        List<Apartment> apartments = apartmentRepository.search(request, amenityMatches, sort, after, limit + 1);
+        boolean hasMore = apartments.size() > limit;
+        if (hasMore) {
+            apartments = apartments.subList(0, limit);
+        }
+
+        Map<Long, BigDecimal> stayTotals = hasStay
+                ? priceCalendarService.stayTotals(apartments.stream().map(Apartment::getId).toList(),
+                        request.getCheckIn(), request.getCheckOut())
+                : Map.of();
+        List<ApartmentDto> items = mapToDtos(apartments);
+        items.forEach(dto -> dto.setStayTotal(stayTotals.get(dto.getId())));
+
+        ApartmentSearchResponse response = new ApartmentSearchResponse();
+        response.setItems(items);
+        response.setHasMore(hasMore);
+        if (hasMore) {
+            Apartment last = apartments.get(apartments.size() - 1);
+            response.setNextCursor(ApartmentSearchCursor.after(sort, last, stayTotals.get(last.getId()),
+                    request.getCheckIn(), request.getCheckOut()).encode());
+        }
+        return response;
+    }
+
+    /**
+     * @return whether the search prices a stay
+     */
+    private boolean validateStay(ApartmentSearchRequest request) {
+        if (request.getCheckIn() == null && request.getCheckOut() == null) {
+            if (request.getMinTotal() != null || request.getMaxTotal() != null) {
+                throw new IllegalArgumentException("minTotal and maxTotal need checkIn and checkOut");
+            }
+            return false;
+        }
+        if (request.getCheckIn() == null || request.getCheckOut() == null
+                || !request.getCheckIn().isBefore(request.getCheckOut())) {
+            throw new IllegalArgumentException("checkIn must be before checkOut");
+        }
+        if (!priceCalendarService.covers(request.getCheckIn(), request.getCheckOut())) {
+            throw new IllegalArgumentException("Stay prices are only available for upcoming dates within the price calendar");
+        }
+        return true;
+    }
+
+    private ApartmentSortOrder parseSort(String sort) {
+        if (sort == null || sort.isBlank() || sort.equalsIgnoreCase("price")) {
+            return ApartmentSortOrder.PRICE_ASC;
+        }
+        if (sort.equalsIgnoreCase("price_desc")) {
+            return ApartmentSortOrder.PRICE_DESC;
+        }
+        if (sort.equalsIgnoreCase("newest")) {
+            return ApartmentSortOrder.NEWEST;
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + sort);
     }
 
     public ApartmentDto getApartmentById(Long id) {
         Apartment apartment = apartmentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Apartment not found with id: " + id));
+                .orElseThrow(() -> new NotFoundException("Apartment not found with id: " + id));
         return mapToDto(apartment);
     }
 
@@ -71,38 +200,56 @@ public class ApartmentService {
             apartment.setAmenities(amenities);
         }
         Apartment savedApartment = apartmentRepository.save(apartment);
+        amenityIndexService.setAmenities(savedApartment.getId(), amenityIds(savedApartment));
+        availabilityIndexService.registerApartment(savedApartment.getId());
+        reservationCalendarService.registerApartment(savedApartment.getId());
+        priceCalendarService.refresh(savedApartment.getId());
         return mapToDto(savedApartment);
     }
 
     public ApartmentDto updateApartment(Long id, UpdateApartmentRequest request) {
         Apartment apartment = apartmentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Apartment not found with id: " + id));
+                .orElseThrow(() -> new NotFoundException("Apartment not found with id: " + id));
         apartmentMapper.updateApartmentFromRequest(apartment, request);
         if (request.getAmenityIds() != null) {
             List<Amenity> amenities = amenityRepository.findAllById(request.getAmenityIds());
             apartment.setAmenities(amenities);
         }
         Apartment savedApartment = apartmentRepository.save(apartment);
+        if (request.getAmenityIds() != null) {
+            amenityIndexService.setAmenities(savedApartment.getId(), amenityIds(savedApartment));
+        }
+        priceQuoteService.invalidate(savedApartment.getId()); // Base price or capacity may have changed
+        priceCalendarService.refresh(savedApartment.getId());
         return mapToDto(savedApartment);
     }
 
+    private List<Long> amenityIds(Apartment apartment) {
+        return apartment.getAmenities().stream().map(Amenity::getId).collect(Collectors.toList());
+    }
+
     public void deleteApartment(Long id) {
         if (!apartmentRepository.existsById(id)) {
-            throw new RuntimeException("Apartment not found with id: " + id);
+            throw new NotFoundException("Apartment not found with id: " + id);
         }
         apartmentRepository.deleteById(id);
+        availabilityIndexService.removeApartment(id);
+        reservationCalendarService.removeApartment(id);
+        amenityIndexService.removeApartment(id);
+        priceQuoteService.invalidate(id);
+        priceCalendarService.removeApartment(id);
+        ratingStatsService.removeApartment(id);
+        reviewSearchService.removeApartment(id);
     }
 
     public List<ApartmentDto> getApartmentsByOwner(Long ownerId) {
         List<Apartment> apartments = apartmentRepository.findByOwnerId(ownerId);
-        return apartments.stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return mapToDtos(apartments);
     }
 
     public List<ApartmentImageDto> saveApartmentImages(Long apartmentId, MultipartFile[] files, int featuredIndex) {
         if (!apartmentRepository.existsById(apartmentId)) {
-            throw new RuntimeException("Apartment not found with id: " + apartmentId);
+            throw new NotFoundException("Apartment not found with id: " + apartmentId);
         }
         List<ApartmentImageDto> savedImages = new ArrayList<>();
         for (int i = 0; i < files.length; i++) {
@@ -139,7 +286,48 @@ public class ApartmentService {
 
     private ApartmentDto mapToDto(Apartment apartment) {
         List<ApartmentImage> images = apartmentImageRepository.findByApartmentId(apartment.getId());
-        return apartmentMapper.mapToDto(apartment, images);
+        ApartmentDto dto = apartmentMapper.mapToDto(apartment, images);
+        setRating(dto, ratingStatsService.findByApartmentIds(List.of(apartment.getId())).get(apartment.getId()));
+        return dto;
+    }
+
+    private static void setRating(ApartmentDto dto, ApartmentRatingStats stats) {
+        dto.setReviewCount(stats != null ? stats.getReviewCount() : 0);
+        dto.setAverageRating(RatingStatsService.averageRating(stats));
+    }
+
+    /**
+     * Map a page of apartments with a fixed number of queries: all images with one IN query,
+     * all amenity join rows with another, rating aggregates with a third, then assemble the
+     * DTOs in memory.
+     */
+    private List<ApartmentDto> mapToDtos(List<Apartment> apartments) {
+        if (apartments.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> apartmentIds = apartments.stream().map(Apartment::getId).collect(Collectors.toList());
+
+        Map<Long, List<ApartmentImage>> imagesByApartment = apartmentImageRepository.findByApartmentIdIn(apartmentIds)
+                .stream()
+                .collect(Collectors.groupingBy(ApartmentImage::getApartmentId));
+
+        Map<Long, List<Amenity>> amenitiesByApartment = new HashMap<>();
+        for (Object[] row : apartmentRepository.findAmenitiesByApartmentIds(apartmentIds)) {
+            amenitiesByApartment.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Amenity) row[1]);
+        }
+
+        Map<Long, ApartmentRatingStats> ratings = ratingStatsService.findByApartmentIds(apartmentIds);
+
+        return apartments.stream()
+                .map(apartment -> {
+                    ApartmentDto dto = apartmentMapper.mapToDto(
+                            apartment,
+                            imagesByApartment.getOrDefault(apartment.getId(), List.of()),
+                            amenitiesByApartment.getOrDefault(apartment.getId(), List.of()));
+                    setRating(dto, ratings.get(apartment.getId()));
+                    return dto;
+                })
+                .collect(Collectors.toList());
     }
 
     public void deleteApartmentImage(Long imageId) {
@@ -182,9 +370,15 @@ public class ApartmentService {
             return false;
         }
 
+        // Answer from the in-memory calendar when it knows the apartment
+        Optional<Boolean> overlap = reservationCalendarService.hasOverlap(apartmentId, checkIn, checkOut);
+        if (overlap.isPresent()) {
+            return !overlap.get();
+        }
+
         // Check if apartment exists
         if (!apartmentRepository.existsById(apartmentId)) {
-            throw new RuntimeException("Apartment not found with id: " + apartmentId);
+            throw new NotFoundException("Apartment not found with id: " + apartmentId);
         }
 
         // Define statuses that should block availability (confirmed and pending reservations)
@@ -193,11 +387,93 @@ public class ApartmentService {
                 ReservationStatus.PENDING
         );
 
-        // Find overlapping reservations
-        List<Reservation> overlappingReservations = reservationRepository.findOverlappingReservations(
-                apartmentId, checkIn, checkOut, blockingStatuses);
+        return !reservationRepository.existsOverlappingReservation(
+                apartmentId, checkIn, checkOut, blockingStatuses, LocalDateTime.now());
+    }
 
-        return overlappingReservations.isEmpty();
+    /**
+     * Check many (apartment, date range) pairs at once, returning one result per check in request order.
+     * Checks are answered from the in-memory reservation calendar; whatever it cannot answer is
+     * resolved with a single query over all the remaining apartments.
+     */
+    public List<AvailabilityCheckResult> checkAvailability(List<AvailabilityCheckRequest> checks) {
+        if (checks.size() > MAX_AVAILABILITY_CHECKS) {
+            throw new IllegalArgumentException("At most " + MAX_AVAILABILITY_CHECKS + " checks per request");
+        }
+        LocalDate today = LocalDate.now();
+        List<AvailabilityCheckResult> results = new ArrayList<>();
+        List<AvailabilityCheckResult> unresolved = new ArrayList<>();
+
+        for (AvailabilityCheckRequest check : checks) {
+            AvailabilityCheckResult result = new AvailabilityCheckResult();
+            result.setApartmentId(check.getApartmentId());
+            result.setCheckIn(check.getCheckIn());
+            result.setCheckOut(check.getCheckOut());
+            results.add(result);
+
+            if (check.getApartmentId() == null || check.getCheckIn() == null || check.getCheckOut() == null
+                    || !check.getCheckIn().isBefore(check.getCheckOut())) {
+                result.setReason(UnavailabilityReason.INVALID_DATES);
+            } else if (check.getCheckIn().isBefore(today)) {
+                result.setReason(UnavailabilityReason.PAST_DATES);
+            } else if (reservationCalendarService.isKnownApartment(check.getApartmentId()).orElse(true)) {
+                Optional<Boolean> overlap = reservationCalendarService.hasOverlap(
+                        check.getApartmentId(), check.getCheckIn(), check.getCheckOut());
+                if (overlap.isPresent()) {
+                    result.setAvailable(!overlap.get());
+                    result.setReason(overlap.get() ? UnavailabilityReason.BOOKED : null);
+                } else {
+                    unresolved.add(result);
+                }
+            } else {
+                result.setReason(UnavailabilityReason.APARTMENT_NOT_FOUND);
+            }
+        }
+
+        if (!unresolved.isEmpty()) {
+            resolveAvailability(unresolved);
+        }
+        return results;
+    }
+
+    /**
+     * Resolve checks the calendar could not answer with one query covering every apartment
+     * involved over the union of their ranges.
+     */
+    private void resolveAvailability(List<AvailabilityCheckResult> checks) {
+        LinkedHashSet<Long> apartmentIds = new LinkedHashSet<>();
+        LocalDate from = checks.get(0).getCheckIn();
+        LocalDate to = checks.get(0).getCheckOut();
+        for (AvailabilityCheckResult check : checks) {
+            apartmentIds.add(check.getApartmentId());
+            from = check.getCheckIn().isBefore(from) ? check.getCheckIn() : from;
+            to = check.getCheckOut().isAfter(to) ? check.getCheckOut() : to;
+        }
+
+        List<ReservationStatus> blockingStatuses = Arrays.asList(
+                ReservationStatus.CONFIRMED,
+                ReservationStatus.PENDING
+        );
+
+        Map<Long, StayIntervalTree> staysByApartment = new HashMap<>();
+        for (Object[] row : apartmentRepository.findStaysByApartmentIdsInRange(
+                apartmentIds, from, to, blockingStatuses, LocalDateTime.now())) {
+            StayIntervalTree stays = staysByApartment.computeIfAbsent((Long) row[0], id -> new StayIntervalTree());
+            if (row[1] != null) {
+                stays.put(new StayIntervalTree.Stay((Long) row[3], (LocalDate) row[1], (LocalDate) row[2], null, null));
+            }
+        }
+
+        for (AvailabilityCheckResult check : checks) {
+            StayIntervalTree stays = staysByApartment.get(check.getApartmentId());
+            if (stays == null) {
+                check.setReason(UnavailabilityReason.APARTMENT_NOT_FOUND);
+            } else if (stays.overlaps(check.getCheckIn(), check.getCheckOut())) {
+                check.setReason(UnavailabilityReason.BOOKED);
+            } else {
+                check.setAvailable(true);
+            }
+        }
     }
 
     /**
@@ -207,11 +483,22 @@ public class ApartmentService {
         return getAvailableApartments(checkIn, checkOut, guests, null);
     }
 
+    public List<ApartmentDto> getAvailableApartments(LocalDate checkIn, LocalDate checkOut, Integer guests, Long priorityApartmentId) {
+        return getAvailableApartments(checkIn, checkOut, guests, priorityApartmentId, null);
+    }
+
     /**
-     * Get all apartments that are available for the given date range and can accommodate the number of guests
+     * Get all apartments that are available for the given date range and can accommodate the number of guests,
+     * each with the total price of the stay. sort is "price" or "price_desc" to order by that total.
      * If priorityApartmentId is provided and available, it will be placed first in the results
      */
-    public List<ApartmentDto> getAvailableApartments(LocalDate checkIn, LocalDate checkOut, Integer guests, Long priorityApartmentId) {
+    public List<ApartmentDto> getAvailableApartments(LocalDate checkIn, LocalDate checkOut, Integer guests,
+                                                     Long priorityApartmentId, String sort) {
+        ApartmentSortOrder order = sort == null || sort.isBlank() ? null : parseSort(sort);
+        if (order == ApartmentSortOrder.NEWEST) {
+            throw new IllegalArgumentException("Available apartments can only be sorted by price");
+        }
+
         // Validate input dates
         if (checkIn.isAfter(checkOut) || checkIn.isBefore(LocalDate.now())) {
             return new ArrayList<>();
@@ -228,9 +515,11 @@ public class ApartmentService {
                 ReservationStatus.PENDING
         );
 
-        // Get available apartment IDs
-        List<Long> availableApartmentIds = reservationRepository.findAvailableApartmentIds(
-                checkIn, checkOut, blockingStatuses);
+        // Get available apartment IDs from the occupancy index, falling back to the database
+        // when the range is outside the indexed window
+        List<Long> availableApartmentIds = availabilityIndexService.findAvailableApartmentIds(checkIn, checkOut)
+                .orElseGet(() -> reservationRepository.findAvailableApartmentIds(
+                        checkIn, checkOut, blockingStatuses, LocalDateTime.now()));
 
         // If no apartments are available by date, return empty list
         if (availableApartmentIds.isEmpty()) {
@@ -241,9 +530,18 @@ public class ApartmentService {
         List<Apartment> availableApartments = apartmentRepository.findByIdInAndMaxGuestsGreaterThanEqual(
                 availableApartmentIds, guests);
         
-        List<ApartmentDto> apartmentDtos = availableApartments.stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        List<ApartmentDto> apartmentDtos = mapToDtos(availableApartments);
+
+        // Totals for every candidate from one rule query, no per-apartment pricing
+        Map<Long, BigDecimal> totals = priceQuoteService.quoteAll(availableApartments, checkIn, checkOut);
+        apartmentDtos.forEach(dto -> dto.setStayTotal(totals.get(dto.getId())));
+        if (order != null) {
+            Comparator<BigDecimal> byTotal = order == ApartmentSortOrder.PRICE_DESC
+                    ? Comparator.reverseOrder()
+                    : Comparator.naturalOrder();
+            apartmentDtos.sort(Comparator.comparing(ApartmentDto::getStayTotal, Comparator.nullsLast(byTotal))
+                    .thenComparing(ApartmentDto::getId));
+        }
 
         if (priorityApartmentId != null) {
             ApartmentDto priorityApartment = null;
@@ -263,4 +561,82 @@ public class ApartmentService {
         return apartmentDtos;
     }
 
-}
\ No newline at end of file
+    /**
+     * Run-length encoded availability calendar of one apartment for [from, to)
+     */
+    public AvailabilityCalendarDto getAvailabilityCalendar(Long apartmentId, LocalDate from, LocalDate to) {
+        List<AvailabilityCalendarDto> calendars = getAvailabilityCalendars(List.of(apartmentId), from, to);
+        if (calendars.isEmpty()) {
+            throw new NotFoundException("Apartment not found with id: " + apartmentId);
+        }
+        return calendars.get(0);
+    }
+
+    /**
+     * Run-length encoded availability calendars of many apartments for [from, to), in request order.
+     * Unknown apartment IDs are left out. All stays come from one query.
+     */
+    public List<AvailabilityCalendarDto> getAvailabilityCalendars(Collection<Long> apartmentIds,
+                                                                  LocalDate from, LocalDate to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Calendar range must have from before to");
+        }
+        if (to.isAfter(from.plusMonths(MAX_CALENDAR_MONTHS))) {
+            throw new IllegalArgumentException("Calendar range is limited to " + MAX_CALENDAR_MONTHS + " months");
+        }
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(apartmentIds);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (ids.size() > MAX_CALENDAR_APARTMENTS) {
+            throw new IllegalArgumentException("At most " + MAX_CALENDAR_APARTMENTS + " apartments per calendar request");
+        }
+
+        List<ReservationStatus> blockingStatuses = Arrays.asList(
+                ReservationStatus.CONFIRMED,
+                ReservationStatus.PENDING
+        );
+
+        int days = (int) ChronoUnit.DAYS.between(from, to);
+        Map<Long, boolean[]> bookedByApartment = new HashMap<>();
+        for (Object[] row : apartmentRepository.findStaysByApartmentIdsInRange(
+                ids, from, to, blockingStatuses, LocalDateTime.now())) {
+            boolean[] booked = bookedByApartment.computeIfAbsent((Long) row[0], id -> new boolean[days]);
+            if (row[1] != null) {
+                int start = (int) Math.max(0, ChronoUnit.DAYS.between(from, (LocalDate) row[1]));
+                int end = (int) Math.min(days, ChronoUnit.DAYS.between(from, (LocalDate) row[2]));
+                Arrays.fill(booked, start, Math.max(start, end), true);
+            }
+        }
+
+        List<AvailabilityCalendarDto> calendars = new ArrayList<>();
+        for (Long id : ids) {
+            boolean[] booked = bookedByApartment.get(id);
+            if (booked != null) {
+                AvailabilityCalendarDto calendar = new AvailabilityCalendarDto();
+                calendar.setApartmentId(id);
+                calendar.setFrom(from);
+                calendar.setTo(to);
+                calendar.setRuns(encodeRuns(from, booked));
+                calendars.add(calendar);
+            }
+        }
+        return calendars;
+    }
+
+    private List<AvailabilityRunDto> encodeRuns(LocalDate from, boolean[] booked) {
+        List<AvailabilityRunDto> runs = new ArrayList<>();
+        int start = 0;
+        for (int day = 1; day <= booked.length; day++) {
+            if (day == booked.length || booked[day] != booked[start]) {
+                AvailabilityRunDto run = new AvailabilityRunDto();
+                run.setStart(from.plusDays(start));
+                run.setNights(day - start);
+                run.setAvailable(!booked[start]);
+                runs.add(run);
+                start = day;
+            }
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,365 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.repository.ReservationSpan;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory occupancy index for availability search.
+ * Keeps one day-granular bitset per apartment for the next N days, where a set bit
+ * means the night is taken by a CONFIRMED or PENDING reservation.
+ * Bitsets are copy-on-write, so searches never lock and never touch the database.
+ * PENDING holds are tracked by expiry and their nights freed as soon as the lease runs out,
+ * without waiting for the sweeper to cancel them.
+ * An apartment's bitset is always repainted from its live stays, keyed by reservation id, so
+ * releasing a stay twice, or releasing a lapsed hold whose nights were booked again, never clears
+ * the nights of another stay.
+ */
+@Service
+public class AvailabilityIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityIndexService.class);
+
+    private static final List<ReservationStatus> BLOCKING_STATUSES = List.of(
+            ReservationStatus.CONFIRMED,
+            ReservationStatus.PENDING
+    );
+
+    private final ReservationRepository reservationRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final int horizonDays;
+    private final int words;
+
+    private volatile Snapshot snapshot;
+
+    // Live holds by reservation id, and the same holds ordered by expiry; guarded by this
+    private final Map<Long, Stay> holds = new HashMap<>();
+    private final PriorityQueue<Stay> holdsByExpiry =
+            new PriorityQueue<>(Comparator.comparing((Stay stay) -> stay.expiresAt));
+    private volatile LocalDateTime nextExpiry;
+
+    public AvailabilityIndexService(ReservationRepository reservationRepository,
+                                    ApartmentRepository apartmentRepository,
+                                    @Value("${availability.index.horizon-days:365}") int horizonDays) {
+        this.reservationRepository = reservationRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.horizonDays = horizonDays;
+        this.words = (horizonDays + 63) / 64;
+    }
+
+    /**
+     * Load the index from the database. Runs at startup and once a day to roll the window forward.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${availability.index.rebuild-cron:0 5 0 * * *}")
+    public synchronized void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate newOrigin = now.toLocalDate();
+        LocalDate end = newOrigin.plusDays(horizonDays);
+
+        Snapshot rebuilt = new Snapshot(newOrigin);
+        for (Long apartmentId : apartmentRepository.findAllIds()) {
+            rebuilt.occupancy.put(apartmentId, new long[words]);
+        }
+
+        holds.clear();
+        holdsByExpiry.clear();
+        List<ReservationSpan> spans = reservationRepository.findSpansInRange(newOrigin, end, BLOCKING_STATUSES, now);
+        for (ReservationSpan span : spans) {
+            LocalDateTime expiresAt = span.getStatus() == ReservationStatus.PENDING ? span.getHoldExpiresAt() : null;
+            Stay stay = new Stay(span.getId(), span.getApartmentId(), span.getCheckIn(), span.getCheckOut(), expiresAt);
+            rebuilt.stays.computeIfAbsent(stay.apartmentId, id -> new HashMap<>()).put(stay.reservationId, stay);
+            if (expiresAt != null) {
+                trackHold(stay);
+            }
+        }
+        for (Long apartmentId : rebuilt.stays.keySet()) {
+            repaint(rebuilt, apartmentId);
+        }
+        updateNextExpiry();
+
+        this.snapshot = rebuilt;
+        logger.info("Availability index loaded: {} apartments, {} stays, {} days from {}",
+                rebuilt.occupancy.size(), spans.size(), horizonDays, newOrigin);
+    }
+
+    /**
+     * Apartment IDs with no blocking stay in [checkIn, checkOut).
+     * Empty when the range falls outside the indexed window and the caller must ask the database.
+     */
+    public Optional<List<Long>> findAvailableApartmentIds(LocalDate checkIn, LocalDate checkOut) {
+        releaseExpiredHolds();
+        Snapshot current = snapshot;
+        if (!covers(current, checkIn, checkOut)) {
+            return Optional.empty();
+        }
+        int startDay = (int) ChronoUnit.DAYS.between(current.origin, checkIn);
+        int endDay = (int) ChronoUnit.DAYS.between(current.origin, checkOut);
+
+        List<Long> available = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : current.occupancy.entrySet()) {
+            if (isFree(entry.getValue(), startDay, endDay)) {
+                available.add(entry.getKey());
+            }
+        }
+        return Optional.of(available);
+    }
+
+    /**
+     * Whether the apartment is free for [checkIn, checkOut).
+     * Empty when the index cannot answer (unknown apartment or range outside the window).
+     */
+    public Optional<Boolean> isAvailable(Long apartmentId, LocalDate checkIn, LocalDate checkOut) {
+        releaseExpiredHolds();
+        Snapshot current = snapshot;
+        if (!covers(current, checkIn, checkOut)) {
+            return Optional.empty();
+        }
+        long[] bits = current.occupancy.get(apartmentId);
+        if (bits == null) {
+            return Optional.empty();
+        }
+        int startDay = (int) ChronoUnit.DAYS.between(current.origin, checkIn);
+        int endDay = (int) ChronoUnit.DAYS.between(current.origin, checkOut);
+        return Optional.of(isFree(bits, startDay, endDay));
+    }
+
+    /**
+     * Mark the nights of a reservation as taken once the current transaction commits,
+     * until its hold expires if it is still PENDING.
+     */
+    public void markOccupied(Reservation reservation) {
+        Stay stay = Stay.of(reservation);
+        TransactionUtils.afterCommit(() -> occupy(stay));
+    }
+
+    /**
+     * Free the nights of a reservation once the current transaction commits.
+     */
+    public void release(Reservation reservation) {
+        Stay stay = Stay.of(reservation);
+        TransactionUtils.afterCommit(() -> free(stay));
+    }
+
+    /**
+     * Free the nights of many reservations in a single index update once the current transaction commits.
+     */
+    public void releaseAll(List<Reservation> reservations) {
+        List<Stay> stays = reservations.stream().map(Stay::of).toList();
+        TransactionUtils.afterCommit(() -> freeAll(stays));
+    }
+
+    public void registerApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> putApartment(apartmentId));
+    }
+
+    public void removeApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> dropApartment(apartmentId));
+    }
+
+    private synchronized void putApartment(Long apartmentId) {
+        if (snapshot != null) {
+            snapshot.occupancy.putIfAbsent(apartmentId, new long[words]);
+        }
+    }
+
+    private synchronized void dropApartment(Long apartmentId) {
+        if (snapshot != null) {
+            snapshot.occupancy.remove(apartmentId);
+            snapshot.stays.remove(apartmentId);
+        }
+    }
+
+    private synchronized void occupy(Stay stay) {
+        drainExpiredHolds(LocalDateTime.now());
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.stays.computeIfAbsent(stay.apartmentId, id -> new HashMap<>()).put(stay.reservationId, stay);
+            repaint(current, stay.apartmentId);
+        }
+        holds.remove(stay.reservationId);
+        if (stay.expiresAt != null) {
+            trackHold(stay);
+        }
+        updateNextExpiry();
+    }
+
+    private void free(Stay stay) {
+        freeAll(List.of(stay));
+    }
+
+    private synchronized void freeAll(List<Stay> stays) {
+        drainExpiredHolds(LocalDateTime.now());
+        Snapshot current = snapshot;
+        Set<Long> changed = new HashSet<>();
+        for (Stay stay : stays) {
+            holds.remove(stay.reservationId);
+            // Only the reservation's own entry goes; one already released or expired is not there any more
+            Map<Long, Stay> apartmentStays = current != null ? current.stays.get(stay.apartmentId) : null;
+            if (apartmentStays != null && apartmentStays.remove(stay.reservationId) != null) {
+                changed.add(stay.apartmentId);
+            }
+        }
+        for (Long apartmentId : changed) {
+            repaint(current, apartmentId);
+        }
+        updateNextExpiry();
+    }
+
+    /**
+     * Cheap check on the read path: only takes the lock when some hold has actually expired.
+     */
+    private void releaseExpiredHolds() {
+        LocalDateTime next = nextExpiry;
+        if (next != null && !next.isAfter(LocalDateTime.now())) {
+            synchronized (this) {
+                drainExpiredHolds(LocalDateTime.now());
+                updateNextExpiry();
+            }
+        }
+    }
+
+    private void drainExpiredHolds(LocalDateTime now) {
+        Snapshot current = snapshot;
+        while (!holdsByExpiry.isEmpty() && !holdsByExpiry.peek().expiresAt.isAfter(now)) {
+            Stay expired = holdsByExpiry.poll();
+            // Skip entries superseded by a confirmation, release or newer lease
+            if (holds.get(expired.reservationId) == expired) {
+                holds.remove(expired.reservationId);
+                Map<Long, Stay> apartmentStays = current != null ? current.stays.get(expired.apartmentId) : null;
+                if (apartmentStays != null && apartmentStays.remove(expired.reservationId, expired)) {
+                    repaint(current, expired.apartmentId);
+                }
+            }
+        }
+    }
+
+    private void trackHold(Stay hold) {
+        holds.put(hold.reservationId, hold);
+        holdsByExpiry.add(hold);
+    }
+
+    private void updateNextExpiry() {
+        while (!holdsByExpiry.isEmpty() && holds.get(holdsByExpiry.peek().reservationId) != holdsByExpiry.peek()) {
+            holdsByExpiry.poll();
+        }
+        nextExpiry = holdsByExpiry.isEmpty() ? null : holdsByExpiry.peek().expiresAt;
+    }
+
+    /**
+     * Publish a fresh bitset for the apartment, painted from its live stays.
+     */
+    private void repaint(Snapshot current, Long apartmentId) {
+        long[] bits = new long[words];
+        Map<Long, Stay> apartmentStays = current.stays.get(apartmentId);
+        if (apartmentStays != null) {
+            for (Stay stay : apartmentStays.values()) {
+                setRange(bits, current.origin, stay.checkIn, stay.checkOut);
+            }
+            if (apartmentStays.isEmpty()) {
+                current.stays.remove(apartmentId);
+            }
+        }
+        current.occupancy.put(apartmentId, bits);
+    }
+
+    private boolean covers(Snapshot current, LocalDate checkIn, LocalDate checkOut) {
+        return current != null
+                && checkIn.isBefore(checkOut)
+                && !checkIn.isBefore(current.origin)
+                && !checkOut.isAfter(current.origin.plusDays(horizonDays));
+    }
+
+    private void setRange(long[] bits, LocalDate from, LocalDate checkIn, LocalDate checkOut) {
+        int startDay = (int) Math.max(0, ChronoUnit.DAYS.between(from, checkIn));
+        int endDay = (int) Math.min(horizonDays, ChronoUnit.DAYS.between(from, checkOut));
+        for (int w = startDay >>> 6; startDay < endDay && w <= (endDay - 1) >>> 6; w++) {
+            bits[w] |= wordMask(w, startDay, endDay);
+        }
+    }
+
+    private boolean isFree(long[] bits, int startDay, int endDay) {
+        for (int w = startDay >>> 6; w <= (endDay - 1) >>> 6; w++) {
+            if ((bits[w] & wordMask(w, startDay, endDay)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bits of word {@code w} that fall inside the day range [startDay, endDay).
+     */
+    private static long wordMask(int w, int startDay, int endDay) {
+        int lo = Math.max(startDay - (w << 6), 0);
+        int hi = Math.min(endDay - (w << 6), 64);
+        long upper = hi == 64 ? -1L : (1L << hi) - 1;
+        long lower = (1L << lo) - 1;
+        return upper & ~lower;
+    }
+
+    /**
+     * A reservation's nights and, for PENDING holds, when they stop blocking.
+     */
+    private static final class Stay {
+        private final Long reservationId;
+        private final Long apartmentId;
+        private final LocalDate checkIn;
+        private final LocalDate checkOut;
+        private final LocalDateTime expiresAt;
+
+        private Stay(Long reservationId, Long apartmentId, LocalDate checkIn, LocalDate checkOut,
+                     LocalDateTime expiresAt) {
+            this.reservationId = reservationId;
+            this.apartmentId = apartmentId;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.expiresAt = expiresAt;
+        }
+
+        private static Stay of(Reservation reservation) {
+            LocalDateTime expiresAt = reservation.getStatus() == ReservationStatus.PENDING
+                    ? reservation.getHoldExpiresAt() : null;
+            return new Stay(reservation.getId(), reservation.getApartmentId(),
+                    reservation.getCheckIn(), reservation.getCheckOut(), expiresAt);
+        }
+    }
+
+    /**
+     * Window start, the per-apartment bitsets relative to it, and the live stays they are painted
+     * from, swapped atomically on rebuild. Searches read only the bitsets; stays are guarded by the service.
+     */
+    private static final class Snapshot {
+        private final LocalDate origin;
+        private final Map<Long, long[]> occupancy = new ConcurrentHashMap<>();
+        private final Map<Long, Map<Long, Stay>> stays = new HashMap<>();
+
+        private Snapshot(LocalDate origin) {
+            this.origin = origin;
+        }
+    }
+}
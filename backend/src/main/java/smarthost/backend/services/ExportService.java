@@ -0,0 +1,185 @@
+package smarthost.backend.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.enums.ExportFormat;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.ReservationRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Streams reservations and apartments straight from a database cursor to the response as
+ * NDJSON (one JSON object per line) or CSV, flushing as it goes, so no export is ever held in memory.
+ */
+@Service
+public class ExportService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private static final List<Column<ReservationDto>> RESERVATION_COLUMNS = List.of(
+            new Column<>("id", ReservationDto::getId),
+            new Column<>("apartmentId", ReservationDto::getApartmentId),
+            new Column<>("clientId", ReservationDto::getClientId),
+            new Column<>("checkIn", ReservationDto::getCheckIn),
+            new Column<>("checkOut", ReservationDto::getCheckOut),
+            new Column<>("guests", ReservationDto::getGuests),
+            new Column<>("totalPrice", ReservationDto::getTotalPrice),
+            new Column<>("status", ReservationDto::getStatus),
+            new Column<>("specialRequest", ReservationDto::getSpecialRequest),
+            new Column<>("createdAt", ReservationDto::getCreatedAt),
+            new Column<>("guestFirstName", r -> guest(r, GuestInformationDto::getFirstName)),
+            new Column<>("guestLastName", r -> guest(r, GuestInformationDto::getLastName)),
+            new Column<>("guestEmail", r -> guest(r, GuestInformationDto::getEmail)),
+            new Column<>("guestPhone", r -> guest(r, GuestInformationDto::getPhone)),
+            new Column<>("guestCountry", r -> guest(r, GuestInformationDto::getCountry))
+    );
+
+    private static final List<Column<Apartment>> APARTMENT_COLUMNS = List.of(
+            new Column<>("id", Apartment::getId),
+            new Column<>("ownerId", Apartment::getOwnerId),
+            new Column<>("name", Apartment::getName),
+            new Column<>("address", Apartment::getAddress),
+            new Column<>("city", Apartment::getCity),
+            new Column<>("floor", Apartment::getFloor),
+            new Column<>("bedrooms", Apartment::getBedrooms),
+            new Column<>("bathrooms", Apartment::getBathrooms),
+            new Column<>("maxGuests", Apartment::getMaxGuests),
+            new Column<>("sizeM2", Apartment::getSizeM2),
+            new Column<>("basePrice", Apartment::getBasePrice),
+            new Column<>("status", Apartment::getStatus),
+            new Column<>("createdAt", Apartment::getCreatedAt)
+    );
+
+    private final ReservationRepository reservationRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExportService(ReservationRepository reservationRepository,
+                         ApartmentRepository apartmentRepository,
+                         ObjectMapper objectMapper) {
+        this.reservationRepository = reservationRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write all reservations, or only those of the owner's apartments when ownerId is set.
+     */
+    @Transactional(readOnly = true)
+    public void exportReservations(Long ownerId, ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<ReservationDto> rows = ownerId == null
+                ? reservationRepository.streamAllDtos()
+                : reservationRepository.streamDtosByApartmentOwnerId(ownerId)) {
+            write(rows.iterator(), RESERVATION_COLUMNS, format, out, row -> { });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportApartments(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<Apartment> rows = apartmentRepository.streamAll()) {
+            // Detach each written row so the persistence context does not grow with the export
+            write(rows.iterator(), APARTMENT_COLUMNS, format, out, entityManager::detach);
+        }
+    }
+
+    private <T> void write(Iterator<T> rows, List<Column<T>> columns, ExportFormat format,
+                           OutputStream out, Consumer<T> afterRow) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsv(rows, columns, out, afterRow);
+        } else {
+            writeNdjson(rows, columns, out, afterRow);
+        }
+    }
+
+    private <T> void writeNdjson(Iterator<T> rows, List<Column<T>> columns,
+                                 OutputStream out, Consumer<T> afterRow) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        int written = 0;
+        while (rows.hasNext()) {
+            T row = rows.next();
+            generator.writeStartObject();
+            for (Column<T> column : columns) {
+                generator.writeFieldName(column.name);
+                generator.writeObject(column.value.apply(row));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            afterRow.accept(row);
+            if (++written % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        }
+        generator.close();
+    }
+
+    private <T> void writeCsv(Iterator<T> rows, List<Column<T>> columns,
+                              OutputStream out, Consumer<T> afterRow) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int i = 0; i < columns.size(); i++) {
+            writer.write(i == 0 ? "" : ",");
+            writer.write(columns.get(i).name);
+        }
+        writer.write("\r\n");
+        int written = 0;
+        while (rows.hasNext()) {
+            T row = rows.next();
+            for (int i = 0; i < columns.size(); i++) {
+                writer.write(i == 0 ? "" : ",");
+                writer.write(csvField(columns.get(i).value.apply(row)));
+            }
+            writer.write("\r\n");
+            afterRow.accept(row);
+            if (++written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    private static Object guest(ReservationDto reservation, Function<GuestInformationDto, Object> field) {
+        return reservation.getGuestInformation() == null ? null : field.apply(reservation.getGuestInformation());
+    }
+
+    private static final class Column<T> {
+        private final String name;
+        private final Function<T, Object> value;
+
+        private Column(String name, Function<T, Object> value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.dto.DailyRevenueDto;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.FinanceMonthlyReport;
+import smarthost.backend.model.FinanceReport;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.FinanceMonthlyReportRepository;
+import smarthost.backend.repository.FinanceReportRepository;
+import smarthost.backend.repository.ReservationRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Per-night income and nights sold in finance_reports, rolled up per month in
+ * finance_monthly_reports, so revenue dashboards read pre-aggregated rows instead of summing
+ * reservations. A confirmed stay adds its total, split evenly over its nights, and a cancelled
+ * one subtracts it again; each change is one batched upsert per rollup level. A nightly job
+ * recomputes a window of whole months from the reservations and corrects any row that drifted.
+ * Every write adds a delta rather than setting a value, so writers never overwrite each other.
+ */
+@Service
+public class FinanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FinanceService.class);
+
+    private static final int UPSERT_CHUNK = 500;
+    private static final int MAX_REVENUE_DAYS = 366;
+
+    private static final Level DAILY = new Level("finance_reports", "report_date", "daily_income");
+    private static final Level MONTHLY = new Level("finance_monthly_reports", "report_month", "income");
+
+    private final FinanceReportRepository financeReportRepository;
+    private final FinanceMonthlyReportRepository financeMonthlyReportRepository;
+    private final ReservationRepository reservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${finance.reconcile.lookback-days:90}")
+    private int lookbackDays;
+
+    @Value("${finance.reconcile.lookahead-days:730}")
+    private int lookaheadDays;
+
+    public FinanceService(FinanceReportRepository financeReportRepository,
+                          FinanceMonthlyReportRepository financeMonthlyReportRepository,
+                          ReservationRepository reservationRepository,
+                          JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate) {
+        this.financeReportRepository = financeReportRepository;
+        this.financeMonthlyReportRepository = financeMonthlyReportRepository;
+        this.reservationRepository = reservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Add a confirmed stay's income to its nights, in the caller's transaction.
+     */
+    public void recordStay(Reservation reservation) {
+        recordStays(List.of(reservation));
+    }
+
+    /**
+     * Add the income of many confirmed stays with one upsert per {@value #UPSERT_CHUNK} rows and level.
+     */
+    public void recordStays(Collection<Reservation> reservations) {
+        Map<Slot, Totals> deltas = new TreeMap<>();
+        for (Reservation reservation : reservations) {
+            addStay(deltas, reservation.getApartmentId(), reservation.getCheckIn(), reservation.getCheckOut(),
+                    reservation.getTotalPrice(), 1);
+        }
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Take a cancelled stay's income back off its nights, in the caller's transaction.
+     */
+    public void reverseStay(Reservation reservation) {
+        Map<Slot, Totals> deltas = new TreeMap<>();
+        addStay(deltas, reservation.getApartmentId(), reservation.getCheckIn(), reservation.getCheckOut(),
+                reservation.getTotalPrice(), -1);
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Daily income of all of an owner's apartments for [from, to), with a zero for days without any.
+     *
+     * @throws IllegalArgumentException if the range is empty or longer than {@value #MAX_REVENUE_DAYS} days
+     */
+    public List<DailyRevenueDto> getDailyRevenue(Long ownerId, LocalDate from, LocalDate to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_REVENUE_DAYS) {
+            throw new IllegalArgumentException("At most " + MAX_REVENUE_DAYS + " days per request");
+        }
+        Map<LocalDate, BigDecimal> income = new HashMap<>();
+        for (Object[] row : financeReportRepository.sumDailyIncomeByOwner(ownerId, from, to)) {
+            income.put((LocalDate) row[0], (BigDecimal) row[1]);
+        }
+        List<DailyRevenueDto> days = new ArrayList<>();
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            days.add(new DailyRevenueDto(day, income.getOrDefault(day, BigDecimal.ZERO.setScale(2))));
+        }
+        return days;
+    }
+
+    /**
+     * Recompute every month from {@code lookback-days} ago to {@code lookahead-days} ahead from the
+     * confirmed reservations, and correct the daily and monthly rows that no longer match.
+     * A correction is the difference between the expected and the stored totals, both read in one
+     * transaction (one snapshot under MySQL's REPEATABLE READ), and is added to the row: a stay
+     * confirmed or cancelled while this runs is outside the snapshot, and its own delta survives
+     * instead of being overwritten with a stale total.
+     *
+     * @return number of rows corrected
+     */
+    @Scheduled(cron = "${finance.reconcile-cron:0 30 3 * * *}")
+    public int reconcile() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(lookbackDays).withDayOfMonth(1);
+        LocalDate to = today.plusDays(lookaheadDays).withDayOfMonth(1).plusMonths(1);
+        Integer corrected = transactionTemplate.execute(status -> {
+            Map<Slot, Totals> expected = new TreeMap<>();
+            for (Object[] stay : reservationRepository.findIncomeInRange(ReservationStatus.CONFIRMED, from, to)) {
+                addStay(expected, (Long) stay[0], (LocalDate) stay[1], (LocalDate) stay[2], (BigDecimal) stay[3], 1);
+            }
+            expected.keySet().removeIf(slot -> slot.date.isBefore(from) || !slot.date.isBefore(to));
+
+            Map<Slot, Totals> storedDays = new HashMap<>();
+            for (FinanceReport report : financeReportRepository.findInRange(from, to)) {
+                storedDays.put(new Slot(report.getApartmentId(), report.getReportDate()),
+                        Totals.of(report.getDailyIncome(), report.getNightsSold()));
+            }
+            Map<Slot, Totals> storedMonths = new HashMap<>();
+            for (FinanceMonthlyReport report : financeMonthlyReportRepository.findInRange(from, to)) {
+                storedMonths.put(new Slot(report.getApartmentId(), report.getReportMonth()),
+                        Totals.of(report.getIncome(), report.getNightsSold()));
+            }
+
+            Map<Slot, Totals> dayCorrections = corrections(expected, storedDays);
+            Map<Slot, Totals> monthCorrections = corrections(byMonth(expected), storedMonths);
+            upsert(DAILY, dayCorrections);
+            upsert(MONTHLY, monthCorrections);
+            return dayCorrections.size() + monthCorrections.size();
+        });
+        if (corrected != null && corrected > 0) {
+            logger.warn("Finance reconciliation for [{}, {}) corrected {} drifted rows", from, to, corrected);
+        }
+        return corrected != null ? corrected : 0;
+    }
+
+    /**
+     * What to add to each drifted row to bring it to the expected totals; stored rows nothing is
+     * expected for are brought to zero.
+     */
+    private static Map<Slot, Totals> corrections(Map<Slot, Totals> expected, Map<Slot, Totals> stored) {
+        Map<Slot, Totals> corrections = new TreeMap<>();
+        stored.forEach((slot, totals) -> {
+            if (!expected.containsKey(slot) && !totals.isZero()) {
+                corrections.put(slot, new Totals().add(-totals.cents, -totals.nights));
+            }
+        });
+        expected.forEach((slot, totals) -> {
+            Totals current = stored.getOrDefault(slot, new Totals());
+            if (!totals.equals(current)) {
+                corrections.put(slot, new Totals().add(totals.cents - current.cents, totals.nights - current.nights));
+            }
+        });
+        return corrections;
+    }
+
+    private void applyDeltas(Map<Slot, Totals> deltas) {
+        upsert(DAILY, deltas);
+        upsert(MONTHLY, byMonth(deltas));
+    }
+
+    private static Map<Slot, Totals> byMonth(Map<Slot, Totals> days) {
+        Map<Slot, Totals> months = new TreeMap<>();
+        days.forEach((slot, totals) -> months
+                .computeIfAbsent(new Slot(slot.apartmentId, slot.date.withDayOfMonth(1)), key -> new Totals())
+                .add(totals.cents, totals.nights));
+        return months;
+    }
+
+    /**
+     * Spread a stay's total over its nights in whole cents; leftover cents go to the first nights
+     * so the nights always add up to the total. A sign of -1 subtracts the stay instead.
+     */
+    private static void addStay(Map<Slot, Totals> deltas, Long apartmentId, LocalDate checkIn,
+                                LocalDate checkOut, BigDecimal total, int sign) {
+        if (apartmentId == null || checkIn == null || checkOut == null || total == null || !checkIn.isBefore(checkOut)) {
+            return;
+        }
+        long nights = ChronoUnit.DAYS.between(checkIn, checkOut);
+        long cents = total.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        long perNight = cents / nights;
+        long remainder = cents % nights;
+        for (int i = 0; i < nights; i++) {
+            long share = perNight + (i < remainder ? 1 : 0);
+            deltas.computeIfAbsent(new Slot(apartmentId, checkIn.plusDays(i)), key -> new Totals())
+                    .add(sign * share, sign);
+        }
+    }
+
+    /**
+     * One multi-row INSERT ... ON DUPLICATE KEY UPDATE per chunk, in key order so concurrent
+     * writers lock the rows in the same order. Adds the deltas to the stored totals.
+     */
+    private void upsert(Level level, Map<Slot, Totals> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String onDuplicate = " ON DUPLICATE KEY UPDATE "
+                + level.incomeColumn + " = " + level.incomeColumn + " + VALUES(" + level.incomeColumn + "), "
+                + "nights_sold = nights_sold + VALUES(nights_sold)";
+        List<Map.Entry<Slot, Totals>> entries = new ArrayList<>(deltas.entrySet());
+        for (int start = 0; start < entries.size(); start += UPSERT_CHUNK) {
+            List<Map.Entry<Slot, Totals>> chunk = entries.subList(start, Math.min(entries.size(), start + UPSERT_CHUNK));
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(level.table)
+                    .append(" (apartment_id, ").append(level.dateColumn).append(", ").append(level.incomeColumn)
+                    .append(", nights_sold) VALUES ");
+            Object[] args = new Object[chunk.size() * 4];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                Slot slot = chunk.get(i).getKey();
+                Totals totals = chunk.get(i).getValue();
+                args[i * 4] = slot.apartmentId;
+                args[i * 4 + 1] = Date.valueOf(slot.date);
+                args[i * 4 + 2] = BigDecimal.valueOf(totals.cents, 2);
+                args[i * 4 + 3] = totals.nights;
+            }
+            jdbcTemplate.update(sql.append(onDuplicate).toString(), args);
+        }
+    }
+
+    private static final class Level {
+        private final String table;
+        private final String dateColumn;
+        private final String incomeColumn;
+
+        private Level(String table, String dateColumn, String incomeColumn) {
+            this.table = table;
+            this.dateColumn = dateColumn;
+            this.incomeColumn = incomeColumn;
+        }
+    }
+
+    /**
+     * An apartment's day, or month when the date is the first of the month.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        private final Long apartmentId;
+        private final LocalDate date;
+
+        private Slot(Long apartmentId, LocalDate date) {
+            this.apartmentId = apartmentId;
+            this.date = date;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            int byApartment = apartmentId.compareTo(other.apartmentId);
+            return byApartment != 0 ? byApartment : date.compareTo(other.date);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Slot slot && apartmentId.equals(slot.apartmentId) && date.equals(slot.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apartmentId, date);
+        }
+    }
+
+    private static final class Totals {
+        private long cents;
+        private int nights;
+
+        private static Totals of(BigDecimal income, Integer nights) {
+            Totals totals = new Totals();
+            totals.add(income.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact(),
+                    nights != null ? nights : 0);
+            return totals;
+        }
+
+        private Totals add(long cents, int nights) {
+            this.cents += cents;
+            this.nights += nights;
+            return this;
+        }
+
+        private boolean isZero() {
+            return cents == 0 && nights == 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Totals totals && cents == totals.cents && nights == totals.nights;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cents, nights);
+        }
+    }
+}
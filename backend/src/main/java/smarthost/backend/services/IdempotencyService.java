@@ -0,0 +1,236 @@
+package smarthost.backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.enums.IdempotencyStatus;
+import smarthost.backend.exceptions.IdempotencyKeyException;
+import smarthost.backend.model.IdempotencyKey;
+import smarthost.backend.repository.IdempotencyKeyRepository;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Idempotency-Key handling for reservation creation.
+ * The first request with a key claims it in the idempotency_keys table, which is shared by all
+ * nodes; once it finishes, its response is stored there and in a bounded in-memory LRU cache,
+ * and retries from the same client with the same key and payload get that response back without
+ * doing the work again.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration abandonAfter;
+    private final Map<String, CachedResponse> cache;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.abandon-after:2m}") Duration abandonAfter,
+                              @Value("${idempotency.cache.max-entries:10000}") int maxEntries) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.abandonAfter = abandonAfter;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Claim a key for a new request, or find the response already produced for it.
+     *
+     * @param clientId the caller, or null for a guest; a key's response is only replayed to the
+     *                 client that first sent it
+     * @return a claim holding the stored response for a replay; otherwise the caller now owns the
+     * key and must run the request and then call {@link #complete} or {@link #release}
+     * @throws IdempotencyKeyException if the key is malformed, still in progress, or was used
+     *                                 with a different payload or by a different client
+     */
+    public Claim claim(String key, Long clientId, Object request) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException(400, "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(request);
+        // Millisecond precision survives a round trip through any DATETIME/TIMESTAMP column,
+        // so the claim can be matched on it later
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        CachedResponse cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.expiresAt.isAfter(now)) {
+            checkSameRequest(cached.clientId, cached.requestHash, clientId, requestHash);
+            return new Claim(key, clientId, now, read(cached.responseBody));
+        }
+
+        LocalDateTime expiresAt = now.plus(ttl);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyKeyRepository.insertClaim(key, clientId, requestHash, now, expiresAt));
+            return new Claim(key, clientId, now, null);
+        } catch (DataIntegrityViolationException e) {
+            // Key already exists; fall through to see what state it is in
+        }
+
+        Integer reclaimed = transactionTemplate.execute(status -> idempotencyKeyRepository.reclaim(
+                key, clientId, requestHash, IdempotencyStatus.IN_PROGRESS, now, expiresAt, now.minus(abandonAfter)));
+        if (reclaimed != null && reclaimed > 0) {
+            return new Claim(key, clientId, now, null);
+        }
+
+        IdempotencyKey existing = idempotencyKeyRepository.findById(key)
+                .orElseThrow(() -> new IdempotencyKeyException(409, "Request with this Idempotency-Key is in progress"));
+        checkSameRequest(existing.getClientId(), existing.getRequestHash(), clientId, requestHash);
+        if (existing.getStatus() != IdempotencyStatus.COMPLETED) {
+            throw new IdempotencyKeyException(409, "Request with this Idempotency-Key is in progress");
+        }
+        remember(key, new CachedResponse(existing.getClientId(), existing.getRequestHash(),
+                existing.getResponseBody(), existing.getExpiresAt()));
+        return new Claim(key, clientId, now, read(existing.getResponseBody()));
+    }
+
+    /**
+     * Store the response for a claimed key so retries can replay it. Joins the caller's
+     * transaction if there is one, so the key is completed exactly when the booking commits.
+     *
+     * @throws IdempotencyKeyException if a retry reclaimed the key after this claim was abandoned
+     */
+    public void complete(Claim claim, Object request, ReservationDto response) {
+        String responseBody = write(response);
+        String requestHash = hash(request);
+        Integer completed = transactionTemplate.execute(status -> idempotencyKeyRepository.complete(
+                claim.key, IdempotencyStatus.IN_PROGRESS, claim.claimedAt,
+                IdempotencyStatus.COMPLETED, response.getId(), responseBody));
+        if (completed == null || completed == 0) {
+            throw new IdempotencyKeyException(409, "Idempotency-Key was taken over by a retry of this request");
+        }
+        TransactionUtils.afterCommit(() -> remember(claim.key,
+                new CachedResponse(claim.clientId, requestHash, responseBody, LocalDateTime.now().plus(ttl))));
+    }
+
+    /**
+     * Give a claimed key up after its request failed, so the client can retry with it. A key a
+     * retry has since reclaimed is left to that retry.
+     */
+    public void release(Claim claim) {
+        transactionTemplate.executeWithoutResult(status -> idempotencyKeyRepository.deleteInProgress(
+                claim.key, IdempotencyStatus.IN_PROGRESS, claim.claimedAt));
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer purged = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteExpired(now));
+        synchronized (cache) {
+            cache.values().removeIf(entry -> !entry.expiresAt.isAfter(now));
+        }
+        if (purged != null && purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private void remember(String key, CachedResponse response) {
+        synchronized (cache) {
+            cache.put(key, response);
+        }
+    }
+
+    private static void checkSameRequest(Long storedClientId, String storedHash, Long clientId, String requestHash) {
+        if (!Objects.equals(storedClientId, clientId) || !storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyException(422, "Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Could not hash request", e);
+        }
+    }
+
+    private String write(ReservationDto response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not store idempotent response", e);
+        }
+    }
+
+    private ReservationDto read(String responseBody) {
+        try {
+            return objectMapper.readValue(responseBody, ReservationDto.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read idempotent response", e);
+        }
+    }
+
+    /**
+     * A key claimed for one request, or the stored response when the request is a replay.
+     */
+    public static final class Claim {
+        private final String key;
+        private final Long clientId;
+        private final LocalDateTime claimedAt;
+        private final ReservationDto replay;
+
+        private Claim(String key, Long clientId, LocalDateTime claimedAt, ReservationDto replay) {
+            this.key = key;
+            this.clientId = clientId;
+            this.claimedAt = claimedAt;
+            this.replay = replay;
+        }
+
+        public Optional<ReservationDto> getReplay() {
+            return Optional.ofNullable(replay);
+        }
+    }
+
+    private static final class CachedResponse {
+        private final Long clientId;
+        private final String requestHash;
+        private final String responseBody;
+        private final LocalDateTime expiresAt;
+
+        private CachedResponse(Long clientId, String requestHash, String responseBody, LocalDateTime expiresAt) {
+            this.clientId = clientId;
+            this.requestHash = requestHash;
+            this.responseBody = responseBody;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
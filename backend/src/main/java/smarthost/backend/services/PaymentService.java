@@ -1,49 +1,180 @@
 package smarthost.backend.services;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import smarthost.backend.enums.PaymentStatus;
 import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.exceptions.NotFoundException;
 import smarthost.backend.model.Payment;
 import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ApartmentRepository;
 import smarthost.backend.repository.PaymentRepository;
 import smarthost.backend.repository.ReservationRepository;
 
 @Service
 public class PaymentService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+
     @Autowired
     private PaymentRepository paymentRepository;
 
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private ApartmentRepository apartmentRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Autowired
+    private ReservationCalendarService reservationCalendarService;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Confirm a paid reservation. A payment can arrive after the hold's lease has lapsed, for
+     * example when the webhook is retried; if another stay has taken the nights since, the
+     * reservation is cancelled and the payment is marked for refund instead.
+     *
+     * @throws NotFoundException if the reservation does not exist
+     */
     @Transactional
     public void handleSuccessfulPayment(Long reservationId, String sessionId, String paymentIntentId) {
-        // Update reservation status
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Reservation not found"));
+        // Same lock as placing a hold, so no booking can commit between the check and the confirm.
+        // It comes before any read in this transaction: under REPEATABLE READ the first read fixes
+        // the snapshot, which would then hide a booking committed while we waited for the lock.
+        apartmentRepository.findByIdForUpdate(apartmentIdOf(reservationId));
+        Reservation reservation = reservationRepository.findByIdForUpdate(reservationId)
+                .orElseThrow(() -> new NotFoundException("Reservation not found"));
+
+        if (reservation.getStatus() == ReservationStatus.CONFIRMED) {
+            return; // Already confirmed by an earlier delivery of this payment
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean lapsed = reservation.getStatus() == ReservationStatus.CANCELLED
+                || (reservation.getHoldExpiresAt() != null && !reservation.getHoldExpiresAt().isAfter(now));
+        // A lapsed hold no longer counts as a live stay, so it does not find itself here
+        if (lapsed && reservationRepository.existsOverlappingReservation(reservation.getApartmentId(),
+                reservation.getCheckIn(), reservation.getCheckOut(),
+                List.of(ReservationStatus.CONFIRMED, ReservationStatus.PENDING), now)) {
+            refuseLatePayment(reservation, sessionId, paymentIntentId);
+            return;
+        }
 
         reservation.setStatus(ReservationStatus.CONFIRMED);
+        reservation.setHoldExpiresAt(null); // Confirmed stays no longer expire
         reservationRepository.save(reservation);
+        availabilityIndexService.markOccupied(reservation);
+        reservationCalendarService.put(reservation);
+        financeService.recordStay(reservation);
+
+        savePayment(reservation, sessionId, paymentIntentId, PaymentStatus.PAID);
+    }
+
+    /**
+     * A reservation's apartment, read in a transaction of its own so the caller's snapshot is not
+     * taken yet; it never changes, so reading it early is safe.
+     */
+    private Long apartmentIdOf(Long reservationId) {
+        TransactionTemplate separate = new TransactionTemplate(transactionManager);
+        separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        separate.setReadOnly(true);
+        return separate.execute(status -> reservationRepository.findApartmentIdById(reservationId))
+                .orElseThrow(() -> new NotFoundException("Reservation not found"));
+    }
 
-        // Create payment record
+    private void refuseLatePayment(Reservation reservation, String sessionId, String paymentIntentId) {
+        if (paymentRepository.existsByReservationIdAndStatus(reservation.getId(), PaymentStatus.REFUND_REQUIRED)) {
+            return; // Already refused on an earlier delivery
+        }
+        logger.warn("Payment {} for reservation {} arrived after its hold lapsed and the nights were rebooked; "
+                + "marked for refund", paymentIntentId, reservation.getId());
+        if (reservation.getStatus() != ReservationStatus.CANCELLED) {
+            reservation.setStatus(ReservationStatus.CANCELLED);
+            reservationRepository.save(reservation);
+            availabilityIndexService.release(reservation);
+            reservationCalendarService.remove(reservation.getApartmentId(), reservation.getId());
+        }
+        savePayment(reservation, sessionId, paymentIntentId, PaymentStatus.REFUND_REQUIRED);
+    }
+
+    private void savePayment(Reservation reservation, String sessionId, String paymentIntentId,
+                             PaymentStatus status) {
         Payment payment = new Payment();
-        payment.setReservationId(reservationId);
+        payment.setReservationId(reservation.getId());
         payment.setAmount(reservation.getTotalPrice());
         payment.setProvider("STRIPE");
         payment.setStripeSessionId(sessionId);
         payment.setStripePaymentIntentId(paymentIntentId);
-        payment.setStatus(PaymentStatus.PAID);
+        payment.setStatus(status);
 
         paymentRepository.save(payment);
     }
 
+    /**
+     * Cancel a confirmed stay: its dates become free again and its income is taken back off
+     * the finance reports. Cancelling an already cancelled stay does nothing.
+     *
+     * @throws IllegalArgumentException if the reservation is not confirmed
+     */
+    @Transactional
+    public void cancelReservation(Long reservationId) {
+        Reservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new NotFoundException("Reservation not found"));
+        if (reservation.getStatus() == ReservationStatus.CANCELLED) {
+            return;
+        }
+        if (reservation.getStatus() != ReservationStatus.CONFIRMED) {
+            throw new IllegalArgumentException("Only confirmed reservations can be cancelled");
+        }
+        reservation.setStatus(ReservationStatus.CANCELLED);
+        reservationRepository.save(reservation);
+        availabilityIndexService.release(reservation);
+        reservationCalendarService.remove(reservation.getApartmentId(), reservation.getId());
+        financeService.reverseStay(reservation);
+    }
 
+    /**
+     * Release the holds of abandoned or failed checkouts in one go: three bulk deletes and one
+     * index update, however many reservations there are. Reservations that are no longer PENDING
+     * (already paid, cancelled or gone) are left alone.
+     *
+     * @return number of holds released
+     */
+    @Transactional
+    public int releaseHolds(Collection<Long> reservationIds) {
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        List<Reservation> holds = reservationRepository.findByIdInAndStatusForUpdate(reservationIds, ReservationStatus.PENDING);
+        if (holds.isEmpty()) {
+            return 0;
+        }
+        List<Long> holdIds = holds.stream().map(Reservation::getId).toList();
+        reservationRepository.deleteGuestInformationByReservationIds(holdIds);
+        reservationRepository.deletePaymentsByReservationIds(holdIds);
+        int released = reservationRepository.deleteByIdInAndStatus(holdIds, ReservationStatus.PENDING);
+        availabilityIndexService.releaseAll(holds);
+        reservationCalendarService.removeAll(holds);
+        return released;
+    }
 
     @Transactional
     public void deleteReservation(Long reservationId) {
@@ -54,6 +185,8 @@ public class PaymentService {
         if (reservation != null) {
             // Delete will cascade to GuestInformation and Payments due to ON DELETE CASCADE
             reservationRepository.delete(reservation);
+            availabilityIndexService.release(reservation);
+            reservationCalendarService.remove(reservation.getApartmentId(), reservation.getId());
             System.out.println("Reservation deleted successfully");
         } else {
             System.out.println("Reservation not found, may have been already deleted");
@@ -0,0 +1,201 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.dto.NightlyPriceDto;
+import smarthost.backend.model.PriceCalendarDay;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.PriceCalendarRepository;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materialized nightly prices for the next {@code pricing.calendar.horizon-days} days, kept in the
+ * price_calendar table so search can sort and filter by stay total with a range sum.
+ * A price change recomputes only the affected dates and writes only the nights whose price moved;
+ * a daily job drops past nights and materializes the new last one.
+ */
+@Service
+public class PriceCalendarService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceCalendarService.class);
+
+    private static final int UPSERT_CHUNK = 500;
+
+    private final PriceCalendarRepository priceCalendarRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final PriceQuoteService priceQuoteService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int horizonDays;
+
+    public PriceCalendarService(PriceCalendarRepository priceCalendarRepository,
+                                ApartmentRepository apartmentRepository,
+                                PriceQuoteService priceQuoteService,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${pricing.calendar.horizon-days:365}") int horizonDays) {
+        this.priceCalendarRepository = priceCalendarRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.priceQuoteService = priceQuoteService;
+        this.jdbcTemplate = jdbcTemplate;
+        // Refreshes run after the caller's commit, so they need a transaction of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Recompute an apartment's whole calendar once the current transaction commits.
+     */
+    public void refresh(Long apartmentId) {
+        refresh(apartmentId, null, null);
+    }
+
+    /**
+     * Recompute the nights in [from, to) once the current transaction commits; a null bound
+     * means the edge of the calendar.
+     */
+    public void refresh(Long apartmentId, LocalDate from, LocalDate to) {
+        TransactionUtils.afterCommit(() -> recompute(apartmentId, from, to));
+    }
+
+    /**
+     * Drop an apartment's calendar once the current transaction commits.
+     */
+    public void removeApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> transactionTemplate.executeWithoutResult(
+                status -> priceCalendarRepository.deleteByApartmentId(apartmentId)));
+    }
+
+    /**
+     * True when every night of [checkIn, checkOut) is inside the materialized window.
+     */
+    public boolean covers(LocalDate checkIn, LocalDate checkOut) {
+        LocalDate today = LocalDate.now();
+        return !checkIn.isBefore(today) && !checkOut.isAfter(today.plusDays(horizonDays));
+    }
+
+    /**
+     * Stay totals for [checkIn, checkOut) by apartment, from one grouped range sum. Apartments
+     * whose calendar does not cover every night are left out.
+     */
+    public Map<Long, BigDecimal> stayTotals(Collection<Long> apartmentIds, LocalDate checkIn, LocalDate checkOut) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        if (apartmentIds.isEmpty()) {
+            return totals;
+        }
+        long nights = ChronoUnit.DAYS.between(checkIn, checkOut);
+        for (Object[] row : priceCalendarRepository.sumStays(apartmentIds, checkIn, checkOut)) {
+            if (((Number) row[2]).longValue() == nights) {
+                totals.put((Long) row[0], (BigDecimal) row[1]);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Roll the window forward: drop past nights and fill each apartment up to the horizon.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${pricing.calendar.roll-cron:0 5 0 * * *}")
+    public void roll() {
+        LocalDate today = LocalDate.now();
+        Integer dropped = transactionTemplate.execute(status -> priceCalendarRepository.deleteBefore(today));
+        Map<Long, LocalDate> lastDays = new HashMap<>();
+        for (Object[] row : priceCalendarRepository.findLastDays()) {
+            lastDays.put((Long) row[0], (LocalDate) row[1]);
+        }
+        int extended = 0;
+        for (Long apartmentId : apartmentRepository.findAllIds()) {
+            LocalDate last = lastDays.get(apartmentId);
+            LocalDate from = last == null || last.isBefore(today) ? today : last.plusDays(1);
+            if (from.isBefore(today.plusDays(horizonDays))) {
+                recompute(apartmentId, from, null);
+                extended++;
+            }
+        }
+        logger.info("Price calendar rolled to {}: dropped {} past nights, extended {} apartments",
+                today, dropped, extended);
+    }
+
+    /**
+     * Recompute [from, to) under the apartment's row lock, so overlapping recomputes (a roll and a
+     * rule change, or two rule edits) run one after the other and the last one to commit saw the
+     * latest prices. The lock is the transaction's first statement, so its snapshot starts after it.
+     */
+    private void recompute(Long apartmentId, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        LocalDate end = today.plusDays(horizonDays);
+        LocalDate start = from == null || from.isBefore(today) ? today : from;
+        LocalDate stop = to == null || to.isAfter(end) ? end : to;
+        if (!start.isBefore(stop)) {
+            return;
+        }
+        Integer written;
+        try {
+            written = transactionTemplate.execute(status -> {
+                if (apartmentRepository.findByIdForUpdate(apartmentId).isEmpty()) {
+                    return 0; // Deleted; its calendar goes with it
+                }
+                List<NightlyPriceDto> prices = priceQuoteService.nightlyPrices(apartmentId, start, stop);
+                Map<LocalDate, BigDecimal> stored = new HashMap<>();
+                for (PriceCalendarDay day : priceCalendarRepository.findRange(apartmentId, start, stop)) {
+                    stored.put(day.getStayDate(), day.getPrice());
+                }
+                List<NightlyPriceDto> changed = new ArrayList<>();
+                for (NightlyPriceDto night : prices) {
+                    BigDecimal price = stored.get(night.getDate());
+                    if (price == null || price.compareTo(night.getPrice()) != 0) {
+                        changed.add(night);
+                    }
+                }
+                upsert(apartmentId, changed);
+                return changed.size();
+            });
+        } catch (RuntimeException e) {
+            // Unpriceable; nothing to materialize
+            logger.warn("Cannot price apartment {} for the calendar: {}", apartmentId, e.getMessage());
+            return;
+        }
+        logger.debug("Price calendar of apartment {} refreshed for [{}, {}): {} nights written",
+                apartmentId, start, stop, written);
+    }
+
+    /**
+     * One multi-row INSERT ... ON DUPLICATE KEY UPDATE per chunk, so a night that appeared since
+     * it was read is overwritten rather than failing on the primary key.
+     */
+    private void upsert(Long apartmentId, List<NightlyPriceDto> nights) {
+        for (int start = 0; start < nights.size(); start += UPSERT_CHUNK) {
+            List<NightlyPriceDto> chunk = nights.subList(start, Math.min(nights.size(), start + UPSERT_CHUNK));
+            StringBuilder sql = new StringBuilder("INSERT INTO price_calendar (apartment_id, stay_date, price) VALUES ");
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args[i * 3] = apartmentId;
+                args[i * 3 + 1] = Date.valueOf(chunk.get(i).getDate());
+                args[i * 3 + 2] = chunk.get(i).getPrice();
+            }
+            jdbcTemplate.update(sql.append(" ON DUPLICATE KEY UPDATE price = VALUES(price)").toString(), args);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package smarthost.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import smarthost.backend.dto.NightlyPriceDto;
+import smarthost.backend.dto.PriceQuoteDto;
+import smarthost.backend.exceptions.NotFoundException;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.model.PriceRule;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.PriceRuleRepository;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side stay pricing from an apartment's base price and its {@link PriceRule}s.
+ * Each apartment's rules are compiled once into a multiplier per day over a rolling horizon,
+ * so a quote is a single pass over the stay's nights. Compiled prices are cached until the
+ * apartment or its rules change.
+ */
+@Service
+public class PriceQuoteService {
+
+    private static final int MAX_QUOTE_NIGHTS = 365;
+
+    private final ApartmentRepository apartmentRepository;
+    private final PriceRuleRepository priceRuleRepository;
+    private final int horizonDays;
+
+    private final Map<Long, CompiledPrices> cache = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidation, so a compile that raced with a rule change is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PriceQuoteService(ApartmentRepository apartmentRepository,
+                             PriceRuleRepository priceRuleRepository,
+                             @Value("${pricing.quote.horizon-days:730}") int horizonDays) {
+        this.apartmentRepository = apartmentRepository;
+        this.priceRuleRepository = priceRuleRepository;
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Price of the nights from checkIn up to, not including, checkOut.
+     *
+     * @throws IllegalArgumentException if the dates or guest count are invalid for the apartment
+     */
+    public PriceQuoteDto quote(Long apartmentId, LocalDate checkIn, LocalDate checkOut, Integer guests) {
+        if (checkIn == null || checkOut == null || !checkIn.isBefore(checkOut)) {
+            throw new IllegalArgumentException("checkIn must be before checkOut");
+        }
+        long nights = ChronoUnit.DAYS.between(checkIn, checkOut);
+        if (nights > MAX_QUOTE_NIGHTS) {
+            throw new IllegalArgumentException("A stay can be at most " + MAX_QUOTE_NIGHTS + " nights");
+        }
+        CompiledPrices prices = compiled(apartmentId);
+        if (guests != null && (guests < 1 || (prices.maxGuests != null && guests > prices.maxGuests))) {
+            throw new IllegalArgumentException("Apartment sleeps 1 to " + prices.maxGuests + " guests");
+        }
+
+        List<NightlyPriceDto> nightly = new ArrayList<>((int) nights);
+        BigDecimal total = BigDecimal.ZERO;
+        for (LocalDate night = checkIn; night.isBefore(checkOut); night = night.plusDays(1)) {
+            BigDecimal price = prices.priceOn(night);
+            nightly.add(new NightlyPriceDto(night, price));
+            total = total.add(price);
+        }
+
+        PriceQuoteDto quote = new PriceQuoteDto();
+        quote.setApartmentId(apartmentId);
+        quote.setCheckIn(checkIn);
+        quote.setCheckOut(checkOut);
+        quote.setGuests(guests);
+        quote.setNights((int) nights);
+        quote.setNightly(nightly);
+        quote.setTotal(total);
+        return quote;
+    }
+
+    /**
+     * Totals of the same stay at many apartments, from one query for all their rules. Rules are
+     * laid over the stay's nights for each apartment in turn, and nights with the same adjustment
+     * are priced once, so each total matches what {@link #quote} returns for that apartment.
+     */
+    public Map<Long, BigDecimal> quoteAll(Collection<Apartment> apartments, LocalDate checkIn, LocalDate checkOut) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        if (apartments.isEmpty() || !checkIn.isBefore(checkOut)) {
+            return totals;
+        }
+        int nights = (int) ChronoUnit.DAYS.between(checkIn, checkOut);
+        int[] dayBits = new int[nights];
+        for (int i = 0; i < nights; i++) {
+            dayBits[i] = 1 << checkIn.plusDays(i).getDayOfWeek().ordinal();
+        }
+
+        List<Long> apartmentIds = apartments.stream().map(Apartment::getId).toList();
+        Map<Long, List<CompiledRule>> rulesByApartment = new HashMap<>();
+        for (PriceRule rule : priceRuleRepository.findCovering(apartmentIds, checkIn, checkOut)) {
+            rulesByApartment.computeIfAbsent(rule.getApartmentId(), id -> new ArrayList<>()).add(CompiledRule.of(rule));
+        }
+
+        int[] basisPoints = new int[nights];
+        for (Apartment apartment : apartments) {
+            if (apartment.getBasePrice() == null) {
+                continue;
+            }
+            Arrays.fill(basisPoints, 0);
+            for (CompiledRule rule : rulesByApartment.getOrDefault(apartment.getId(), List.of())) {
+                int from = rule.start == null ? 0 : (int) Math.max(0, ChronoUnit.DAYS.between(checkIn, rule.start));
+                int to = rule.end == null ? nights : (int) Math.min(nights, ChronoUnit.DAYS.between(checkIn, rule.end) + 1);
+                for (int i = from; i < to; i++) {
+                    if ((rule.dayMask & dayBits[i]) != 0) {
+                        basisPoints[i] += rule.basisPoints;
+                    }
+                }
+            }
+            Map<Integer, Integer> nightsAt = new HashMap<>();
+            for (int adjustment : basisPoints) {
+                nightsAt.merge(adjustment, 1, Integer::sum);
+            }
+            BigDecimal total = BigDecimal.ZERO;
+            for (Map.Entry<Integer, Integer> entry : nightsAt.entrySet()) {
+                BigDecimal price = apartment.getBasePrice().multiply(CompiledPrices.multiplier(entry.getKey()))
+                        .setScale(2, RoundingMode.HALF_UP);
+                total = total.add(price.multiply(BigDecimal.valueOf(entry.getValue())));
+            }
+            totals.put(apartment.getId(), total);
+        }
+        return totals;
+    }
+
+    /**
+     * Effective price of every night in [from, to), with no limit on the range.
+     */
+    public List<NightlyPriceDto> nightlyPrices(Long apartmentId, LocalDate from, LocalDate to) {
+        CompiledPrices prices = compiled(apartmentId);
+        List<NightlyPriceDto> nightly = new ArrayList<>();
+        for (LocalDate night = from; night.isBefore(to); night = night.plusDays(1)) {
+            nightly.add(new NightlyPriceDto(night, prices.priceOn(night)));
+        }
+        return nightly;
+    }
+
+    /**
+     * Drop an apartment's compiled prices once the current transaction commits.
+     */
+    public void invalidate(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.remove(apartmentId);
+        });
+    }
+
+    private CompiledPrices compiled(Long apartmentId) {
+        CompiledPrices cached = cache.get(apartmentId);
+        if (cached != null) {
+            return cached;
+        }
+        long seen = invalidations.get();
+        Apartment apartment = apartmentRepository.findById(apartmentId)
+                .orElseThrow(() -> new NotFoundException("Apartment not found with id: " + apartmentId));
+        if (apartment.getBasePrice() == null) {
+            throw new IllegalArgumentException("Apartment " + apartmentId + " has no base price");
+        }
+        CompiledPrices compiled = compile(apartment, priceRuleRepository.findByApartmentIdOrderById(apartmentId));
+        if (invalidations.get() == seen) {
+            cache.put(apartmentId, compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledPrices compile(Apartment apartment, List<PriceRule> priceRules) {
+        List<CompiledRule> rules = priceRules.stream().map(CompiledRule::of).toList();
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(horizonDays);
+
+        // Sum the adjustments of every rule covering a day, in hundredths of a percent
+        int[] basisPoints = new int[horizonDays];
+        for (CompiledRule rule : rules) {
+            LocalDate start = rule.start != null && rule.start.isAfter(from) ? rule.start : from;
+            LocalDate end = rule.end != null && rule.end.isBefore(to) ? rule.end.plusDays(1) : to;
+            for (LocalDate day = start; day.isBefore(end); day = day.plusDays(1)) {
+                if (rule.appliesOn(day.getDayOfWeek())) {
+                    basisPoints[(int) ChronoUnit.DAYS.between(from, day)] += rule.basisPoints;
+                }
+            }
+        }
+
+        // Few distinct multipliers in practice, so days share instances
+        Map<Integer, BigDecimal> distinct = new HashMap<>();
+        BigDecimal[] multipliers = new BigDecimal[horizonDays];
+        for (int i = 0; i < horizonDays; i++) {
+            multipliers[i] = distinct.computeIfAbsent(basisPoints[i], CompiledPrices::multiplier);
+        }
+        return new CompiledPrices(apartment.getBasePrice(), apartment.getMaxGuests(), from, multipliers, rules);
+    }
+
+    private static final class CompiledPrices {
+        private final BigDecimal basePrice;
+        private final Integer maxGuests;
+        private final LocalDate from;
+        private final BigDecimal[] multipliers;
+        private final List<CompiledRule> rules;
+
+        private CompiledPrices(BigDecimal basePrice, Integer maxGuests, LocalDate from,
+                               BigDecimal[] multipliers, List<CompiledRule> rules) {
+            this.basePrice = basePrice;
+            this.maxGuests = maxGuests;
+            this.from = from;
+            this.multipliers = multipliers;
+            this.rules = rules;
+        }
+
+        private BigDecimal priceOn(LocalDate night) {
+            return basePrice.multiply(multiplierOn(night)).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        private BigDecimal multiplierOn(LocalDate day) {
+            long index = ChronoUnit.DAYS.between(from, day);
+            if (index >= 0 && index < multipliers.length) {
+                return multipliers[(int) index];
+            }
+            // Outside the compiled horizon: evaluate the rules directly
+            int basisPoints = 0;
+            for (CompiledRule rule : rules) {
+                if (rule.covers(day)) {
+                    basisPoints += rule.basisPoints;
+                }
+            }
+            return multiplier(basisPoints);
+        }
+
+        private static BigDecimal multiplier(int basisPoints) {
+            // Discounts that add up to more than 100% make the night free, never negative
+            return BigDecimal.valueOf(Math.max(0, 10_000 + basisPoints), 4);
+        }
+    }
+
+    private static final class CompiledRule {
+        private final LocalDate start;
+        private final LocalDate end;
+        private final int dayMask;
+        private final int basisPoints;
+
+        private CompiledRule(LocalDate start, LocalDate end, int dayMask, int basisPoints) {
+            this.start = start;
+            this.end = end;
+            this.dayMask = dayMask;
+            this.basisPoints = basisPoints;
+        }
+
+        private static CompiledRule of(PriceRule rule) {
+            int basisPoints = rule.getPercentage().movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+            return new CompiledRule(rule.getStartDate(), rule.getEndDate(),
+                    PriceRuleService.dayMask(rule.getDayOfWeek()), basisPoints);
+        }
+
+        private boolean appliesOn(DayOfWeek day) {
+            return (dayMask & (1 << day.ordinal())) != 0;
+        }
+
+        private boolean covers(LocalDate day) {
+            return (start == null || !day.isBefore(start))
+                    && (end == null || !day.isAfter(end))
+                    && appliesOn(day.getDayOfWeek());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package smarthost.backend.services;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import smarthost.backend.dto.PriceRuleDto;
+import smarthost.backend.exceptions.NotFoundException;
+import smarthost.backend.mapper.ApartmentMapper;
+import smarthost.backend.model.PriceRule;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.PriceRuleRepository;
+import smarthost.backend.requests.PriceRuleRequest;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Managing an apartment's price rules. Every change invalidates the apartment's compiled prices
+ * in {@link PriceQuoteService} and refreshes the dates it touches in the price calendar.
+ */
+@Service
+public class PriceRuleService {
+
+    private static final int ALL_DAYS = (1 << 7) - 1;
+    private static final int MAX_DAY_OF_WEEK_LENGTH = 20;
+    private static final BigDecimal MIN_PERCENTAGE = new BigDecimal("-100");
+    private static final BigDecimal MAX_PERCENTAGE = new BigDecimal("999.99");
+
+    private final PriceRuleRepository priceRuleRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final ApartmentMapper apartmentMapper;
+    private final PriceQuoteService priceQuoteService;
+    private final PriceCalendarService priceCalendarService;
+
+    public PriceRuleService(PriceRuleRepository priceRuleRepository,
+                            ApartmentRepository apartmentRepository,
+                            ApartmentMapper apartmentMapper,
+                            PriceQuoteService priceQuoteService,
+                            PriceCalendarService priceCalendarService) {
+        this.priceRuleRepository = priceRuleRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.apartmentMapper = apartmentMapper;
+        this.priceQuoteService = priceQuoteService;
+        this.priceCalendarService = priceCalendarService;
+    }
+
+    public List<PriceRuleDto> getPriceRules(Long apartmentId) {
+        return priceRuleRepository.findByApartmentIdOrderById(apartmentId).stream()
+                .map(apartmentMapper::mapToPriceRuleDto)
+                .toList();
+    }
+
+    @Transactional
+    public PriceRuleDto createPriceRule(Long apartmentId, PriceRuleRequest request) {
+        if (!apartmentRepository.existsById(apartmentId)) {
+            throw new NotFoundException("Apartment not found with id: " + apartmentId);
+        }
+        PriceRule rule = new PriceRule();
+        rule.setApartmentId(apartmentId);
+        apply(rule, request);
+        PriceRule saved = priceRuleRepository.save(rule);
+        priceQuoteService.invalidate(apartmentId);
+        priceCalendarService.refresh(apartmentId, saved.getStartDate(), dayAfter(saved.getEndDate()));
+        return apartmentMapper.mapToPriceRuleDto(saved);
+    }
+
+    @Transactional
+    public PriceRuleDto updatePriceRule(Long apartmentId, Long ruleId, PriceRuleRequest request) {
+        PriceRule rule = priceRuleRepository.findByIdAndApartmentId(ruleId, apartmentId)
+                .orElseThrow(() -> new NotFoundException("Price rule not found with id: " + ruleId));
+        LocalDate oldStart = rule.getStartDate();
+        LocalDate oldEnd = rule.getEndDate();
+        apply(rule, request);
+        PriceRule saved = priceRuleRepository.save(rule);
+        priceQuoteService.invalidate(apartmentId);
+        // Nights the rule used to cover and nights it covers now
+        LocalDate from = oldStart == null || saved.getStartDate() == null ? null
+                : (oldStart.isBefore(saved.getStartDate()) ? oldStart : saved.getStartDate());
+        LocalDate to = oldEnd == null || saved.getEndDate() == null ? null
+                : dayAfter(oldEnd.isAfter(saved.getEndDate()) ? oldEnd : saved.getEndDate());
+        priceCalendarService.refresh(apartmentId, from, to);
+        return apartmentMapper.mapToPriceRuleDto(saved);
+    }
+
+    @Transactional
+    public void deletePriceRule(Long apartmentId, Long ruleId) {
+        PriceRule rule = priceRuleRepository.findByIdAndApartmentId(ruleId, apartmentId)
+                .orElseThrow(() -> new NotFoundException("Price rule not found with id: " + ruleId));
+        priceRuleRepository.delete(rule);
+        priceQuoteService.invalidate(apartmentId);
+        priceCalendarService.refresh(apartmentId, rule.getStartDate(), dayAfter(rule.getEndDate()));
+    }
+
+    private static LocalDate dayAfter(LocalDate endDate) {
+        return endDate != null ? endDate.plusDays(1) : null;
+    }
+
+    private static void apply(PriceRule rule, PriceRuleRequest request) {
+        if (request.getRuleName() == null || request.getRuleName().isBlank()) {
+            throw new IllegalArgumentException("ruleName is required");
+        }
+        if (request.getPercentage() == null
+                || request.getPercentage().compareTo(MIN_PERCENTAGE) <= 0
+                || request.getPercentage().compareTo(MAX_PERCENTAGE) > 0) {
+            throw new IllegalArgumentException("percentage must be above -100 and at most " + MAX_PERCENTAGE);
+        }
+        if (request.getStartDate() != null && request.getEndDate() != null
+                && request.getEndDate().isBefore(request.getStartDate())) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+        String dayOfWeek = normalizeDays(request.getDayOfWeek());
+        if (dayOfWeek != null && dayOfWeek.length() > MAX_DAY_OF_WEEK_LENGTH) {
+            throw new IllegalArgumentException("dayOfWeek can list at most 5 days; leave it empty for every day");
+        }
+        rule.setRuleName(request.getRuleName().trim());
+        rule.setStartDate(request.getStartDate());
+        rule.setEndDate(request.getEndDate());
+        rule.setDayOfWeek(dayOfWeek);
+        rule.setPercentage(request.getPercentage());
+    }
+
+    /**
+     * Canonical form of a day list, e.g. "sat, Friday" becomes "FRI,SAT"; null when every day matches.
+     */
+    static String normalizeDays(String days) {
+        int mask = dayMask(days);
+        if (mask == ALL_DAYS) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((mask & (1 << day.ordinal())) != 0) {
+                joiner.add(day.name().substring(0, 3));
+            }
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Bit i set when the rule applies on {@code DayOfWeek.values()[i]}; all bits for an empty list.
+     */
+    static int dayMask(String days) {
+        if (days == null || days.isBlank()) {
+            return ALL_DAYS;
+        }
+        int mask = 0;
+        for (String token : days.split(",")) {
+            String name = token.trim().toUpperCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                continue;
+            }
+            mask |= 1 << parseDay(name).ordinal();
+        }
+        return mask == 0 ? ALL_DAYS : mask;
+    }
+
+    private static DayOfWeek parseDay(String name) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().equals(name) || day.name().substring(0, 3).equals(name)) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day of week: " + name);
+    }
+}
@@ -0,0 +1,147 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import smarthost.backend.dto.RatingSummaryDto;
+import smarthost.backend.exceptions.NotFoundException;
+import smarthost.backend.model.ApartmentRatingStats;
+import smarthost.backend.repository.ApartmentRatingStatsRepository;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.ReviewRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-apartment rating aggregates in apartment_rating_stats. Each new review bumps its apartment's
+ * row with one UPDATE in the review's transaction, so listings and summaries read a single row per
+ * apartment instead of the reviews.
+ */
+@Service
+public class RatingStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingStatsService.class);
+
+    private final ApartmentRatingStatsRepository ratingStatsRepository;
+    private final ReviewRepository reviewRepository;
+    private final ApartmentRepository apartmentRepository;
+
+    public RatingStatsService(ApartmentRatingStatsRepository ratingStatsRepository,
+                              ReviewRepository reviewRepository,
+                              ApartmentRepository apartmentRepository) {
+        this.ratingStatsRepository = ratingStatsRepository;
+        this.reviewRepository = reviewRepository;
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    /**
+     * Count a new review, in the caller's transaction so it commits or rolls back with the review.
+     */
+    @Transactional
+    public void recordRating(Long apartmentId, int rating) {
+        if (ratingStatsRepository.addRating(apartmentId, rating) == 0) {
+            // First review of the apartment
+            ratingStatsRepository.insertEmpty(apartmentId);
+            ratingStatsRepository.addRating(apartmentId, rating);
+        }
+    }
+
+    /**
+     * @throws NotFoundException if the apartment does not exist
+     */
+    public RatingSummaryDto getSummary(Long apartmentId) {
+        ApartmentRatingStats stats = ratingStatsRepository.findById(apartmentId).orElse(null);
+        if (stats == null && !apartmentRepository.existsById(apartmentId)) {
+            throw new NotFoundException("Apartment not found with id: " + apartmentId);
+        }
+        if (stats == null) {
+            stats = new ApartmentRatingStats();
+            stats.setApartmentId(apartmentId);
+        }
+        Map<Integer, Integer> ratingCounts = new LinkedHashMap<>();
+        ratingCounts.put(1, stats.getRating1());
+        ratingCounts.put(2, stats.getRating2());
+        ratingCounts.put(3, stats.getRating3());
+        ratingCounts.put(4, stats.getRating4());
+        ratingCounts.put(5, stats.getRating5());
+
+        RatingSummaryDto summary = new RatingSummaryDto();
+        summary.setApartmentId(apartmentId);
+        summary.setReviewCount(stats.getReviewCount());
+        summary.setAverageRating(averageRating(stats));
+        summary.setRatingCounts(ratingCounts);
+        return summary;
+    }
+
+    /**
+     * Stats rows of the given apartments with one IN query; apartments without reviews are absent.
+     */
+    public Map<Long, ApartmentRatingStats> findByApartmentIds(Collection<Long> apartmentIds) {
+        Map<Long, ApartmentRatingStats> stats = new HashMap<>();
+        for (ApartmentRatingStats row : ratingStatsRepository.findAllById(apartmentIds)) {
+            stats.put(row.getApartmentId(), row);
+        }
+        return stats;
+    }
+
+    /**
+     * Average rating to two decimals, or null for null stats or no reviews.
+     */
+    public static BigDecimal averageRating(ApartmentRatingStats stats) {
+        if (stats == null || stats.getReviewCount() == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(stats.getRatingSum())
+                .divide(BigDecimal.valueOf(stats.getReviewCount()), 2, RoundingMode.HALF_UP);
+    }
+
+    public void removeApartment(Long apartmentId) {
+        ratingStatsRepository.deleteById(apartmentId);
+    }
+
+    /**
+     * Build the aggregates from existing reviews the first time the table is empty, e.g. right
+     * after it was introduced.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (ratingStatsRepository.count() > 0) {
+            return;
+        }
+        Map<Long, ApartmentRatingStats> stats = new HashMap<>();
+        for (Object[] row : reviewRepository.countByApartmentAndRating()) {
+            int rating = (Integer) row[1];
+            if (rating < 1 || rating > 5) {
+                continue;
+            }
+            int count = ((Number) row[2]).intValue();
+            ApartmentRatingStats apartmentStats = stats.computeIfAbsent((Long) row[0], id -> {
+                ApartmentRatingStats created = new ApartmentRatingStats();
+                created.setApartmentId(id);
+                return created;
+            });
+            apartmentStats.setReviewCount(apartmentStats.getReviewCount() + count);
+            apartmentStats.setRatingSum(apartmentStats.getRatingSum() + (long) rating * count);
+            switch (rating) {
+                case 1 -> apartmentStats.setRating1(count);
+                case 2 -> apartmentStats.setRating2(count);
+                case 3 -> apartmentStats.setRating3(count);
+                case 4 -> apartmentStats.setRating4(count);
+                default -> apartmentStats.setRating5(count);
+            }
+        }
+        if (!stats.isEmpty()) {
+            ratingStatsRepository.saveAll(stats.values());
+            logger.info("Built rating aggregates for {} apartments", stats.size());
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.repository.ReservationSpan;
+import smarthost.backend.utils.StayIntervalTree;
+import smarthost.backend.utils.StayIntervalTree.Stay;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process reservation calendar: one interval tree of blocking stays per apartment.
+ * Answers overlap checks and conflict listings without loading Reservation entities.
+ * The trees hold every CONFIRMED or PENDING stay ending after the load day, so any query
+ * starting on or after that day can be answered from memory. PENDING holds leave their tree
+ * as soon as their lease expires, before the sweeper gets to cancel them.
+ */
+@Service
+public class ReservationCalendarService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationCalendarService.class);
+
+    private static final List<ReservationStatus> BLOCKING_STATUSES = List.of(
+            ReservationStatus.CONFIRMED,
+            ReservationStatus.PENDING
+    );
+
+    private final ReservationRepository reservationRepository;
+    private final ApartmentRepository apartmentRepository;
+
+    private volatile Map<Long, StayIntervalTree> trees;
+    private volatile LocalDate loadedFrom;
+
+    // Hold leases ordered by expiry, possibly stale; guarded by this
+    private final PriorityQueue<HoldExpiry> holdExpiries =
+            new PriorityQueue<>(Comparator.comparing((HoldExpiry expiry) -> expiry.expiresAt));
+    private volatile LocalDateTime nextExpiry;
+
+    public ReservationCalendarService(ReservationRepository reservationRepository,
+                                      ApartmentRepository apartmentRepository) {
+        this.reservationRepository = reservationRepository;
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    /**
+     * Load all trees from the database. Runs at startup and nightly to drop stays that have ended.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${reservation.calendar.rebuild-cron:0 10 0 * * *}")
+    public synchronized void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate from = now.toLocalDate();
+        Map<Long, StayIntervalTree> rebuilt = new ConcurrentHashMap<>();
+        for (Long apartmentId : apartmentRepository.findAllIds()) {
+            rebuilt.put(apartmentId, new StayIntervalTree());
+        }
+        holdExpiries.clear();
+        List<ReservationSpan> spans = reservationRepository.findSpansEndingAfter(from, BLOCKING_STATUSES, now);
+        for (ReservationSpan span : spans) {
+            Stay stay = toStay(span);
+            rebuilt.computeIfAbsent(span.getApartmentId(), id -> new StayIntervalTree()).put(stay);
+            trackExpiry(span.getApartmentId(), stay);
+        }
+        updateNextExpiry();
+        this.loadedFrom = from;
+        this.trees = rebuilt;
+        logger.info("Reservation calendar loaded: {} apartments, {} stays", rebuilt.size(), spans.size());
+    }
+
+    /**
+     * Whether the apartment has a blocking stay overlapping [checkIn, checkOut).
+     * Empty when the calendar cannot answer: not loaded yet, unknown apartment, or a range
+     * starting before the load day.
+     */
+    public Optional<Boolean> hasOverlap(Long apartmentId, LocalDate checkIn, LocalDate checkOut) {
+        removeExpiredHolds();
+        StayIntervalTree tree = treeFor(apartmentId, checkIn);
+        if (tree == null) {
+            return Optional.empty();
+        }
+        synchronized (tree) {
+            return Optional.of(tree.overlaps(checkIn, checkOut));
+        }
+    }
+
+    /**
+     * Blocking stays overlapping [checkIn, checkOut), or empty when the calendar cannot answer.
+     */
+    public Optional<List<Stay>> findConflicts(Long apartmentId, LocalDate checkIn, LocalDate checkOut) {
+        removeExpiredHolds();
+        StayIntervalTree tree = treeFor(apartmentId, checkIn);
+        if (tree == null) {
+            return Optional.empty();
+        }
+        synchronized (tree) {
+            return Optional.of(tree.findOverlapping(checkIn, checkOut));
+        }
+    }
+
+    /**
+     * Whether the apartment is known to the calendar. Empty until the calendar is loaded.
+     */
+    public Optional<Boolean> isKnownApartment(Long apartmentId) {
+        Map<Long, StayIntervalTree> current = trees;
+        return current == null ? Optional.empty() : Optional.of(current.containsKey(apartmentId));
+    }
+
+    /**
+     * Add or refresh a reservation's stay once the current transaction commits.
+     */
+    public void put(Reservation reservation) {
+        LocalDateTime expiresAt = reservation.getStatus() == ReservationStatus.PENDING
+                ? reservation.getHoldExpiresAt() : null;
+        Stay stay = new Stay(reservation.getId(), reservation.getCheckIn(), reservation.getCheckOut(),
+                reservation.getStatus(), expiresAt);
+        Long apartmentId = reservation.getApartmentId();
+        TransactionUtils.afterCommit(() -> apply(apartmentId, tree -> tree.put(stay)));
+        if (expiresAt != null) {
+            TransactionUtils.afterCommit(() -> {
+                synchronized (this) {
+                    trackExpiry(apartmentId, stay);
+                    updateNextExpiry();
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove a reservation's stay once the current transaction commits.
+     */
+    public void remove(Long apartmentId, Long reservationId) {
+        TransactionUtils.afterCommit(() -> apply(apartmentId, tree -> tree.remove(reservationId)));
+    }
+
+    /**
+     * Remove many reservations' stays in one pass once the current transaction commits.
+     */
+    public void removeAll(List<Reservation> reservations) {
+        Map<Long, List<Long>> byApartment = new HashMap<>();
+        for (Reservation reservation : reservations) {
+            byApartment.computeIfAbsent(reservation.getApartmentId(), id -> new ArrayList<>()).add(reservation.getId());
+        }
+        TransactionUtils.afterCommit(() -> {
+            synchronized (this) {
+                byApartment.forEach((apartmentId, reservationIds) ->
+                        apply(apartmentId, tree -> reservationIds.forEach(tree::remove)));
+            }
+        });
+    }
+
+    public void registerApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> {
+            synchronized (this) {
+                if (trees != null) {
+                    trees.putIfAbsent(apartmentId, new StayIntervalTree());
+                }
+            }
+        });
+    }
+
+    public void removeApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> {
+            synchronized (this) {
+                if (trees != null) {
+                    trees.remove(apartmentId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compare the calendar's answer for a range with the database's and rebuild the
+     * apartment's tree from the database when they disagree.
+     *
+     * @return true if the calendar was consistent
+     */
+    public boolean verify(Long apartmentId, LocalDate checkIn, LocalDate checkOut, boolean overlapsInDatabase) {
+        Optional<Boolean> cached = hasOverlap(apartmentId, checkIn, checkOut);
+        if (cached.isEmpty() || cached.get() == overlapsInDatabase) {
+            return true;
+        }
+        logger.warn("Reservation calendar out of sync for apartment {} ({} - {}), rebuilding from database",
+                apartmentId, checkIn, checkOut);
+        rebuildApartment(apartmentId);
+        return false;
+    }
+
+    /**
+     * Periodically compare per-apartment stay counts with the database and rebuild any
+     * apartment whose tree has drifted.
+     */
+    @Scheduled(fixedDelayString = "${reservation.calendar.verify-interval-ms:300000}",
+            initialDelayString = "${reservation.calendar.verify-interval-ms:300000}")
+    public void verifyAll() {
+        removeExpiredHolds();
+        Map<Long, StayIntervalTree> current = trees;
+        LocalDate from = loadedFrom;
+        if (current == null) {
+            return;
+        }
+        Map<Long, Long> expected = new HashMap<>();
+        for (Object[] row : reservationRepository.countSpansEndingAfterByApartment(
+                from, BLOCKING_STATUSES, LocalDateTime.now())) {
+            expected.put((Long) row[0], (Long) row[1]);
+        }
+        for (Map.Entry<Long, StayIntervalTree> entry : current.entrySet()) {
+            int actual;
+            synchronized (entry.getValue()) {
+                actual = entry.getValue().countEndingAfter(from);
+            }
+            if (actual != expected.getOrDefault(entry.getKey(), 0L)) {
+                logger.warn("Reservation calendar count mismatch for apartment {}, rebuilding", entry.getKey());
+                rebuildApartment(entry.getKey());
+            }
+        }
+    }
+
+    public synchronized void rebuildApartment(Long apartmentId) {
+        if (trees == null) {
+            return;
+        }
+        StayIntervalTree tree = new StayIntervalTree();
+        for (ReservationSpan span : reservationRepository.findSpansByApartmentEndingAfter(
+                apartmentId, loadedFrom, BLOCKING_STATUSES, LocalDateTime.now())) {
+            Stay stay = toStay(span);
+            tree.put(stay);
+            trackExpiry(apartmentId, stay);
+        }
+        trees.put(apartmentId, tree);
+        updateNextExpiry();
+    }
+
+    private synchronized void apply(Long apartmentId, Consumer<StayIntervalTree> change) {
+        if (trees == null) {
+            return;
+        }
+        StayIntervalTree tree = trees.computeIfAbsent(apartmentId, id -> new StayIntervalTree());
+        synchronized (tree) {
+            change.accept(tree);
+        }
+    }
+
+    /**
+     * Cheap check on the read path: only takes the lock when some hold has actually expired.
+     */
+    private void removeExpiredHolds() {
+        LocalDateTime next = nextExpiry;
+        if (next == null || next.isAfter(LocalDateTime.now())) {
+            return;
+        }
+        synchronized (this) {
+            LocalDateTime now = LocalDateTime.now();
+            while (!holdExpiries.isEmpty() && !holdExpiries.peek().expiresAt.isAfter(now)) {
+                HoldExpiry expired = holdExpiries.poll();
+                StayIntervalTree tree = trees == null ? null : trees.get(expired.apartmentId);
+                if (tree == null) {
+                    continue;
+                }
+                synchronized (tree) {
+                    // The stay may have been confirmed or re-leased since this entry was queued
+                    Stay stay = tree.get(expired.reservationId);
+                    if (stay != null && stay.getHoldExpiresAt() != null && !stay.getHoldExpiresAt().isAfter(now)) {
+                        tree.remove(expired.reservationId);
+                    }
+                }
+            }
+            updateNextExpiry();
+        }
+    }
+
+    private void trackExpiry(Long apartmentId, Stay stay) {
+        if (stay.getHoldExpiresAt() != null) {
+            holdExpiries.add(new HoldExpiry(apartmentId, stay.getReservationId(), stay.getHoldExpiresAt()));
+        }
+    }
+
+    private void updateNextExpiry() {
+        nextExpiry = holdExpiries.isEmpty() ? null : holdExpiries.peek().expiresAt;
+    }
+
+    private StayIntervalTree treeFor(Long apartmentId, LocalDate checkIn) {
+        Map<Long, StayIntervalTree> current = trees;
+        LocalDate from = loadedFrom;
+        if (current == null || checkIn.isBefore(from)) {
+            return null;
+        }
+        return current.get(apartmentId);
+    }
+
+    private static Stay toStay(ReservationSpan span) {
+        LocalDateTime expiresAt = span.getStatus() == ReservationStatus.PENDING ? span.getHoldExpiresAt() : null;
+        return new Stay(span.getId(), span.getCheckIn(), span.getCheckOut(), span.getStatus(), expiresAt);
+    }
+
+    /**
+     * When a hold in an apartment's tree is due to stop blocking.
+     */
+    private static final class HoldExpiry {
+        private final Long apartmentId;
+        private final Long reservationId;
+        private final LocalDateTime expiresAt;
+
+        private HoldExpiry(Long apartmentId, Long reservationId, LocalDateTime expiresAt) {
+            this.apartmentId = apartmentId;
+            this.reservationId = reservationId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
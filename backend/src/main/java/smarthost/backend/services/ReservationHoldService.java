@@ -0,0 +1,90 @@
+package smarthost.backend.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.repository.ReservationRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Lease on the dates held by a PENDING reservation while the guest pays.
+ * Queries and in-memory indexes stop treating a hold as blocking the moment it expires;
+ * the sweeper only catches the stored status up, cancelling expired holds in batches.
+ */
+@Service
+public class ReservationHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationHoldService.class);
+
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final int batchSize;
+
+    public ReservationHoldService(ReservationRepository reservationRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${reservation.hold.ttl:35m}") Duration ttl,
+                                  @Value("${reservation.hold.sweep-batch-size:500}") int batchSize) {
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Expiry for a hold placed now.
+     */
+    public LocalDateTime newLeaseExpiry() {
+        return LocalDateTime.now().plus(ttl);
+    }
+
+    /**
+     * Holds created before leases existed would otherwise block forever. Runs before the
+     * in-memory indexes load so they see the new expiries.
+     */
+    @PostConstruct
+    public void leaseUnexpiringHolds() {
+        int leased = reservationRepository.leaseUnexpiringHolds(ReservationStatus.PENDING, newLeaseExpiry());
+        if (leased > 0) {
+            logger.info("Gave {} pending reservations without a lease an expiry", leased);
+        }
+    }
+
+    /**
+     * Cancel expired holds, oldest first, one batch per statement.
+     *
+     * @return number of reservations cancelled
+     */
+    @Scheduled(fixedDelayString = "${reservation.hold.sweep-interval-ms:60000}",
+            initialDelayString = "${reservation.hold.sweep-interval-ms:60000}")
+    public int sweepExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        while (true) {
+            List<Long> ids = reservationRepository.findExpiredHoldIds(
+                    ReservationStatus.PENDING, now, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer updated = transactionTemplate.execute(status -> reservationRepository.expireHolds(
+                    ids, ReservationStatus.PENDING, ReservationStatus.CANCELLED, now));
+            expired += updated != null ? updated : 0;
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        if (expired > 0) {
+            logger.info("Cancelled {} expired reservation holds", expired);
+        }
+        return expired;
+    }
+}
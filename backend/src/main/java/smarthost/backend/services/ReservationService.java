@@ -1,12 +1,20 @@
 package smarthost.backend.services;
 
 import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.PriceQuoteDto;
 import smarthost.backend.dto.ReservationDto;
 import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.exceptions.PriceMismatchException;
 import smarthost.backend.mapper.ReservationMapper;
 import smarthost.backend.model.Apartment;
 import smarthost.backend.model.GuestInformation;
@@ -16,10 +24,26 @@ import smarthost.backend.repository.ReservationRepository;
 import smarthost.backend.repository.ApartmentRepository;
 import smarthost.backend.repository.UserRepository;
 import smarthost.backend.requests.CreateReservationRequest;
+import smarthost.backend.requests.ImportReservationRequest;
+import smarthost.backend.utils.IdGenerators;
+import smarthost.backend.utils.StayIntervalTree;
+import smarthost.backend.utils.StripedLocks;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Service
 public class ReservationService {
@@ -39,63 +63,330 @@ public class ReservationService {
     @Autowired
     private ApartmentRepository apartmentRepository;
 
-    @Transactional
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Autowired
+    private ReservationCalendarService reservationCalendarService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private ReservationHoldService reservationHoldService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PriceQuoteService priceQuoteService;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${reservation.booking.lock-timeout-ms:10000}")
+    private long bookingLockTimeoutMs;
+
+    private static final int MAX_IMPORT_ROWS = 5000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final StripedLocks apartmentLocks = new StripedLocks(64);
+
+    /**
+     * Book an apartment, honouring an optional Idempotency-Key: a retry by the same client with the
+     * same key and payload gets the original reservation and checkout URL back without booking again.
+     */
+    public ReservationDto createReservation(CreateReservationRequest request, String idempotencyKey)
+            throws StripeException {
+        if (idempotencyKey == null) {
+            return createReservation(request);
+        }
+        IdempotencyService.Claim claim = idempotencyService.claim(idempotencyKey, currentClientId(), request);
+        if (claim.getReplay().isPresent()) {
+            return claim.getReplay().get();
+        }
+        try {
+            // The key is completed in the transaction that attaches the checkout session, so a
+            // booking is never left behind a key that a retry could reclaim
+            return createReservation(request, created -> idempotencyService.complete(claim, request, created));
+        } catch (StripeException | RuntimeException e) {
+            // Nothing was booked, so let the client retry with the same key
+            idempotencyService.release(claim);
+            throw e;
+        }
+    }
+
+    /**
+     * Book an apartment in three short phases so no database connection or row lock is held
+     * while talking to Stripe:
+     * 1. a transaction that places a PENDING hold on the dates,
+     * 2. checkout session creation on the Stripe pool, with a timeout,
+     * 3. a transaction that attaches the session id to the hold.
+     * If the session cannot be created or attached, the hold is deleted again.
+     * The price is the server's quote; a client total that disagrees with it is rejected.
+     */
     public ReservationDto createReservation(CreateReservationRequest request) throws StripeException {
+        return createReservation(request, created -> { });
+    }
+
+    /**
+     * @param onAttached runs inside the phase 3 transaction, and fails the booking if it throws
+     */
+    private ReservationDto createReservation(CreateReservationRequest request, Consumer<ReservationDto> onAttached)
+            throws StripeException {
+        PriceQuoteDto quote = priceQuoteService.quote(request.getApartmentId(), request.getCheckIn(),
+                request.getCheckOut(), request.getGuests());
+        BigDecimal total = quote.getTotal();
+        if (request.getTotalPrice() != null && request.getTotalPrice().compareTo(total) != 0) {
+            throw new PriceMismatchException(request.getTotalPrice(), quote);
+        }
+        Hold hold = placeHold(request, total);
+        Reservation reservation = hold.reservation;
+
+        Session session;
+        try {
+            session = stripeService.createCheckoutSessionWithTimeout(reservation, hold.apartmentName);
+        } catch (StripeException | RuntimeException e) {
+            // Compensate: free the dates again
+            paymentService.deleteReservation(reservation.getId());
+            throw e;
+        }
+
+        reservation.setStripeSessionId(session.getId());
+        ReservationDto dto = reservationMapper.mapToDto(reservation);
+        dto.setCheckoutUrl(session.getUrl());
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                reservationRepository.attachStripeSession(reservation.getId(), session.getId());
+                onAttached.accept(dto);
+            });
+        } catch (RuntimeException e) {
+            // Compensate: the guest never gets this session, so free the dates and close it
+            paymentService.deleteReservation(reservation.getId());
+            stripeService.expireCheckoutSession(session, reservation);
+            throw e;
+        }
+        return dto;
+    }
+
+    /**
+     * The signed-in client's id, or null for a guest.
+     */
+    private Long currentClientId() {
+        try {
+            String email = SecurityContextHolder.getContext().getAuthentication().getName();
+            User user = userRepository.findByEmail(email);
+            return user != null ? user.getId() : null;
+        } catch (Exception e) {
+            return null; // Guest user - not authenticated
+        }
+    }
+
+    /**
+     * Persist a PENDING reservation holding the requested dates. Holds on the same apartment are
+     * serialized twice over: by an in-process lock stripe, so waiting requests do not hold database
+     * connections, and by a row lock on the apartment, which also covers other application instances.
+     * Holds on different apartments are placed in parallel.
+     */
+    private Hold placeHold(CreateReservationRequest request, BigDecimal total) {
+        ReentrantLock lock = apartmentLocks.lockFor(request.getApartmentId());
+        try {
+            if (!lock.tryLock(bookingLockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Apartment is busy, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to book apartment", e);
+        }
+        try {
+            return transactionTemplate.execute(status -> placeHoldLocked(request, total));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Hold placeHoldLocked(CreateReservationRequest request, BigDecimal total) {
+        // Lock the apartment row first: any booking committed before we got the lock is visible
+        // to the overlap check below, and no other booking can commit until we are done
+        Apartment apartment = apartmentRepository.findByIdForUpdate(request.getApartmentId())
+                .orElseThrow(() -> new RuntimeException("Apartment not found"));
+
         // Check if apartment is available
         List<ReservationStatus> activeStatuses = List.of(
                 ReservationStatus.CONFIRMED,
                 ReservationStatus.PENDING
         );
 
-        List<Reservation> overlapping = reservationRepository.findOverlappingReservations(
+        boolean overlapping = reservationRepository.existsOverlappingReservation(
                 request.getApartmentId(),
                 request.getCheckIn(),
                 request.getCheckOut(),
-                activeStatuses
+                activeStatuses,
+                LocalDateTime.now()
         );
+        // The database stays authoritative for bookings; use its answer to keep the in-memory calendar honest
+        reservationCalendarService.verify(
+                request.getApartmentId(), request.getCheckIn(), request.getCheckOut(), overlapping);
 
-        if (!overlapping.isEmpty()) {
+        if (overlapping) {
             throw new RuntimeException("Apartment not available for selected dates");
         }
 
-        // Get current user (if authenticated)
-        Long clientId = null;
-        try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            System.out.println("Authenticated user: " + email);
-            User user = userRepository.findByEmail(email);
-            if (user != null) {
-                clientId = user.getId();
-            }
-        } catch (Exception e) {
-            // Guest user - not authenticated
-        }
+        Long clientId = currentClientId();
 
         Reservation reservation = reservationMapper.mapToReservation(request);
         reservation.setClientId(clientId); // null for guest reservations
+        reservation.setTotalPrice(total);
         reservation.setAccessCode(generateAccessCode());
         reservation.setCancellationToken(UUID.randomUUID().toString()); // Unique token for cancellation
+        reservation.setHoldExpiresAt(reservationHoldService.newLeaseExpiry()); // Dates free up again if payment never completes
         System.out.println("Generated cancellation token: " + reservation.getCancellationToken());
-        Reservation savedReservation = reservationRepository.save(reservation);
+        Reservation savedReservation = saveWithGuestInformation(reservation, request.getGuestInformation());
+        availabilityIndexService.markOccupied(savedReservation);
+        reservationCalendarService.put(savedReservation);
 
-        GuestInformation guestInfo = reservationMapper.mapToGuestInformation(
-                request.getGuestInformation(), 
-                savedReservation.getId()
-        );
+        return new Hold(savedReservation, apartment.getName());
+    }
 
-        savedReservation.setGuestInformation(guestInfo);
-        reservationRepository.save(savedReservation);
+    /**
+     * Persist a reservation together with its guest information. The id comes from a pooled
+     * generator, so nothing is written yet: both rows are inserted in one batched flush.
+     */
+    private Reservation saveWithGuestInformation(Reservation reservation, GuestInformationDto guest) {
+        Reservation saved = reservationRepository.save(reservation);
+        saved.setGuestInformation(reservationMapper.mapToGuestInformation(guest, saved.getId()));
+        return saved;
+    }
 
-        // Create Stripe checkout session
-        Apartment apartment = apartmentRepository.findById(request.getApartmentId())
-                .orElseThrow(() -> new RuntimeException("Apartment not found"));
+    /**
+     * Import reservations from another PMS in one transaction, through the same batched write path
+     * as bookings. The whole import is rejected if any row is invalid or a CONFIRMED stay overlaps
+     * an existing booking or another row.
+     *
+     * @return the new reservation ids, in request order
+     */
+    @Transactional
+    public List<Long> importReservations(List<ImportReservationRequest> rows) {
+        if (rows.size() > MAX_IMPORT_ROWS) {
+            throw new IllegalArgumentException("At most " + MAX_IMPORT_ROWS + " reservations per import");
+        }
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> apartmentIds = new TreeSet<>();
+        Set<Long> clientIds = new HashSet<>();
+        LocalDate from = null;
+        LocalDate to = null;
+        for (int i = 0; i < rows.size(); i++) {
+            ImportReservationRequest row = rows.get(i);
+            validateImportRow(i, row);
+            apartmentIds.add(row.getApartmentId());
+            if (row.getClientId() != null) {
+                clientIds.add(row.getClientId());
+            }
+            from = from == null || row.getCheckIn().isBefore(from) ? row.getCheckIn() : from;
+            to = to == null || row.getCheckOut().isAfter(to) ? row.getCheckOut() : to;
+        }
 
-        String checkoutUrl = stripeService.createCheckoutSession(savedReservation, apartment.getName());
+        // Lock every apartment involved so no booking can slip in between the overlap check and the insert
+        Set<Long> knownApartments = new HashSet<>();
+        for (Apartment apartment : apartmentRepository.findAllByIdForUpdate(apartmentIds)) {
+            knownApartments.add(apartment.getId());
+        }
+        Set<Long> knownClients = new HashSet<>();
+        for (User client : userRepository.findAllById(clientIds)) {
+            knownClients.add(client.getId());
+        }
 
-        ReservationDto dto = reservationMapper.mapToDto(savedReservation);
-        dto.setCheckoutUrl(checkoutUrl);
+        List<ReservationStatus> blockingStatuses = List.of(ReservationStatus.CONFIRMED, ReservationStatus.PENDING);
+        Map<Long, StayIntervalTree> staysByApartment = new HashMap<>();
+        for (Object[] stay : apartmentRepository.findStaysByApartmentIdsInRange(
+                apartmentIds, from, to, blockingStatuses, LocalDateTime.now())) {
+            StayIntervalTree stays = staysByApartment.computeIfAbsent((Long) stay[0], id -> new StayIntervalTree());
+            if (stay[1] != null) {
+                stays.put(new StayIntervalTree.Stay((Long) stay[3], (LocalDate) stay[1], (LocalDate) stay[2], null, null));
+            }
+        }
 
-        return dto;
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<Reservation> confirmed = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            ImportReservationRequest row = rows.get(i);
+            if (!knownApartments.contains(row.getApartmentId())) {
+                throw new IllegalArgumentException("Row " + i + ": apartment " + row.getApartmentId() + " not found");
+            }
+            if (row.getClientId() != null && !knownClients.contains(row.getClientId())) {
+                throw new IllegalArgumentException("Row " + i + ": client " + row.getClientId() + " not found");
+            }
+            Reservation reservation = reservationMapper.mapToReservation(row);
+            if (reservation.getAccessCode() == null) {
+                reservation.setAccessCode(generateAccessCode());
+            }
+            reservation.setCancellationToken(UUID.randomUUID().toString());
+
+            boolean blocking = reservation.getStatus() == ReservationStatus.CONFIRMED;
+            StayIntervalTree stays = staysByApartment.computeIfAbsent(row.getApartmentId(), id -> new StayIntervalTree());
+            if (blocking && stays.overlaps(row.getCheckIn(), row.getCheckOut())) {
+                throw new IllegalArgumentException("Row " + i + ": apartment " + row.getApartmentId()
+                        + " is already booked between " + row.getCheckIn() + " and " + row.getCheckOut());
+            }
+
+            Reservation saved = saveWithGuestInformation(reservation, row.getGuestInformation());
+            ids.add(saved.getId());
+            if (blocking) {
+                stays.put(new StayIntervalTree.Stay(saved.getId(), row.getCheckIn(), row.getCheckOut(), null, null));
+                availabilityIndexService.markOccupied(saved);
+                reservationCalendarService.put(saved);
+                confirmed.add(saved);
+            }
+
+            // Write each full JDBC batch out and drop it from the persistence context
+            if ((i + 1) % IdGenerators.ALLOCATION_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        financeService.recordStays(confirmed);
+        return ids;
+    }
+
+    private static void validateImportRow(int index, ImportReservationRequest row) {
+        String prefix = "Row " + index + ": ";
+        if (row.getApartmentId() == null || row.getCheckIn() == null || row.getCheckOut() == null
+                || row.getGuests() == null || row.getTotalPrice() == null) {
+            throw new IllegalArgumentException(prefix + "apartmentId, checkIn, checkOut, guests and totalPrice are required");
+        }
+        if (!row.getCheckIn().isBefore(row.getCheckOut())) {
+            throw new IllegalArgumentException(prefix + "checkIn must be before checkOut");
+        }
+        if (row.getStatus() == ReservationStatus.PENDING) {
+            throw new IllegalArgumentException(prefix + "PENDING reservations cannot be imported");
+        }
+        GuestInformationDto guest = row.getGuestInformation();
+        if (guest == null || guest.getFirstName() == null || guest.getLastName() == null
+                || guest.getEmail() == null || guest.getPhone() == null) {
+            throw new IllegalArgumentException(prefix + "guest first name, last name, email and phone are required");
+        }
+    }
+
+    /**
+     * A committed PENDING reservation and the name shown on its checkout page.
+     */
+    private static final class Hold {
+        private final Reservation reservation;
+        private final String apartmentName;
+
+        private Hold(Reservation reservation, String apartmentName) {
+            this.reservation = reservation;
+            this.apartmentName = apartmentName;
+        }
     }
 
     private String generateAccessCode() {
@@ -107,10 +398,7 @@ public class ReservationService {
      * Get all reservations
      */
     public List<ReservationDto> getAllReservations() {
-        List<Reservation> reservations = reservationRepository.findAll();
-        return reservations.stream()
-                .map(reservationMapper::mapToDto)
-                .toList();
+        return reservationRepository.findAllDtos();
     }
 
     /**
@@ -126,30 +414,21 @@ public class ReservationService {
      * Get reservations by client ID
      */
     public List<ReservationDto> getReservationsByClient(Long clientId) {
-        List<Reservation> reservations = reservationRepository.findByClientId(clientId);
-        return reservations.stream()
-                .map(reservationMapper::mapToDto)
-                .toList();
+        return reservationRepository.findDtosByClientId(clientId);
     }
 
     /**
      * Get reservations by apartment ID
      */
     public List<ReservationDto> getReservationsByApartment(Long apartmentId) {
-        List<Reservation> reservations = reservationRepository.findByApartmentId(apartmentId);
-        return reservations.stream()
-                .map(reservationMapper::mapToDto)
-                .toList();
+        return reservationRepository.findDtosByApartmentId(apartmentId);
     }
 
     /**
      * Get reservations by owner ID (for all apartments owned by the owner)
      */
     public List<ReservationDto> getReservationsByOwner(Long ownerId) {
-        List<Reservation> reservations = reservationRepository.findByApartmentOwnerId(ownerId);
-        return reservations.stream()
-                .map(reservationMapper::mapToDto)
-                .toList();
+        return reservationRepository.findDtosByApartmentOwnerId(ownerId);
     }
 
     @Transactional
@@ -174,6 +453,8 @@ public class ReservationService {
         }
 
         reservationRepository.delete(reservation);
+        availabilityIndexService.release(reservation);
+        reservationCalendarService.remove(reservation.getApartmentId(), reservation.getId());
     }
 
 }
\ No newline at end of file
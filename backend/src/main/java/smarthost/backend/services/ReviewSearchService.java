@@ -0,0 +1,158 @@
+package smarthost.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import smarthost.backend.dto.ReviewSearchHitDto;
+import smarthost.backend.mapper.ReviewMapper;
+import smarthost.backend.model.Review;
+import smarthost.backend.repository.ReviewRepository;
+import smarthost.backend.utils.ReviewTextIndex;
+import smarthost.backend.utils.TransactionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keyword search over review comments, served from an in-memory {@link ReviewTextIndex} rather
+ * than a LIKE scan of the reviews table. The index is loaded at startup and kept current as
+ * reviews are created; only the top hits are then read from the database.
+ */
+@Service
+public class ReviewSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewSearchService.class);
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ReviewRepository reviewRepository;
+    private final ReviewMapper reviewMapper;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ReviewTextIndex index;
+    // Changes made while a rebuild runs, replayed onto the rebuilt index
+    private List<Consumer<ReviewTextIndex>> pending;
+
+    public ReviewSearchService(ReviewRepository reviewRepository, ReviewMapper reviewMapper) {
+        this.reviewRepository = reviewRepository;
+        this.reviewMapper = reviewMapper;
+    }
+
+    /**
+     * Index every review comment, reading the table in id order a batch at a time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        ReviewTextIndex rebuilt = new ReviewTextIndex();
+        long afterId = 0;
+        List<Object[]> batch;
+        do {
+            batch = reviewRepository.findCommentsAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            for (Object[] row : batch) {
+                rebuilt.put((Long) row[0], (Long) row[1], (String) row[2]);
+                afterId = (Long) row[0];
+            }
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            pending.forEach(change -> change.accept(rebuilt));
+            pending = null;
+            index = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Review search index loaded: {} reviews, {} terms", rebuilt.size(), rebuilt.termCount());
+    }
+
+    /**
+     * Add a review's comment to the index once the current transaction commits.
+     */
+    public void indexReview(Long reviewId, Long apartmentId, String comment) {
+        TransactionUtils.afterCommit(() -> apply(index -> index.put(reviewId, apartmentId, comment)));
+    }
+
+    public void removeApartment(Long apartmentId) {
+        TransactionUtils.afterCommit(() -> apply(index -> index.removeApartment(apartmentId)));
+    }
+
+    /**
+     * Reviews whose comments best match the query, best first.
+     *
+     * @param apartmentIds only reviews of these apartments, or null or empty for all
+     * @throws IllegalArgumentException if the query is blank
+     * @throws IllegalStateException    if the index has not been loaded yet
+     */
+    public List<ReviewSearchHitDto> search(String query, List<Long> apartmentIds, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("q must not be blank");
+        }
+        int k = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        List<Long> filter = apartmentIds == null || apartmentIds.isEmpty() ? null : apartmentIds;
+
+        List<ReviewTextIndex.Hit> hits;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                throw new IllegalStateException("Review search index is not loaded yet");
+            }
+            hits = index.search(query, filter, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (hits.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Load only the hits, in one joined query, and keep the ranking order
+        List<Long> ids = new ArrayList<>(hits.size());
+        hits.forEach(hit -> ids.add(hit.getReviewId()));
+        Map<Long, Review> reviews = new HashMap<>();
+        for (Review review : reviewRepository.findWithDetailsByIdIn(ids)) {
+            reviews.put(review.getId(), review);
+        }
+        List<ReviewSearchHitDto> results = new ArrayList<>(hits.size());
+        for (ReviewTextIndex.Hit hit : hits) {
+            Review review = reviews.get(hit.getReviewId());
+            if (review == null) {
+                continue;
+            }
+            ReviewSearchHitDto result = new ReviewSearchHitDto();
+            result.setScore(hit.getScore());
+            result.setReview(reviewMapper.toDto(review));
+            results.add(result);
+        }
+        return results;
+    }
+
+    private void apply(Consumer<ReviewTextIndex> change) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                change.accept(index);
+            }
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -1,25 +1,33 @@
 package smarthost.backend.services;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import smarthost.backend.dto.ReviewDto;
+import smarthost.backend.enums.ReviewSortOrder;
+import smarthost.backend.exceptions.DuplicateReviewException;
 import smarthost.backend.mapper.ReviewMapper;
-import smarthost.backend.model.Apartment;
 import smarthost.backend.model.Review;
 import smarthost.backend.model.Reservation;
-import smarthost.backend.model.User;
+import smarthost.backend.repository.ReviewCursor;
 import smarthost.backend.repository.ReviewRepository;
 import smarthost.backend.repository.ReservationRepository;
 import smarthost.backend.requests.CreateReviewRequest;
+import smarthost.backend.response.ReviewPageResponse;
 import jakarta.persistence.EntityManager;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 @Service
 public class ReviewService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ReviewRepository reviewRepository;
 
@@ -32,27 +40,31 @@ public class ReviewService {
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private RatingStatsService ratingStatsService;
+
+    @Autowired
+    private ReviewSearchService reviewSearchService;
+
+    /**
+     * Create a review in three statements: the insert (the unique key on reservation_id rejects a
+     * second review), the rating aggregate update, and one joined read for the response.
+     *
+     * @throws DuplicateReviewException if the reservation already has a review
+     */
     @Transactional
     public ReviewDto createReview(CreateReviewRequest req) {
-        // Ensure reservation exists
-        Reservation reservation = reservationRepository.findById(req.getReservationId())
-                .orElseThrow(() -> new RuntimeException("Reservation not found"));
-
-        System.out.println("Creating review for reservation ID: " + req.getReservationId());
-
-        // Ensure one review per reservation
-        Review existing = reviewRepository.findByReservationId(req.getReservationId());
-        if (existing != null) {
-            throw new RuntimeException("A review for this reservation already exists");
+        if (req.getRating() == null || req.getRating() < 1 || req.getRating() > 5) {
+            throw new IllegalArgumentException("rating must be between 1 and 5");
         }
 
-        // Get clientId
+        // Default to the reservation's client
         Long clientId = req.getClientId();
         if (clientId == null) {
-            clientId = reservation.getClientId();
+            clientId = reservationRepository.findClientIdById(req.getReservationId())
+                    .orElseThrow(() -> new RuntimeException("Reservation not found"));
         }
 
-        // Build Review entity
         Review review = new Review();
         review.setReservationId(req.getReservationId());
         review.setApartmentId(req.getApartmentId());
@@ -60,35 +72,35 @@ public class ReviewService {
         review.setRating(req.getRating());
         review.setComment(req.getComment());
 
-        // Manually set the relationship objects using EntityManager references
-        review.setReservation(entityManager.getReference(Reservation.class, req.getReservationId()));
-        review.setApartment(entityManager.getReference(Apartment.class, req.getApartmentId()));
-        review.setClient(entityManager.getReference(User.class, clientId));
-
-        Review saved = reviewRepository.save(review);
-
-        // Reload with relationships
-        Review loaded = reviewRepository.findById(saved.getId()).orElseThrow();
-
-        // Initialize lazy fields
-        if (loaded.getReservation() != null) {
-            loaded.getReservation().getId();
-            if (loaded.getReservation().getGuestInformation() != null) {
-                loaded.getReservation().getGuestInformation().getFirstName();
+        Review saved;
+        try {
+            saved = reviewRepository.save(review);
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, Review.UK_RESERVATION)) {
+                throw new DuplicateReviewException(req.getReservationId());
             }
+            throw new RuntimeException("Reservation, apartment or client not found", e);
         }
-        if (loaded.getApartment() != null) {
-            loaded.getApartment().getName();
-        }
-        if (loaded.getClient() != null) {
-            loaded.getClient().getFirstName();
-        }
+        ratingStatsService.recordRating(saved.getApartmentId(), saved.getRating());
+        reviewSearchService.indexReview(saved.getId(), saved.getApartmentId(), saved.getComment());
 
+        // Read it back with its associations rather than from the persistence context
+        entityManager.detach(saved);
+        Review loaded = reviewRepository.findWithDetailsById(saved.getId()).orElseThrow();
         return reviewMapper.toDto(loaded);
     }
 
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        if (e.getCause() instanceof ConstraintViolationException violation && violation.getConstraintName() != null
+                && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(constraint)) {
+            return true;
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(constraint);
+    }
+
     public ReviewDto getById(Long id) {
-        Review r = reviewRepository.findById(id).orElseThrow(() -> new RuntimeException("Review not found"));
+        Review r = reviewRepository.findWithDetailsById(id).orElseThrow(() -> new RuntimeException("Review not found"));
         return reviewMapper.toDto(r);
     }
 
@@ -104,6 +116,45 @@ public class ReviewService {
         return reviewRepository.findByClientId(clientId).stream().map(reviewMapper::toDto).collect(Collectors.toList());
     }
 
+    /**
+     * One keyset page of reviews, optionally of one apartment or client, sorted "newest", "highest"
+     * or "lowest" rating. Each page is a single joined query over at most limit + 1 rows, so its cost
+     * does not grow with the number of reviews.
+     *
+     * @throws IllegalArgumentException if the sort or cursor is invalid
+     */
+    public ReviewPageResponse getPage(Long apartmentId, Long clientId, String sort, Integer limit, String cursor) {
+        ReviewSortOrder order = parseSort(sort);
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        ReviewCursor after = cursor == null || cursor.isBlank() ? null : ReviewCursor.decode(cursor, order);
+
+        // One extra row tells whether another page follows
+        List<Review> rows = reviewRepository.findPage(apartmentId, clientId, order, after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        ReviewPageResponse response = new ReviewPageResponse();
+        response.setItems(rows.stream().map(reviewMapper::toDto).collect(Collectors.toList()));
+        response.setHasMore(hasMore);
+        response.setNextCursor(hasMore ? ReviewCursor.after(order, rows.get(rows.size() - 1)).encode() : null);
+        return response;
+    }
+
+    private static ReviewSortOrder parseSort(String sort) {
+        if (sort == null || sort.isBlank() || sort.equalsIgnoreCase("newest")) {
+            return ReviewSortOrder.NEWEST;
+        }
+        if (sort.equalsIgnoreCase("highest")) {
+            return ReviewSortOrder.HIGHEST;
+        }
+        if (sort.equalsIgnoreCase("lowest")) {
+            return ReviewSortOrder.LOWEST;
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + sort);
+    }
+
     public List<smarthost.backend.dto.UnreviewedReservationDto> getUnreviewedReservationsForClient(Long clientId) {
         java.time.LocalDate today = java.time.LocalDate.now();
         List<Reservation> reservations = reservationRepository.findConfirmedPastWithoutReview(clientId, today);
@@ -0,0 +1,322 @@
+package smarthost.backend.services;
+
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.enums.StripeEventStatus;
+import smarthost.backend.exceptions.NotFoundException;
+import smarthost.backend.model.StripeEvent;
+import smarthost.backend.repository.StripeEventRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Stripe webhook ingestion. A delivery is stored in stripe_events keyed by its Stripe event id and
+ * acknowledged straight away; a small pool of single-threaded workers then processes it. Events are
+ * routed to a worker by reservation id, so events for one reservation are handled in arrival order.
+ * Redelivered events hit the primary key and are dropped, and a worker only handles an event it
+ * managed to claim, so each event takes effect once even with several nodes.
+ * Expired and failed checkouts skip the workers: they are collected and their holds released
+ * in batches, a handful of statements per batch rather than per event.
+ */
+@Service
+public class StripeEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripeEventService.class);
+
+    private static final String CHECKOUT_COMPLETED = "checkout.session.completed";
+    // Follows a completed event whose payment_status was "unpaid", e.g. a bank debit clearing
+    private static final String CHECKOUT_ASYNC_SUCCEEDED = "checkout.session.async_payment_succeeded";
+
+    // Checkouts that will never be paid; their holds are released in bulk
+    private static final Set<String> CHECKOUT_ABANDONED = Set.of(
+            "checkout.session.expired",
+            "checkout.session.async_payment_failed"
+    );
+
+    private static final List<StripeEventStatus> CLAIMABLE = List.of(
+            StripeEventStatus.RECEIVED,
+            StripeEventStatus.FAILED
+    );
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int REDISPATCH_BATCH = 500;
+    private static final int RELEASE_BATCH = 500;
+
+    private final StripeEventRepository stripeEventRepository;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stripe.webhook.workers:4}")
+    private int workerCount;
+
+    @Value("${stripe.webhook.worker-queue-capacity:1000}")
+    private int workerQueueCapacity;
+
+    // A claim older than this belongs to a worker that died; the event may be taken again
+    @Value("${stripe.webhook.processing-timeout:5m}")
+    private Duration processingTimeout;
+
+    private ThreadPoolTaskExecutor[] workers;
+
+    private final BlockingQueue<String> abandonedCheckouts = new LinkedBlockingQueue<>(10_000);
+
+    public StripeEventService(StripeEventRepository stripeEventRepository,
+                              PaymentService paymentService,
+                              TransactionTemplate transactionTemplate) {
+        this.stripeEventRepository = stripeEventRepository;
+        this.paymentService = paymentService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        workers = new ThreadPoolTaskExecutor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            ThreadPoolTaskExecutor worker = new ThreadPoolTaskExecutor();
+            worker.setCorePoolSize(1);
+            worker.setMaxPoolSize(1);
+            worker.setQueueCapacity(workerQueueCapacity);
+            worker.setThreadNamePrefix("stripe-events-" + i + "-");
+            worker.setWaitForTasksToCompleteOnShutdown(true);
+            worker.setAwaitTerminationSeconds(10);
+            worker.initialize();
+            workers[i] = worker;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolTaskExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Store a verified event and queue it for processing.
+     *
+     * @return false if the event had already been received
+     */
+    public boolean ingest(Event event, String payload) {
+        Long reservationId = checkoutSession(event).map(StripeEventService::reservationId).orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> stripeEventRepository.insertReceived(
+                    event.getId(), event.getType(), reservationId, payload, now));
+        } catch (DataIntegrityViolationException e) {
+            // Only a clash on the event id is a redelivery; anything else must fail so Stripe retries
+            if (!stripeEventRepository.existsById(event.getId())) {
+                throw e;
+            }
+            logger.info("Ignoring duplicate delivery of Stripe event {}", event.getId());
+            return false;
+        }
+        dispatch(event.getId(), event.getType(), reservationId);
+        return true;
+    }
+
+    /**
+     * Hand events that were never processed (received before a restart, failed, or abandoned
+     * by a dead worker) back to the workers.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stripe.webhook.redispatch-interval-ms:300000}",
+            initialDelayString = "${stripe.webhook.redispatch-interval-ms:300000}")
+    public void redispatchUnprocessed() {
+        List<Object[]> pending = stripeEventRepository.findUnprocessed(
+                StripeEventStatus.RECEIVED, StripeEventStatus.FAILED, StripeEventStatus.PROCESSING,
+                MAX_ATTEMPTS, LocalDateTime.now().minus(processingTimeout), PageRequest.of(0, REDISPATCH_BATCH));
+        for (Object[] row : pending) {
+            dispatch((String) row[0], (String) row[2], (Long) row[1]);
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Redispatched {} unprocessed Stripe events", pending.size());
+        }
+    }
+
+    private void dispatch(String eventId, String type, Long reservationId) {
+        if (CHECKOUT_ABANDONED.contains(type)) {
+            if (!abandonedCheckouts.offer(eventId)) {
+                logger.warn("Abandoned checkout queue full, deferring event {}", eventId);
+            }
+            return;
+        }
+        Object routingKey = reservationId != null ? reservationId : eventId;
+        ThreadPoolTaskExecutor worker = workers[Math.floorMod(routingKey.hashCode(), workers.length)];
+        try {
+            worker.execute(() -> process(eventId));
+        } catch (TaskRejectedException e) {
+            // Still RECEIVED in the database; the next redispatch picks it up
+            logger.warn("Stripe event worker queue full, deferring event {}", eventId);
+        }
+    }
+
+    /**
+     * Release the holds of queued expired or failed checkouts, one batch at a time.
+     *
+     * @return number of events handled
+     */
+    @Scheduled(fixedDelayString = "${stripe.webhook.release-interval-ms:1000}")
+    public int releaseAbandonedCheckouts() {
+        List<String> batch = new ArrayList<>();
+        abandonedCheckouts.drainTo(batch, RELEASE_BATCH);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<String> claimed = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String eventId : batch) {
+                if (stripeEventRepository.claim(eventId, StripeEventStatus.PROCESSING, CLAIMABLE,
+                        now, now.minus(processingTimeout)) > 0) {
+                    claimed.add(eventId);
+                }
+            }
+        });
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        List<String> withReservation = new ArrayList<>();
+        List<String> withoutReservation = new ArrayList<>();
+        Set<Long> reservationIds = new HashSet<>();
+        for (StripeEvent event : stripeEventRepository.findAllById(claimed)) {
+            if (event.getReservationId() != null) {
+                reservationIds.add(event.getReservationId());
+                withReservation.add(event.getEventId());
+            } else {
+                withoutReservation.add(event.getEventId());
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int released = paymentService.releaseHolds(reservationIds);
+                if (!withReservation.isEmpty()) {
+                    stripeEventRepository.markDone(withReservation, StripeEventStatus.PROCESSED, LocalDateTime.now());
+                }
+                if (!withoutReservation.isEmpty()) {
+                    stripeEventRepository.markDone(withoutReservation, StripeEventStatus.IGNORED, LocalDateTime.now());
+                }
+                logger.info("Released {} holds for {} expired or failed checkouts", released, claimed.size());
+            });
+        } catch (RuntimeException e) {
+            logger.error("Releasing holds for {} abandoned checkouts failed", claimed.size(), e);
+            transactionTemplate.executeWithoutResult(status -> claimed.forEach(eventId ->
+                    stripeEventRepository.markFailed(eventId, StripeEventStatus.FAILED, truncate(e.getMessage()))));
+        }
+        return claimed.size();
+    }
+
+    private void process(String eventId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> stripeEventRepository.claim(
+                eventId, StripeEventStatus.PROCESSING, CLAIMABLE, now, now.minus(processingTimeout)));
+        if (claimed == null || claimed == 0) {
+            return; // Already handled, or being handled elsewhere
+        }
+        StripeEvent stored = stripeEventRepository.findById(eventId).orElse(null);
+        if (stored == null) {
+            return;
+        }
+        try {
+            Event event = ApiResource.GSON.fromJson(stored.getPayload(), Event.class);
+            transactionTemplate.executeWithoutResult(status -> {
+                StripeEventStatus outcome = handle(event);
+                stripeEventRepository.markDone(List.of(eventId), outcome, LocalDateTime.now());
+            });
+        } catch (NotFoundException e) {
+            // The reservation is gone; retrying will not bring it back
+            logger.error("Stripe event {} ({}) refers to a missing reservation, not retrying",
+                    eventId, stored.getType());
+            transactionTemplate.executeWithoutResult(status -> stripeEventRepository.markAbandoned(
+                    eventId, StripeEventStatus.FAILED, MAX_ATTEMPTS, truncate(e.getMessage())));
+        } catch (RuntimeException e) {
+            logger.error("Processing Stripe event {} ({}) failed", eventId, stored.getType(), e);
+            transactionTemplate.executeWithoutResult(status ->
+                    stripeEventRepository.markFailed(eventId, StripeEventStatus.FAILED, truncate(e.getMessage())));
+        }
+    }
+
+    /**
+     * Apply one event, using the checkout session carried in the payload rather than fetching it again.
+     * A completed checkout confirms the reservation only once it is paid; one still awaiting a
+     * delayed payment method stays a hold until async_payment_succeeded or async_payment_failed.
+     */
+    private StripeEventStatus handle(Event event) {
+        boolean completed = CHECKOUT_COMPLETED.equals(event.getType());
+        if (!completed && !CHECKOUT_ASYNC_SUCCEEDED.equals(event.getType())) {
+            return StripeEventStatus.IGNORED;
+        }
+        Session session = checkoutSession(event)
+                .orElseThrow(() -> new RuntimeException("Event " + event.getId() + " has no checkout session"));
+        Long reservationId = reservationId(session);
+        if (reservationId == null) {
+            logger.warn("Checkout session {} has no reservationId in metadata", session.getId());
+            return StripeEventStatus.IGNORED;
+        }
+        if (completed && !"paid".equals(session.getPaymentStatus())) {
+            logger.info("Checkout session {} of reservation {} completed with payment {}, awaiting the outcome",
+                    session.getId(), reservationId, session.getPaymentStatus());
+            return StripeEventStatus.IGNORED;
+        }
+        paymentService.handleSuccessfulPayment(reservationId, session.getId(), session.getPaymentIntent());
+        return StripeEventStatus.PROCESSED;
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    private static Optional<Session> checkoutSession(Event event) {
+        EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
+        StripeObject object;
+        try {
+            // Falls back to the lenient path when the payload's API version differs from the library's
+            Optional<StripeObject> matching = deserializer.getObject();
+            object = matching.isPresent() ? matching.get() : deserializer.deserializeUnsafe();
+        } catch (EventDataObjectDeserializationException e) {
+            logger.warn("Could not read data object of Stripe event {}", event.getId(), e);
+            return Optional.empty();
+        }
+        return object instanceof Session session ? Optional.of(session) : Optional.empty();
+    }
+
+    private static Long reservationId(Session session) {
+        Map<String, String> metadata = session.getMetadata();
+        String reservationId = metadata != null ? metadata.get("reservationId") : null;
+        if (reservationId == null || reservationId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(reservationId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -3,16 +3,33 @@ package smarthost.backend.services;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.checkout.SessionCreateParams;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import smarthost.backend.model.Reservation;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class StripeService {
 
+    private static final Logger logger = LoggerFactory.getLogger(StripeService.class);
+
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
@@ -22,14 +39,139 @@ public class StripeService {
     @Value("${stripe.cancel.url}")
     private String cancelUrl;
 
-        public String createCheckoutSession(Reservation reservation, String apartmentName) throws StripeException {
+    // Points the client at another Stripe-compatible endpoint, e.g. a local stub
+    @Value("${stripe.api.base:}")
+    private String apiBase;
+
+    @Value("${stripe.checkout.timeout-ms:10000}")
+    private long checkoutTimeoutMs;
+
+    // Stripe accepts 30 minutes to 24 hours; keep it below the reservation hold so a paid
+    // session never outlives the dates it was holding
+    @Value("${stripe.checkout.session-expiry-minutes:31}")
+    private long sessionExpiryMinutes;
+
+    @Value("${stripe.executor.max-threads:32}")
+    private int executorThreads;
+
+    @Value("${stripe.executor.queue-capacity:200}")
+    private int executorQueueCapacity;
+
+    // Bounded pool for checkout calls; rejects work instead of queueing without limit when Stripe is slow
+    private ThreadPoolTaskExecutor checkoutExecutor;
+
+    @PostConstruct
+    public void init() {
         Stripe.apiKey = stripeApiKey;
+        if (!apiBase.isBlank()) {
+            Stripe.overrideApiBase(apiBase);
+        }
+        checkoutExecutor = new ThreadPoolTaskExecutor();
+        checkoutExecutor.setCorePoolSize(executorThreads);
+        checkoutExecutor.setMaxPoolSize(executorThreads);
+        checkoutExecutor.setQueueCapacity(executorQueueCapacity);
+        checkoutExecutor.setAllowCoreThreadTimeOut(true);
+        checkoutExecutor.setThreadNamePrefix("stripe-checkout-");
+        checkoutExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkoutExecutor.shutdown();
+    }
+
+    /**
+     * Create a checkout session on the dedicated Stripe pool, waiting at most
+     * stripe.checkout.timeout-ms for it. A session Stripe creates after the caller gave up is
+     * expired as soon as it arrives, so it cannot take a payment for a hold that was released.
+     */
+    public Session createCheckoutSessionWithTimeout(Reservation reservation, String apartmentName)
+            throws StripeException {
+        // Whoever sets this first owns the session: the caller by receiving it, or the
+        // worker by expiring it after the caller has given up
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<Session> session;
+        try {
+            session = checkoutExecutor.submit(() -> {
+                Session created = createCheckoutSession(reservation, apartmentName);
+                if (!claimed.compareAndSet(false, true)) {
+                    expireCheckoutSession(created, reservation);
+                }
+                return created;
+            });
+        } catch (TaskRejectedException e) {
+            throw new RuntimeException("Payment provider is busy, please try again", e);
+        }
+        try {
+            return session.get(checkoutTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Session late = abandon(session, claimed);
+            if (late != null) {
+                return late;
+            }
+            throw new RuntimeException("Payment provider did not respond in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Session late = abandon(session, claimed);
+            if (late != null) {
+                expireCheckoutSession(late, reservation);
+            }
+            throw new RuntimeException("Interrupted while creating checkout session", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            throw new RuntimeException("Failed to create checkout session", e.getCause());
+        }
+    }
+
+    /**
+     * Give up on a pending checkout call. Returns the session if the worker finished first,
+     * otherwise null and the worker expires whatever Stripe creates later.
+     */
+    private Session abandon(Future<Session> session, AtomicBoolean claimed) {
+        // Never interrupt: the HTTP call may already have reached Stripe and must run to
+        // completion so its session can be expired; this only stops a call still queued
+        session.cancel(false);
+        if (claimed.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return session.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Close a checkout session whose reservation was given up before its URL reached the guest.
+     * Failures are only logged: the session still lapses on its own at expires_at.
+     */
+    public void expireCheckoutSession(Session session, Reservation reservation) {
+        try {
+            session.expire();
+            logger.warn("Expired unused checkout session {} of reservation {}", session.getId(), reservation.getId());
+        } catch (StripeException e) {
+            logger.error("Could not expire checkout session {} of reservation {}",
+                    session.getId(), reservation.getId(), e);
+        }
+    }
+
+    /**
+     * Create a hosted checkout session for a reservation. Makes an HTTP call to Stripe,
+     * so it must not be called while holding a database transaction.
+     */
+        public Session createCheckoutSession(Reservation reservation, String apartmentName) throws StripeException {
 
         // Convert price to cents (Stripe uses smallest currency unit)
         long amountInCents = reservation.getTotalPrice().multiply(new BigDecimal(100)).longValue();
 
         SessionCreateParams params = SessionCreateParams.builder()
                 .setMode(SessionCreateParams.Mode.PAYMENT)
+                .setExpiresAt(Instant.now().plus(Duration.ofMinutes(sessionExpiryMinutes)).getEpochSecond())
                 .setSuccessUrl(successUrl + "?session_id={CHECKOUT_SESSION_ID}&reservation_id=" + reservation.getId())
                 .setCancelUrl(cancelUrl+ "?reservation_id=" + reservation.getId() + "&token=" + reservation.getCancellationToken())
                 .addLineItem(
@@ -58,7 +200,11 @@ public class StripeService {
                 .setCustomerEmail(reservation.getGuestInformation().getEmail())
                 .build();
 
-        Session session = Session.create(params);
-        return session.getUrl(); // Stripe hosted checkout page URL
+        // Keyed by reservation, so a retried request can never open a second session for it
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey("checkout-" + reservation.getId())
+                .build();
+
+        return Session.create(params, options); // url is the Stripe hosted checkout page
         }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package smarthost.backend.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import smarthost.backend.enums.ExportFormat;
+
+public final class ExportUtils {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private ExportUtils() {
+    }
+
+    /**
+     * Export format from a request parameter ("ndjson" or "csv"), or null when unsupported.
+     */
+    public static ExportFormat parse(String format) {
+        for (ExportFormat candidate : ExportFormat.values()) {
+            if (candidate.name().equalsIgnoreCase(format)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streaming download response with the content type and file extension of the format.
+     */
+    public static ResponseEntity<StreamingResponseBody> response(ExportFormat format, String fileName,
+                                                                 StreamingResponseBody body) {
+        String extension = format == ExportFormat.CSV ? ".csv" : ".ndjson";
+        return ResponseEntity.ok()
+                .contentType(format == ExportFormat.CSV ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + extension + "\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,66 @@
+package smarthost.backend.utils;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Pooled table-generated ids for entities written in batches.
+ * With IDENTITY, Hibernate has to INSERT on persist to learn the id, which rules out JDBC
+ * batching; here ids are handed out in blocks of {@link #ALLOCATION_SIZE} from one row per
+ * entity in {@link #TABLE}, so persist assigns the id in memory and inserts wait for the flush.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGenerators {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String RESERVATIONS = "reservations";
+    public static final String GUEST_INFORMATION = "guest_information";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGenerators.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGenerators(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Move each generator past the highest id already in its table, so rows inserted while the
+     * ids were still IDENTITY columns are never handed out again.
+     */
+    @PostConstruct
+    public void seed() {
+        seed(RESERVATIONS, "reservations");
+        seed(GUEST_INFORMATION, "guest_information");
+    }
+
+    private void seed(String name, String entityTable) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + entityTable, Long.class);
+        // One full block of headroom, whichever way the optimizer reads the stored value
+        long floor = (maxId != null ? maxId : 0) + ALLOCATION_SIZE + 1;
+
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT " + VALUE_COLUMN + " FROM " + TABLE + " WHERE " + NAME_COLUMN + " = ?", Long.class, name);
+        if (current.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (" + NAME_COLUMN + ", " + VALUE_COLUMN + ") VALUES (?, ?)",
+                    name, floor);
+        } else if (current.get(0) < floor) {
+            jdbcTemplate.update("UPDATE " + TABLE + " SET " + VALUE_COLUMN + " = ? WHERE " + NAME_COLUMN + " = ?",
+                    floor, name);
+        } else {
+            return;
+        }
+        logger.info("Id generator {} moved to {}", name, floor);
+    }
+}
@@ -0,0 +1,225 @@
+package smarthost.backend.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Inverted index over review comments, ranked with BM25.
+ * Comments are lower-cased, split on anything that is not a letter or digit, stripped of stop
+ * words and reduced with a light suffix stemmer, so "parking", "parked" and "park" meet on one term.
+ * Each term keeps a posting list of (reviewId, term frequency); a query only walks the postings of
+ * its own terms, never the whole corpus. Not thread-safe, callers synchronize.
+ */
+public class ReviewTextIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "had", "has", "have",
+            "he", "her", "his", "i", "in", "is", "it", "its", "me", "my", "of", "on", "or", "our", "she",
+            "so", "that", "the", "their", "them", "there", "they", "this", "to", "us", "was", "we", "were",
+            "with", "you", "your");
+
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<Long, Set<Long>> docsByApartment = new HashMap<>();
+    private long totalLength;
+
+    public int size() {
+        return docs.size();
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Index a review comment, replacing any previous entry for the same review.
+     */
+    public void put(Long reviewId, Long apartmentId, String comment) {
+        remove(reviewId);
+        List<String> tokens = analyze(comment);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(reviewId, entry.getValue());
+        }
+        docs.put(reviewId, new Doc(apartmentId, tokens.size(), frequencies.keySet().toArray(new String[0])));
+        docsByApartment.computeIfAbsent(apartmentId, id -> new HashSet<>()).add(reviewId);
+        totalLength += tokens.size();
+    }
+
+    public void remove(Long reviewId) {
+        Doc doc = docs.remove(reviewId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms) {
+            Map<Long, Integer> list = postings.get(term);
+            list.remove(reviewId);
+            if (list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        Set<Long> apartmentDocs = docsByApartment.get(doc.apartmentId);
+        apartmentDocs.remove(reviewId);
+        if (apartmentDocs.isEmpty()) {
+            docsByApartment.remove(doc.apartmentId);
+        }
+        totalLength -= doc.length;
+    }
+
+    public void removeApartment(Long apartmentId) {
+        Set<Long> apartmentDocs = docsByApartment.get(apartmentId);
+        if (apartmentDocs != null) {
+            for (Long reviewId : new ArrayList<>(apartmentDocs)) {
+                remove(reviewId);
+            }
+        }
+    }
+
+    /**
+     * The k best matching reviews for a free-text query, best first; a review matches when it
+     * contains any query term.
+     *
+     * @param apartmentIds only reviews of these apartments, or null for all
+     */
+    public List<Hit> search(String query, Collection<Long> apartmentIds, int k) {
+        Set<String> terms = new LinkedHashSet<>(analyze(query));
+        if (terms.isEmpty() || docs.isEmpty() || k <= 0) {
+            return new ArrayList<>();
+        }
+        Set<Long> apartments = apartmentIds == null ? null : new HashSet<>(apartmentIds);
+        double averageLength = (double) totalLength / docs.size();
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : terms) {
+            Map<Long, Integer> list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (docs.size() - list.size() + 0.5) / (list.size() + 0.5));
+            for (Map.Entry<Long, Integer> posting : list.entrySet()) {
+                Doc doc = docs.get(posting.getKey());
+                if (apartments != null && !apartments.contains(doc.apartmentId)) {
+                    continue;
+                }
+                int tf = posting.getValue();
+                double norm = K1 * (1 - B + B * doc.length / averageLength);
+                scores.merge(posting.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+            }
+        }
+
+        // Min-heap of the k best so far; ties go to the newer (higher id) review
+        Comparator<Hit> order = Comparator.comparingDouble(Hit::getScore).thenComparing(Hit::getReviewId);
+        PriorityQueue<Hit> best = new PriorityQueue<>(k + 1, order);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.add(new Hit(entry.getKey(), docs.get(entry.getKey()).apartmentId, entry.getValue()));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(order.reversed());
+        return hits;
+    }
+
+    /**
+     * Tokens of a text as they are indexed: lower-cased, stop words dropped, stemmed.
+     */
+    public static List<String> analyze(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (token.length() >= MIN_TOKEN_LENGTH && !STOP_WORDS.contains(token)) {
+                    tokens.add(stem(token));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Strip one common English inflection, keeping a stem of at least three characters.
+     */
+    static String stem(String token) {
+        if (token.endsWith("sses")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.endsWith("ies") && token.length() > 4) {
+            return token.substring(0, token.length() - 3) + "y";
+        }
+        for (String suffix : new String[]{"ing", "ed", "ly"}) {
+            if (token.endsWith(suffix) && token.length() - suffix.length() >= 3) {
+                return token.substring(0, token.length() - suffix.length());
+            }
+        }
+        if (token.endsWith("s") && token.length() > 3
+                && !token.endsWith("ss") && !token.endsWith("us") && !token.endsWith("is")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    private static final class Doc {
+        private final Long apartmentId;
+        private final int length;
+        private final String[] terms;
+
+        private Doc(Long apartmentId, int length, String[] terms) {
+            this.apartmentId = apartmentId;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    public static final class Hit {
+        private final Long reviewId;
+        private final Long apartmentId;
+        private final double score;
+
+        public Hit(Long reviewId, Long apartmentId, double score) {
+            this.reviewId = reviewId;
+            this.apartmentId = apartmentId;
+            this.score = score;
+        }
+
+        public Long getReviewId() {
+            return reviewId;
+        }
+
+        public Long getApartmentId() {
+            return apartmentId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
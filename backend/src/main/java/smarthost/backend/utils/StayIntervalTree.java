@@ -0,0 +1,266 @@
+package smarthost.backend.utils;
+
+import smarthost.backend.enums.ReservationStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interval tree of reservation stays for a single apartment.
+ * A self-balancing (AVL) binary search tree keyed on (checkIn, reservationId), where each node
+ * also tracks the latest checkOut in its subtree so overlap queries can prune whole branches.
+ * Insert, remove and "does anything overlap" are O(log n); listing conflicts is O(log n + k).
+ * Stays are half-open: [checkIn, checkOut). Not thread-safe, callers synchronize.
+ */
+public class StayIntervalTree {
+
+    private Node root;
+    private final Map<Long, Stay> byId = new HashMap<>();
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean contains(Long reservationId) {
+        return byId.containsKey(reservationId);
+    }
+
+    public Stay get(Long reservationId) {
+        return byId.get(reservationId);
+    }
+
+    /**
+     * Insert a stay, replacing any previous entry for the same reservation.
+     */
+    public void put(Stay stay) {
+        remove(stay.getReservationId());
+        root = insert(root, stay);
+        byId.put(stay.getReservationId(), stay);
+    }
+
+    public void remove(Long reservationId) {
+        Stay existing = byId.remove(reservationId);
+        if (existing != null) {
+            root = delete(root, existing);
+        }
+    }
+
+    /**
+     * Whether any stay overlaps [from, to).
+     */
+    public boolean overlaps(LocalDate from, LocalDate to) {
+        Node node = root;
+        while (node != null) {
+            if (node.maxEnd.compareTo(from) <= 0) {
+                return false;
+            }
+            if (intersects(node.stay, from, to)) {
+                return true;
+            }
+            if (node.left != null && node.left.maxEnd.isAfter(from)) {
+                // Any overlap must be on the left: if none of the left stays overlap, the one
+                // ending after 'from' starts at or after 'to', and so does everything to the right.
+                node = node.left;
+            } else if (node.stay.getCheckIn().isBefore(to)) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * All stays overlapping [from, to), ordered by checkIn.
+     */
+    public List<Stay> findOverlapping(LocalDate from, LocalDate to) {
+        List<Stay> result = new ArrayList<>();
+        collect(root, from, to, result);
+        return result;
+    }
+
+    /**
+     * Number of stays that end after the given day.
+     */
+    public int countEndingAfter(LocalDate day) {
+        int count = 0;
+        for (Stay stay : byId.values()) {
+            if (stay.getCheckOut().isAfter(day)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void collect(Node node, LocalDate from, LocalDate to, List<Stay> result) {
+        if (node == null || node.maxEnd.compareTo(from) <= 0) {
+            return;
+        }
+        collect(node.left, from, to, result);
+        if (intersects(node.stay, from, to)) {
+            result.add(node.stay);
+        }
+        if (node.stay.getCheckIn().isBefore(to)) {
+            collect(node.right, from, to, result);
+        }
+    }
+
+    private static boolean intersects(Stay stay, LocalDate from, LocalDate to) {
+        return stay.getCheckIn().isBefore(to) && stay.getCheckOut().isAfter(from);
+    }
+
+    private static int compare(Stay a, Stay b) {
+        int byStart = a.getCheckIn().compareTo(b.getCheckIn());
+        return byStart != 0 ? byStart : Long.compare(a.getReservationId(), b.getReservationId());
+    }
+
+    private Node insert(Node node, Stay stay) {
+        if (node == null) {
+            return new Node(stay);
+        }
+        if (compare(stay, node.stay) < 0) {
+            node.left = insert(node.left, stay);
+        } else {
+            node.right = insert(node.right, stay);
+        }
+        return rebalance(node);
+    }
+
+    private Node delete(Node node, Stay stay) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(stay, node.stay);
+        if (cmp < 0) {
+            node.left = delete(node.left, stay);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, stay);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.stay = successor.stay;
+            node.right = delete(node.right, successor.stay);
+        }
+        return rebalance(node);
+    }
+
+    private Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        LocalDate max = node.stay.getCheckOut();
+        if (node.left != null && node.left.maxEnd.isAfter(max)) {
+            max = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(max)) {
+            max = node.right.maxEnd;
+        }
+        node.maxEnd = max;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        private Stay stay;
+        private Node left;
+        private Node right;
+        private int height = 1;
+        private LocalDate maxEnd;
+
+        private Node(Stay stay) {
+            this.stay = stay;
+            this.maxEnd = stay.getCheckOut();
+        }
+    }
+
+    /**
+     * A blocking stay held in the tree.
+     */
+    public static final class Stay {
+        private final Long reservationId;
+        private final LocalDate checkIn;
+        private final LocalDate checkOut;
+        private final ReservationStatus status;
+        private final LocalDateTime holdExpiresAt;
+
+        public Stay(Long reservationId, LocalDate checkIn, LocalDate checkOut, ReservationStatus status,
+                    LocalDateTime holdExpiresAt) {
+            this.reservationId = reservationId;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.status = status;
+            this.holdExpiresAt = holdExpiresAt;
+        }
+
+        public Long getReservationId() {
+            return reservationId;
+        }
+
+        public LocalDate getCheckIn() {
+            return checkIn;
+        }
+
+        public LocalDate getCheckOut() {
+            return checkOut;
+        }
+
+        public ReservationStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * When a PENDING hold stops blocking its dates; null for stays that never expire.
+         */
+        public LocalDateTime getHoldExpiresAt() {
+            return holdExpiresAt;
+        }
+    }
+}
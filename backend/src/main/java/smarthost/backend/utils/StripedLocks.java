@@ -0,0 +1,32 @@
+package smarthost.backend.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks shared by key hash, so work on the same key is serialized while
+ * work on different keys almost always runs in parallel, without a lock object per key.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock lockFor(Object key) {
+        int hash = key.hashCode();
+        // Spread high bits so sequential ids do not all land in neighbouring stripes
+        hash ^= hash >>> 16;
+        return locks[hash & mask];
+    }
+}
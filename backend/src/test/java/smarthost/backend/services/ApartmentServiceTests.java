@@ -0,0 +1,354 @@
+package smarthost.backend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import smarthost.backend.dto.ApartmentDto;
+import smarthost.backend.dto.AvailabilityCalendarDto;
+import smarthost.backend.dto.AvailabilityRunDto;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.enums.UnavailabilityReason;
+import smarthost.backend.model.Amenity;
+import smarthost.backend.model.ApartmentImage;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.model.User;
+import smarthost.backend.repository.AmenityRepository;
+import smarthost.backend.repository.ApartmentImageRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.ApartmentSearchRequest;
+import smarthost.backend.requests.AvailabilityCheckRequest;
+import smarthost.backend.requests.CreateApartmentRequest;
+import smarthost.backend.requests.PriceRuleRequest;
+import smarthost.backend.requests.UpdateApartmentRequest;
+import smarthost.backend.response.ApartmentSearchResponse;
+import smarthost.backend.response.AvailabilityCheckResult;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class ApartmentServiceTests {
+
+    private static final int APARTMENTS = 6;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ApartmentService apartmentService;
+
+    @Autowired
+    private AmenityRepository amenityRepository;
+
+    @Autowired
+    private ApartmentImageRepository apartmentImageRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationCalendarService reservationCalendarService;
+
+    @Autowired
+    private PriceRuleService priceRuleService;
+
+    @Autowired
+    private PriceQuoteService priceQuoteService;
+
+    @Autowired
+    private PriceCalendarService priceCalendarService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long ownerId;
+    private Amenity wifi;
+    private Amenity parking;
+
+    @BeforeEach
+    void createApartments() {
+        User owner = fixtures.user("Owner");
+        ownerId = owner.getId();
+
+        wifi = saveAmenity("WiFi " + owner.getEmail());
+        parking = saveAmenity("Parking " + owner.getEmail());
+
+        for (int i = 0; i < APARTMENTS; i++) {
+            CreateApartmentRequest request = new CreateApartmentRequest();
+            request.setOwnerId(ownerId);
+            request.setName("Apartment " + i);
+            request.setAddress("Street " + i);
+            request.setCity("Belgrade");
+            request.setMaxGuests(4);
+            request.setBasePrice(new BigDecimal("80.00"));
+            request.setAmenityIds(List.of(wifi.getId(), parking.getId()));
+            ApartmentDto apartment = apartmentService.createApartment(request);
+
+            for (int j = 0; j < 2; j++) {
+                ApartmentImage image = new ApartmentImage();
+                image.setApartmentId(apartment.getId());
+                image.setUrl("https://example.com/" + apartment.getId() + "/" + j + ".jpg");
+                image.setIsFeatured(j == 0);
+                apartmentImageRepository.save(image);
+            }
+        }
+    }
+
+    @Test
+    void getApartmentsByOwnerUsesFixedNumberOfQueries() {
+        Statistics statistics = statistics();
+
+        List<ApartmentDto> apartments = apartmentService.getApartmentsByOwner(ownerId);
+
+        assertEquals(APARTMENTS, apartments.size());
+        apartments.forEach(apartment -> {
+            assertEquals(2, apartment.getImages().size());
+            assertEquals(2, apartment.getAmenities().size());
+        });
+        // apartments, images (one IN query), amenity join rows (one query), rating aggregates (one IN query)
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAllApartmentsUsesFixedNumberOfQueries() {
+        Statistics statistics = statistics();
+
+        apartmentService.getAllApartments();
+
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAvailableApartmentsUsesFixedNumberOfQueries() {
+        LocalDate checkIn = LocalDate.now().plusDays(10);
+        Statistics statistics = statistics();
+
+        List<ApartmentDto> apartments = apartmentService.getAvailableApartments(checkIn, checkIn.plusDays(3), 2);
+
+        assertEquals(APARTMENTS, apartments.stream().filter(a -> ownerId.equals(a.getOwnerId())).count());
+        // availability comes from the in-memory index, then apartments, images, amenities, ratings and price rules
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void availableApartmentsCarryStayTotalsMatchingTheQuote() {
+        List<ApartmentDto> owned = apartmentService.getApartmentsByOwner(ownerId);
+        ApartmentDto seasonal = owned.get(2);
+        PriceRuleRequest weekend = new PriceRuleRequest();
+        weekend.setRuleName("Weekend");
+        weekend.setDayOfWeek("FRI,SAT");
+        weekend.setPercentage(new BigDecimal("12.50"));
+        priceRuleService.createPriceRule(seasonal.getId(), weekend);
+        LocalDate checkIn = LocalDate.now().plusDays(20).with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+        PriceRuleRequest lateSeason = new PriceRuleRequest();
+        lateSeason.setRuleName("Festival");
+        lateSeason.setStartDate(checkIn.plusDays(3));
+        lateSeason.setEndDate(checkIn.plusDays(3));
+        lateSeason.setPercentage(new BigDecimal("33.33"));
+        priceRuleService.createPriceRule(seasonal.getId(), lateSeason);
+
+        List<ApartmentDto> available = apartmentService.getAvailableApartments(checkIn, checkIn.plusDays(5), 2, null, "price_desc")
+                .stream().filter(a -> ownerId.equals(a.getOwnerId())).toList();
+
+        assertEquals(APARTMENTS, available.size());
+        assertEquals(seasonal.getId(), available.get(0).getId());
+        for (ApartmentDto apartment : available) {
+            assertEquals(priceQuoteService.quote(apartment.getId(), checkIn, checkIn.plusDays(5), 2).getTotal(),
+                    apartment.getStayTotal());
+        }
+        assertEquals(new BigDecimal("400.00"), available.get(1).getStayTotal());
+    }
+
+    @Test
+    void concurrentRuleEditsLeaveTheCalendarAtTheLatestPrices() {
+        Long apartmentId = apartmentService.getApartmentsByOwner(ownerId).get(3).getId();
+        priceCalendarService.removeApartment(apartmentId);
+        LocalDate checkIn = LocalDate.now().plusDays(30).with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+
+        List<CompletableFuture<Void>> edits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            PriceRuleRequest rule = new PriceRuleRequest();
+            rule.setRuleName("Surcharge " + i);
+            rule.setStartDate(checkIn.plusDays(i));
+            rule.setEndDate(checkIn.plusDays(i));
+            rule.setPercentage(new BigDecimal("10.00"));
+            edits.add(CompletableFuture.runAsync(() -> priceRuleService.createPriceRule(apartmentId, rule)));
+            // Whole-calendar refreshes, as on startup, race the edits to insert the missing nights
+            edits.add(CompletableFuture.runAsync(() -> priceCalendarService.refresh(apartmentId)));
+        }
+        edits.forEach(CompletableFuture::join);
+
+        assertEquals(priceQuoteService.quote(apartmentId, checkIn, checkIn.plusDays(5), 2).getTotal(),
+                priceCalendarService.stayTotals(List.of(apartmentId), checkIn, checkIn.plusDays(5)).get(apartmentId));
+        assertEquals(new BigDecimal("432.00"),
+                priceCalendarService.stayTotals(List.of(apartmentId), checkIn, checkIn.plusDays(5)).get(apartmentId));
+    }
+
+    @Test
+    void searchByAmenitiesFollowsAmenityUpdates() {
+        ApartmentDto first = apartmentService.getApartmentsByOwner(ownerId).get(0);
+        UpdateApartmentRequest update = new UpdateApartmentRequest();
+        update.setName(first.getName());
+        update.setAddress(first.getAddress());
+        update.setCity(first.getCity());
+        update.setMaxGuests(first.getMaxGuests());
+        update.setBasePrice(first.getBasePrice());
+        update.setAmenityIds(List.of(wifi.getId()));
+        apartmentService.updateApartment(first.getId(), update);
+
+        ApartmentSearchRequest both = new ApartmentSearchRequest();
+        both.setAmenityIds(List.of(wifi.getId(), parking.getId()));
+        both.setLimit(100);
+        List<ApartmentDto> withBoth = apartmentService.searchApartments(both).getItems();
+
+        ApartmentSearchRequest wifiOnly = new ApartmentSearchRequest();
+        wifiOnly.setAmenityIds(List.of(wifi.getId()));
+        wifiOnly.setLimit(100);
+        List<ApartmentDto> withWifi = apartmentService.searchApartments(wifiOnly).getItems();
+
+        assertEquals(APARTMENTS - 1, withBoth.size());
+        assertFalse(withBoth.stream().anyMatch(a -> a.getId().equals(first.getId())));
+        assertEquals(APARTMENTS, withWifi.size());
+    }
+
+    @Test
+    void searchWithDatesSortsAndFiltersByStayTotal() {
+        List<ApartmentDto> apartments = apartmentService.getApartmentsByOwner(ownerId);
+        ApartmentDto cheaper = apartments.get(0);
+        ApartmentDto weekendSurcharge = apartments.get(1);
+        UpdateApartmentRequest update = new UpdateApartmentRequest();
+        update.setName(cheaper.getName());
+        update.setAddress(cheaper.getAddress());
+        update.setCity(cheaper.getCity());
+        update.setMaxGuests(cheaper.getMaxGuests());
+        update.setBasePrice(new BigDecimal("70.00"));
+        update.setAmenityIds(List.of(wifi.getId(), parking.getId()));
+        apartmentService.updateApartment(cheaper.getId(), update);
+
+        PriceRuleRequest weekend = new PriceRuleRequest();
+        weekend.setRuleName("Weekend");
+        weekend.setDayOfWeek("FRI,SAT");
+        weekend.setPercentage(new BigDecimal("50.00"));
+        priceRuleService.createPriceRule(weekendSurcharge.getId(), weekend);
+
+        // Thursday to Sunday: Thu, Fri and Sat nights
+        LocalDate checkIn = LocalDate.now().plusDays(60).with(TemporalAdjusters.next(DayOfWeek.THURSDAY));
+        ApartmentSearchRequest request = new ApartmentSearchRequest();
+        request.setAmenityIds(List.of(wifi.getId()));
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkIn.plusDays(3));
+        request.setSort("price_desc");
+        request.setLimit(2);
+
+        ApartmentSearchResponse firstPage = apartmentService.searchApartments(request);
+        assertEquals(weekendSurcharge.getId(), firstPage.getItems().get(0).getId());
+        assertEquals(new BigDecimal("320.00"), firstPage.getItems().get(0).getStayTotal());
+        assertEquals(new BigDecimal("240.00"), firstPage.getItems().get(1).getStayTotal());
+
+        request.setCursor(firstPage.getNextCursor());
+        request.setLimit(100);
+        List<ApartmentDto> rest = apartmentService.searchApartments(request).getItems();
+        assertEquals(APARTMENTS - 2, rest.size());
+        assertEquals(cheaper.getId(), rest.get(rest.size() - 1).getId());
+        assertEquals(new BigDecimal("210.00"), rest.get(rest.size() - 1).getStayTotal());
+
+        ApartmentSearchRequest underBudget = new ApartmentSearchRequest();
+        underBudget.setAmenityIds(List.of(wifi.getId()));
+        underBudget.setCheckIn(checkIn);
+        underBudget.setCheckOut(checkIn.plusDays(3));
+        underBudget.setMaxTotal(new BigDecimal("239.99"));
+        List<ApartmentDto> affordable = apartmentService.searchApartments(underBudget).getItems();
+        assertEquals(1, affordable.size());
+        assertEquals(cheaper.getId(), affordable.get(0).getId());
+    }
+
+    @Test
+    void availabilityCalendarIsRunLengthEncodedFromOneQuery() {
+        ApartmentDto apartment = apartmentService.getApartmentsByOwner(ownerId).get(0);
+        LocalDate from = LocalDate.now().plusDays(30);
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(apartment.getId());
+        reservation.setCheckIn(from.plusDays(5));
+        reservation.setCheckOut(from.plusDays(8));
+        reservation.setGuests(2);
+        reservation.setTotalPrice(new BigDecimal("240.00"));
+        reservation.setStatus(ReservationStatus.CONFIRMED);
+        reservationRepository.save(reservation);
+        Statistics statistics = statistics();
+
+        AvailabilityCalendarDto calendar = apartmentService.getAvailabilityCalendar(apartment.getId(), from, from.plusDays(20));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        List<AvailabilityRunDto> runs = calendar.getRuns();
+        assertEquals(3, runs.size());
+        assertEquals(5, runs.get(0).getNights());
+        assertTrue(runs.get(0).getAvailable());
+        assertEquals(from.plusDays(5), runs.get(1).getStart());
+        assertEquals(3, runs.get(1).getNights());
+        assertFalse(runs.get(1).getAvailable());
+        assertEquals(12, runs.get(2).getNights());
+        assertTrue(runs.get(2).getAvailable());
+    }
+
+    @Test
+    void batchAvailabilityReportsReasonPerCheck() {
+        Long apartmentId = apartmentService.getApartmentsByOwner(ownerId).get(0).getId();
+        LocalDate checkIn = LocalDate.now().plusDays(40);
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(apartmentId);
+        reservation.setCheckIn(checkIn);
+        reservation.setCheckOut(checkIn.plusDays(3));
+        reservation.setGuests(2);
+        reservation.setTotalPrice(new BigDecimal("240.00"));
+        reservation.setStatus(ReservationStatus.CONFIRMED);
+        reservationCalendarService.put(reservationRepository.save(reservation));
+
+        List<AvailabilityCheckResult> results = apartmentService.checkAvailability(List.of(
+                check(apartmentId, checkIn.plusDays(1), checkIn.plusDays(2)),
+                check(apartmentId, checkIn.plusDays(3), checkIn.plusDays(5)),
+                check(apartmentId, checkIn, checkIn),
+                check(apartmentId, LocalDate.now().minusDays(2), LocalDate.now().plusDays(1)),
+                check(-1L, checkIn, checkIn.plusDays(1))));
+
+        assertEquals(UnavailabilityReason.BOOKED, results.get(0).getReason());
+        assertTrue(results.get(1).isAvailable());
+        assertEquals(UnavailabilityReason.INVALID_DATES, results.get(2).getReason());
+        assertEquals(UnavailabilityReason.PAST_DATES, results.get(3).getReason());
+        assertEquals(UnavailabilityReason.APARTMENT_NOT_FOUND, results.get(4).getReason());
+    }
+
+    private AvailabilityCheckRequest check(Long apartmentId, LocalDate checkIn, LocalDate checkOut) {
+        AvailabilityCheckRequest check = new AvailabilityCheckRequest();
+        check.setApartmentId(apartmentId);
+        check.setCheckIn(checkIn);
+        check.setCheckOut(checkOut);
+        return check;
+    }
+
+    private Amenity saveAmenity(String name) {
+        Amenity amenity = new Amenity();
+        amenity.setName(name);
+        return amenityRepository.save(amenity);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,106 @@
+package smarthost.backend.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import smarthost.backend.enums.ExportFormat;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ReservationRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class ExportServiceTests {
+
+    private static final int RESERVATIONS = 3;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Long ownerId;
+
+    @BeforeEach
+    void createReservations() {
+        ownerId = fixtures.user("Owner").getId();
+        Long apartmentId = fixtures.apartment(ownerId, "Export test apartment").getId();
+
+        LocalDate checkIn = LocalDate.now().plusDays(200);
+        for (int i = 0; i < RESERVATIONS; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setApartmentId(apartmentId);
+            reservation.setCheckIn(checkIn.plusDays(i * 3L));
+            reservation.setCheckOut(checkIn.plusDays(i * 3L + 2));
+            reservation.setGuests(2);
+            reservation.setTotalPrice(new BigDecimal("160.00"));
+            reservation.setStatus(ReservationStatus.CONFIRMED);
+            reservation.setSpecialRequest("Late check-in, \"quiet\" room");
+            reservationRepository.save(reservation);
+        }
+    }
+
+    @Test
+    void exportsOwnerReservationsAsCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportReservations(ownerId, ExportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(RESERVATIONS + 1, lines.length);
+        assertTrue(lines[0].startsWith("id,apartmentId,clientId,checkIn,checkOut"));
+        assertTrue(lines[1].contains(",\"Late check-in, \"\"quiet\"\" room\","));
+    }
+
+    @Test
+    void exportsOwnerReservationsAsNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportReservations(ownerId, ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(RESERVATIONS, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("CONFIRMED", first.get("status").asText());
+        assertEquals(LocalDate.now().plusDays(200).toString(), first.get("checkIn").asText());
+    }
+
+    @Test
+    void ownerExportIsForAdminsOnly() throws Exception {
+        // The export carries guests' contact details
+        mockMvc.perform(get("/reservations/owner/{ownerId}/export", ownerId)
+                        .with(user("client@example.com").roles("CLIENT")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/reservations/owner/{ownerId}/export", ownerId)
+                        .with(user("admin@example.com").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+}
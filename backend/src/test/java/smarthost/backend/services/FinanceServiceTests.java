@@ -0,0 +1,205 @@
+package smarthost.backend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import smarthost.backend.dto.AnalyticsPeriodDto;
+import smarthost.backend.dto.DailyRevenueDto;
+import smarthost.backend.dto.OwnerAnalyticsDto;
+import smarthost.backend.enums.AnalyticsGranularity;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ReservationRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class FinanceServiceTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    private Long ownerId;
+    private Long apartmentId;
+
+    private final LocalDate checkIn = LocalDate.now().plusDays(20);
+
+    @BeforeEach
+    void createApartment() {
+        ownerId = fixtures.user("Owner").getId();
+        apartmentId = fixtures.apartment(ownerId, "Finance test apartment").getId();
+    }
+
+    @Test
+    void confirmedStaysAddIncomePerNightAndCancellationTakesItBack() {
+        Long first = hold(checkIn, checkIn.plusDays(3), "100.00");
+        Long second = hold(checkIn.plusDays(3), checkIn.plusDays(5), "150.00");
+        paymentService.handleSuccessfulPayment(first, "cs_first", "pi_first");
+        paymentService.handleSuccessfulPayment(second, "cs_second", "pi_second");
+        paymentService.handleSuccessfulPayment(first, "cs_first", "pi_first"); // Redelivery adds nothing
+
+        List<DailyRevenueDto> revenue = financeService.getDailyRevenue(ownerId, checkIn.minusDays(1), checkIn.plusDays(6));
+        assertEquals(7, revenue.size());
+        assertEquals(0, revenue.get(0).getIncome().signum());
+        assertEquals(new BigDecimal("33.34"), revenue.get(1).getIncome()); // Leftover cent on the first night
+        assertEquals(new BigDecimal("33.33"), revenue.get(2).getIncome());
+        assertEquals(new BigDecimal("33.33"), revenue.get(3).getIncome());
+        assertEquals(new BigDecimal("75.00"), revenue.get(4).getIncome());
+        assertEquals(new BigDecimal("75.00"), revenue.get(5).getIncome());
+        assertEquals(0, revenue.get(6).getIncome().signum());
+
+        paymentService.cancelReservation(first);
+        paymentService.cancelReservation(first); // Already cancelled, nothing more to reverse
+        assertEquals(ReservationStatus.CANCELLED, reservationRepository.findById(first).orElseThrow().getStatus());
+        revenue = financeService.getDailyRevenue(ownerId, checkIn, checkIn.plusDays(5));
+        assertEquals(0, revenue.get(0).getIncome().signum());
+        assertEquals(0, revenue.get(2).getIncome().signum());
+        assertEquals(new BigDecimal("75.00"), revenue.get(3).getIncome());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.cancelReservation(hold(checkIn.plusDays(10), checkIn.plusDays(11), "80.00")));
+        assertThrows(IllegalArgumentException.class,
+                () -> financeService.getDailyRevenue(ownerId, checkIn, checkIn.plusDays(400)));
+    }
+
+    @Test
+    void reconciliationRewritesDriftedDays() {
+        Long stay = hold(checkIn, checkIn.plusDays(2), "200.00");
+        paymentService.handleSuccessfulPayment(stay, "cs_stay", "pi_stay");
+
+        // A lost update on one night, a stray row on another and a drifted month
+        jdbcTemplate.update("UPDATE finance_reports SET daily_income = 1.00 WHERE apartment_id = ? AND report_date = ?",
+                apartmentId, Date.valueOf(checkIn));
+        jdbcTemplate.update("INSERT INTO finance_reports (apartment_id, report_date, daily_income, nights_sold) VALUES (?, ?, ?, ?)",
+                apartmentId, Date.valueOf(checkIn.plusDays(7)), new BigDecimal("42.00"), 1);
+        jdbcTemplate.update("UPDATE finance_monthly_reports SET nights_sold = 9 WHERE apartment_id = ?", apartmentId);
+
+        assertTrue(financeService.reconcile() >= 3);
+
+        List<DailyRevenueDto> revenue = financeService.getDailyRevenue(ownerId, checkIn, checkIn.plusDays(8));
+        assertEquals(new BigDecimal("100.00"), revenue.get(0).getIncome());
+        assertEquals(new BigDecimal("100.00"), revenue.get(1).getIncome());
+        assertEquals(0, revenue.get(7).getIncome().signum());
+        assertEquals(0, financeService.reconcile());
+
+        OwnerAnalyticsDto analytics = analyticsService.getOwnerAnalytics(ownerId, checkIn, checkIn.plusDays(8), "day");
+        assertEquals(2, analytics.getSummary().getNightsSold());
+        assertEquals(new BigDecimal("200.00"), analytics.getSummary().getRevenue());
+    }
+
+    @Test
+    void stayConfirmedWhileReconcilingKeepsItsIncome() {
+        Long stay = hold(checkIn, checkIn.plusDays(2), "200.00");
+        paymentService.handleSuccessfulPayment(stay, "cs_stay", "pi_stay");
+        jdbcTemplate.update("UPDATE finance_reports SET daily_income = 1.00 WHERE apartment_id = ? AND report_date = ?",
+                apartmentId, Date.valueOf(checkIn));
+
+        // Another stay on the drifted night commits after reconcile has read, before it writes
+        Long concurrent = hold(checkIn, checkIn.plusDays(1), "50.00");
+        AtomicBoolean interleave = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (((String) invocation.getArgument(0)).startsWith("INSERT INTO finance_reports")
+                    && interleave.compareAndSet(true, false)) {
+                CompletableFuture.runAsync(() ->
+                        paymentService.handleSuccessfulPayment(concurrent, "cs_concurrent", "pi_concurrent")).join();
+            }
+            return invocation.callRealMethod();
+        }).when(jdbcTemplate).update(anyString(), any(Object[].class));
+
+        assertTrue(financeService.reconcile() >= 1);
+        reset(jdbcTemplate);
+
+        assertEquals(new BigDecimal("150.00"), financeService.getDailyRevenue(ownerId, checkIn, checkIn.plusDays(1))
+                .get(0).getIncome());
+        assertEquals(0, financeService.reconcile());
+    }
+
+    @Test
+    void analyticsRollUpMonthsAndMatchTheDailyRows() {
+        // One stay across a month boundary, one inside the next month
+        LocalDate monthStart = LocalDate.now().withDayOfMonth(1).plusMonths(2);
+        paymentService.handleSuccessfulPayment(
+                hold(monthStart.minusDays(2), monthStart.plusDays(2), "400.00"), "cs_a", "pi_a");
+        paymentService.handleSuccessfulPayment(
+                hold(monthStart.plusDays(10), monthStart.plusDays(12), "300.00"), "cs_b", "pi_b");
+
+        LocalDate from = monthStart.minusMonths(1).plusDays(5);
+        LocalDate to = monthStart.plusMonths(2).plusDays(3);
+        OwnerAnalyticsDto byMonth = analyticsService.getOwnerAnalytics(ownerId, from, to, "MONTH");
+        assertEquals(AnalyticsGranularity.MONTH, byMonth.getGranularity());
+        assertEquals(4, byMonth.getPeriods().size());
+        assertEquals(from, byMonth.getPeriods().get(0).getStart());
+        assertEquals(monthStart, byMonth.getPeriods().get(1).getStart());
+
+        AnalyticsPeriodDto before = byMonth.getPeriods().get(0);
+        assertEquals(new BigDecimal("200.00"), before.getRevenue());
+        assertEquals(2, before.getNightsSold());
+        AnalyticsPeriodDto month = byMonth.getPeriods().get(1);
+        assertEquals(new BigDecimal("500.00"), month.getRevenue());
+        assertEquals(4, month.getNightsSold());
+        assertEquals(monthStart.lengthOfMonth(), month.getAvailableNights());
+        assertEquals(new BigDecimal("125.00"), month.getAdr());
+        assertEquals(BigDecimal.valueOf(500).divide(BigDecimal.valueOf(monthStart.lengthOfMonth()), 2,
+                RoundingMode.HALF_UP), month.getRevPar());
+        assertEquals(BigDecimal.valueOf(4).divide(BigDecimal.valueOf(monthStart.lengthOfMonth()), 4,
+                RoundingMode.HALF_UP), month.getOccupancyRate());
+
+        OwnerAnalyticsDto byWeek = analyticsService.getOwnerAnalytics(ownerId, from, to, "week");
+        assertEquals(byMonth.getSummary(), byWeek.getSummary());
+        assertEquals(new BigDecimal("700.00"), byWeek.getSummary().getRevenue());
+        assertEquals(1, byWeek.getApartments().size());
+        assertEquals(byWeek.getSummary(), byWeek.getApartments().get(0).getSummary());
+        assertEquals(DayOfWeek.MONDAY, byWeek.getPeriods().get(1).getStart().getDayOfWeek());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> analyticsService.getOwnerAnalytics(ownerId, from, to, "year"));
+        assertThrows(IllegalArgumentException.class,
+                () -> analyticsService.getOwnerAnalytics(ownerId, from, from.plusYears(2), "day"));
+    }
+
+    private Long hold(LocalDate from, LocalDate to, String total) {
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(apartmentId);
+        reservation.setCheckIn(from);
+        reservation.setCheckOut(to);
+        reservation.setGuests(2);
+        reservation.setTotalPrice(new BigDecimal(total));
+        reservation.setStatus(ReservationStatus.PENDING);
+        return reservationRepository.save(reservation).getId();
+    }
+}
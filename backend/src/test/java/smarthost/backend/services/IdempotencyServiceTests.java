@@ -0,0 +1,161 @@
+package smarthost.backend.services;
+
+import com.stripe.model.checkout.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.exceptions.IdempotencyKeyException;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.IdempotencyKeyRepository;
+import smarthost.backend.requests.CreateReservationRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class IdempotencyServiceTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    @MockitoSpyBean
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long apartmentId;
+
+    @BeforeEach
+    void createApartment() throws Exception {
+        Session session = new Session();
+        session.setId("cs_test_idempotency");
+        session.setUrl("https://checkout.test/idempotency");
+        when(stripeService.createCheckoutSessionWithTimeout(any(), anyString())).thenReturn(session);
+
+        apartmentId = fixtures.apartment("Idempotency test apartment").getId();
+    }
+
+    @Test
+    void retryWithSameKeyReplaysOriginalReservation() throws Exception {
+        String key = UUID.randomUUID().toString();
+
+        ReservationDto first = reservationService.createReservation(request(2), key);
+        ReservationDto retry = reservationService.createReservation(request(2), key);
+
+        assertEquals(first.getId(), retry.getId());
+        assertEquals("https://checkout.test/idempotency", retry.getCheckoutUrl());
+        assertEquals(1, fixtures.reservations(apartmentId).size());
+        verify(stripeService, times(1)).createCheckoutSessionWithTimeout(any(), anyString());
+
+        IdempotencyKeyException mismatch = assertThrows(IdempotencyKeyException.class,
+                () -> reservationService.createReservation(request(3), key));
+        assertEquals(422, mismatch.getStatus());
+    }
+
+    @Test
+    void failingToCompleteKeyUndoesBookingSoRetryBooksOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        doThrow(new QueryTimeoutException("complete timed out"))
+                .when(idempotencyKeyRepository).complete(eq(key), any(), any(), any(), any(), anyString());
+
+        assertThrows(QueryTimeoutException.class, () -> reservationService.createReservation(request(2), key));
+        // The booking and the key commit together: with the key gone, so is the hold
+        assertEquals(0, fixtures.reservations(apartmentId).size());
+        verify(stripeService).expireCheckoutSession(any(), any());
+        reset(idempotencyKeyRepository);
+
+        ReservationDto retry = reservationService.createReservation(request(2), key);
+        assertEquals(List.of(retry.getId()), fixtures.reservations(apartmentId).stream()
+                .map(Reservation::getId).toList());
+        assertEquals(retry.getId(), reservationService.createReservation(request(2), key).getId());
+    }
+
+    @Test
+    void abandonedClaimCannotCompleteAfterRetryReclaimedIt() {
+        String key = UUID.randomUUID().toString();
+        IdempotencyService.Claim slow = idempotencyService.claim(key, 7L, request(2));
+        // The first request outlives the abandon window, and a retry takes the key over
+        jdbcTemplate.update("UPDATE idempotency_keys SET created_at = ? WHERE idempotency_key = ?",
+                LocalDateTime.now().minusMinutes(10), key);
+        IdempotencyService.Claim retry = idempotencyService.claim(key, 7L, request(2));
+        assertTrue(retry.getReplay().isEmpty());
+
+        IdempotencyKeyException lost = assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.complete(slow, request(2), response(1L)));
+        assertEquals(409, lost.getStatus());
+        idempotencyService.release(slow); // Leaves the retry's claim alone
+        idempotencyService.complete(retry, request(2), response(2L));
+
+        assertEquals(2L, idempotencyService.claim(key, 7L, request(2)).getReplay().orElseThrow().getId());
+    }
+
+    @Test
+    void storedResponseIsOnlyReplayedToTheClientThatSentIt() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.complete(idempotencyService.claim(key, 7L, request(2)), request(2), response(1L));
+
+        assertEquals(1L, idempotencyService.claim(key, 7L, request(2)).getReplay().orElseThrow().getId());
+        assertEquals(422, assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.claim(key, 8L, request(2))).getStatus());
+        assertEquals(422, assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.claim(key, null, request(2))).getStatus());
+    }
+
+    private static ReservationDto response(Long reservationId) {
+        ReservationDto response = new ReservationDto();
+        response.setId(reservationId);
+        return response;
+    }
+
+    private CreateReservationRequest request(int guests) {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Guest");
+        guest.setLastName("Test");
+        guest.setEmail("guest@example.com");
+        guest.setPhone("+381600000000");
+
+        LocalDate checkIn = LocalDate.now().plusDays(90);
+        CreateReservationRequest request = new CreateReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkIn.plusDays(2));
+        request.setGuests(guests);
+        request.setTotalPrice(new BigDecimal("160.00"));
+        request.setGuestInformation(guest);
+        return request;
+    }
+}
@@ -0,0 +1,117 @@
+package smarthost.backend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.PriceQuoteDto;
+import smarthost.backend.dto.PriceRuleDto;
+import smarthost.backend.exceptions.PriceMismatchException;
+import smarthost.backend.requests.CreateReservationRequest;
+import smarthost.backend.requests.PriceRuleRequest;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class PriceQuoteServiceTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private PriceQuoteService priceQuoteService;
+
+    @Autowired
+    private PriceRuleService priceRuleService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    private Long apartmentId;
+
+    // A Thursday, so a four-night stay covers Thu, Fri, Sat and Sun
+    private final LocalDate checkIn = LocalDate.now().plusDays(60).with(TemporalAdjusters.next(DayOfWeek.THURSDAY));
+
+    @BeforeEach
+    void createApartment() {
+        apartmentId = fixtures.apartment("Pricing test apartment").getId();
+    }
+
+    @Test
+    void rulesAddUpPerNightAndChangesInvalidateTheQuote() {
+        assertEquals(new BigDecimal("320.00"), priceQuoteService.quote(apartmentId, checkIn, checkIn.plusDays(4), 2).getTotal());
+
+        PriceRuleDto weekend = priceRuleService.createPriceRule(apartmentId, rule("Weekend", null, null, "sat, Friday", "25.00"));
+        assertEquals("FRI,SAT", weekend.getDayOfWeek());
+        priceRuleService.createPriceRule(apartmentId, rule("Late season", checkIn.plusDays(2), null, null, "-10.00"));
+
+        PriceQuoteDto quote = priceQuoteService.quote(apartmentId, checkIn, checkIn.plusDays(4), 2);
+        assertEquals(4, quote.getNights());
+        assertEquals(new BigDecimal("80.00"), quote.getNightly().get(0).getPrice());  // Thu
+        assertEquals(new BigDecimal("100.00"), quote.getNightly().get(1).getPrice()); // Fri +25%
+        assertEquals(new BigDecimal("92.00"), quote.getNightly().get(2).getPrice());  // Sat +25% -10%
+        assertEquals(new BigDecimal("72.00"), quote.getNightly().get(3).getPrice());  // Sun -10%
+        assertEquals(new BigDecimal("344.00"), quote.getTotal());
+
+        priceRuleService.deletePriceRule(apartmentId, weekend.getId());
+        assertEquals(new BigDecimal("304.00"), priceQuoteService.quote(apartmentId, checkIn, checkIn.plusDays(4), 2).getTotal());
+    }
+
+    @Test
+    void bookingWithStaleTotalIsRejected() throws Exception {
+        priceRuleService.createPriceRule(apartmentId, rule("Weekend", null, null, "FRI,SAT", "25.00"));
+
+        CreateReservationRequest request = new CreateReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkIn.plusDays(2));
+        request.setGuests(2);
+        request.setTotalPrice(new BigDecimal("160.00"));
+        request.setGuestInformation(guest());
+
+        PriceMismatchException mismatch = assertThrows(PriceMismatchException.class,
+                () -> reservationService.createReservation(request));
+        assertEquals(new BigDecimal("180.00"), mismatch.getQuotedTotal());
+        assertEquals(2, mismatch.getQuote().getNightly().size());
+        verify(stripeService, never()).createCheckoutSessionWithTimeout(any(), anyString());
+
+        request.setGuests(5);
+        assertThrows(IllegalArgumentException.class, () -> reservationService.createReservation(request));
+    }
+
+    private static PriceRuleRequest rule(String name, LocalDate start, LocalDate end, String days, String percentage) {
+        PriceRuleRequest request = new PriceRuleRequest();
+        request.setRuleName(name);
+        request.setStartDate(start);
+        request.setEndDate(end);
+        request.setDayOfWeek(days);
+        request.setPercentage(new BigDecimal(percentage));
+        return request;
+    }
+
+    private static GuestInformationDto guest() {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Guest");
+        guest.setLastName("Test");
+        guest.setEmail("guest@example.com");
+        guest.setPhone("+381600000000");
+        return guest;
+    }
+}
@@ -0,0 +1,140 @@
+package smarthost.backend.services;
+
+import com.stripe.model.checkout.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.requests.CreateReservationRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class ReservationConcurrencyTests {
+
+    private static final int APARTMENTS = 4;
+    private static final int BOOKINGS = 400;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    private final List<Long> apartmentIds = new ArrayList<>();
+
+    @BeforeEach
+    void createApartments() throws Exception {
+        Session session = new Session();
+        session.setId("cs_test_concurrency");
+        session.setUrl("https://checkout.test/session");
+        when(stripeService.createCheckoutSessionWithTimeout(any(), anyString())).thenReturn(session);
+
+        Long ownerId = fixtures.user("Owner").getId();
+
+        for (int i = 0; i < APARTMENTS; i++) {
+            apartmentIds.add(fixtures.apartment(ownerId, "Concurrency apartment " + i).getId());
+        }
+    }
+
+    @Test
+    void concurrentBookingsNeverOverlap() throws Exception {
+        LocalDate base = LocalDate.now().plusDays(300);
+        Random random = new Random(42);
+        List<CreateReservationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < BOOKINGS; i++) {
+            LocalDate checkIn = base.plusDays(random.nextInt(40));
+            requests.add(request(apartmentIds.get(random.nextInt(APARTMENTS)),
+                    checkIn, checkIn.plusDays(1 + random.nextInt(4))));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        for (CreateReservationRequest request : requests) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    reservationService.createReservation(request);
+                    booked.incrementAndGet();
+                } catch (RuntimeException e) {
+                    if ("Apartment not available for selected dates".equals(e.getMessage())) {
+                        rejected.incrementAndGet();
+                    } else {
+                        unexpected.add(e);
+                    }
+                } catch (Exception e) {
+                    unexpected.add(e);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        assertEquals(BOOKINGS, booked.get() + rejected.get());
+        assertTrue(rejected.get() > 0, "Expected conflicting bookings to be rejected");
+
+        int stored = 0;
+        for (Long apartmentId : apartmentIds) {
+            List<Reservation> reservations = fixtures.reservations(apartmentId);
+            stored += reservations.size();
+            for (int i = 0; i < reservations.size(); i++) {
+                for (int j = i + 1; j < reservations.size(); j++) {
+                    Reservation a = reservations.get(i);
+                    Reservation b = reservations.get(j);
+                    boolean overlap = a.getCheckIn().isBefore(b.getCheckOut()) && b.getCheckIn().isBefore(a.getCheckOut());
+                    assertFalse(overlap, "Reservations " + a.getId() + " and " + b.getId() + " overlap");
+                }
+            }
+        }
+        assertEquals(booked.get(), stored);
+    }
+
+    private CreateReservationRequest request(Long apartmentId, LocalDate checkIn, LocalDate checkOut) {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Guest");
+        guest.setLastName("Test");
+        guest.setEmail("guest@example.com");
+        guest.setPhone("+381600000000");
+
+        CreateReservationRequest request = new CreateReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkOut);
+        request.setGuests(2);
+        request.setTotalPrice(new BigDecimal("80.00").multiply(BigDecimal.valueOf(checkIn.until(checkOut).getDays())));
+        request.setGuestInformation(guest);
+        return request;
+    }
+}
@@ -0,0 +1,204 @@
+package smarthost.backend.services;
+
+import com.stripe.model.checkout.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.enums.PaymentStatus;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.Payment;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.PaymentRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.CreateReservationRequest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "reservation.hold.ttl=1s")
+@Import(TestFixtures.class)
+class ReservationHoldTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationHoldService reservationHoldService;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Autowired
+    private ReservationCalendarService reservationCalendarService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoSpyBean
+    private ApartmentRepository apartmentRepository;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    private Long apartmentId;
+    private final LocalDate checkIn = LocalDate.now().plusDays(120);
+    private final LocalDate checkOut = checkIn.plusDays(3);
+
+    @BeforeEach
+    void createApartment() throws Exception {
+        Session session = new Session();
+        session.setId("cs_test_hold");
+        session.setUrl("https://checkout.test/session");
+        when(stripeService.createCheckoutSessionWithTimeout(any(), anyString())).thenReturn(session);
+
+        apartmentId = fixtures.apartment("Hold test apartment").getId();
+    }
+
+    @Test
+    void expiredHoldStopsBlockingBeforeSweep() throws Exception {
+        ReservationDto hold = reservationService.createReservation(request());
+        LocalDateTime expiresAt = reservationRepository.findById(hold.getId()).orElseThrow().getHoldExpiresAt();
+        assertNotNull(expiresAt);
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+        assertEquals(Optional.of(true), reservationCalendarService.hasOverlap(apartmentId, checkIn, checkOut));
+
+        Thread.sleep(Math.max(0, Duration.between(LocalDateTime.now(), expiresAt).toMillis()) + 100);
+
+        assertEquals(Optional.of(true), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+        assertEquals(Optional.of(false), reservationCalendarService.hasOverlap(apartmentId, checkIn, checkOut));
+        assertFalse(reservationRepository.existsOverlappingReservation(apartmentId, checkIn, checkOut,
+                List.of(ReservationStatus.CONFIRMED, ReservationStatus.PENDING), LocalDateTime.now()));
+
+        // The dates can be booked again before the sweeper has run
+        ReservationDto rebooked = reservationService.createReservation(request());
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+
+        reservationHoldService.sweepExpiredHolds();
+
+        Reservation expired = reservationRepository.findById(hold.getId()).orElseThrow();
+        assertEquals(ReservationStatus.CANCELLED, expired.getStatus());
+        assertEquals(ReservationStatus.PENDING,
+                reservationRepository.findById(rebooked.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void releasingLapsedHoldKeepsNightsOfTheNextBooking() throws Exception {
+        ReservationDto hold = reservationService.createReservation(request());
+        Reservation lapsed = reservationRepository.findById(hold.getId()).orElseThrow();
+        Thread.sleep(Math.max(0, Duration.between(LocalDateTime.now(), lapsed.getHoldExpiresAt()).toMillis()) + 100);
+        assertEquals(Optional.of(true), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+
+        // Booked and paid by another guest before the lapsed hold is cleaned up
+        Reservation booked = new Reservation();
+        booked.setApartmentId(apartmentId);
+        booked.setCheckIn(checkIn);
+        booked.setCheckOut(checkOut);
+        booked.setGuests(2);
+        booked.setTotalPrice(new BigDecimal("240.00"));
+        booked.setStatus(ReservationStatus.CONFIRMED);
+        availabilityIndexService.markOccupied(reservationRepository.save(booked));
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+
+        reservationService.deleteReservationWithToken(lapsed.getId(), lapsed.getCancellationToken());
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+        availabilityIndexService.release(lapsed); // Releasing it again changes nothing either
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+
+        availabilityIndexService.release(booked);
+        assertEquals(Optional.of(true), availabilityIndexService.isAvailable(apartmentId, checkIn, checkOut));
+    }
+
+    @Test
+    void latePaymentSeesRebookingCommittedJustBeforeTheApartmentLock() throws Exception {
+        ReservationDto hold = reservationService.createReservation(request());
+        Reservation lapsed = reservationRepository.findById(hold.getId()).orElseThrow();
+        Thread.sleep(Math.max(0, Duration.between(LocalDateTime.now(), lapsed.getHoldExpiresAt()).toMillis()) + 100);
+
+        // Another guest's booking commits after the payment handler started, before it locks
+        Reservation booked = new Reservation();
+        booked.setApartmentId(apartmentId);
+        booked.setCheckIn(checkIn);
+        booked.setCheckOut(checkOut);
+        booked.setGuests(2);
+        booked.setTotalPrice(new BigDecimal("240.00"));
+        booked.setStatus(ReservationStatus.CONFIRMED);
+        AtomicBoolean interleave = new AtomicBoolean(true);
+        Answer<?> realMethod = mockingDetails(apartmentRepository).getMockCreationSettings().getDefaultAnswer();
+        doAnswer(invocation -> {
+            if (interleave.compareAndSet(true, false)) {
+                CompletableFuture.runAsync(() -> reservationRepository.save(booked)).join();
+            }
+            return realMethod.answer(invocation);
+        }).when(apartmentRepository).findByIdForUpdate(apartmentId);
+
+        // MySQL's default isolation, where a plain read before the lock would fix the snapshot
+        TransactionTemplate repeatableRead = new TransactionTemplate(transactionManager);
+        repeatableRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        repeatableRead.executeWithoutResult(status ->
+                paymentService.handleSuccessfulPayment(lapsed.getId(), "cs_late", "pi_late"));
+        reset(apartmentRepository);
+
+        assertEquals(ReservationStatus.CANCELLED, reservationRepository.findById(lapsed.getId()).orElseThrow().getStatus());
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(booked.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(PaymentStatus.REFUND_REQUIRED), paymentRepository.findAll().stream()
+                .filter(p -> lapsed.getId().equals(p.getReservationId()))
+                .map(Payment::getStatus)
+                .toList());
+    }
+
+    private CreateReservationRequest request() {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Guest");
+        guest.setLastName("Test");
+        guest.setEmail("guest@example.com");
+        guest.setPhone("+381600000000");
+
+        CreateReservationRequest request = new CreateReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkOut);
+        request.setGuests(2);
+        request.setTotalPrice(new BigDecimal("240.00"));
+        request.setGuestInformation(guest);
+        return request;
+    }
+}
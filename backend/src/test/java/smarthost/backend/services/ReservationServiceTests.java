@@ -0,0 +1,164 @@
+package smarthost.backend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.model.GuestInformation;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.ImportReservationRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class ReservationServiceTests {
+
+    private static final int RESERVATIONS = 5;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long ownerId;
+    private Long clientId;
+    private Long apartmentId;
+
+    @BeforeEach
+    void createReservations() {
+        ownerId = fixtures.user("owner").getId();
+        clientId = fixtures.user("client").getId();
+        apartmentId = fixtures.apartment(ownerId, "Reservation test apartment").getId();
+
+        LocalDate checkIn = LocalDate.now().plusDays(100);
+        for (int i = 0; i < RESERVATIONS; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setApartmentId(apartmentId);
+            reservation.setClientId(clientId);
+            reservation.setCheckIn(checkIn.plusDays(i * 3L));
+            reservation.setCheckOut(checkIn.plusDays(i * 3L + 2));
+            reservation.setGuests(2);
+            reservation.setTotalPrice(new BigDecimal("160.00"));
+            reservation.setStatus(ReservationStatus.CONFIRMED);
+            Reservation saved = reservationRepository.save(reservation);
+
+            // The last reservation has no guest information
+            if (i < RESERVATIONS - 1) {
+                GuestInformation guest = new GuestInformation();
+                guest.setReservationId(saved.getId());
+                guest.setFirstName("Guest" + i);
+                guest.setLastName("Test");
+                guest.setEmail("guest" + i + "@example.com");
+                guest.setPhone("+381600000" + i);
+                saved.setGuestInformation(guest);
+                reservationRepository.save(saved);
+            }
+        }
+    }
+
+    @Test
+    void getReservationsByOwnerUsesSingleQuery() {
+        Statistics statistics = statistics();
+
+        List<ReservationDto> reservations = reservationService.getReservationsByOwner(ownerId);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(RESERVATIONS, reservations.size());
+        assertEquals(RESERVATIONS - 1,
+                reservations.stream().filter(r -> r.getGuestInformation() != null).count());
+        reservations.stream()
+                .filter(r -> r.getGuestInformation() != null)
+                .forEach(r -> assertEquals("Test", r.getGuestInformation().getLastName()));
+    }
+
+    @Test
+    void getReservationsByClientUsesSingleQuery() {
+        Statistics statistics = statistics();
+
+        List<ReservationDto> reservations = reservationService.getReservationsByClient(clientId);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(RESERVATIONS, reservations.size());
+        reservations.forEach(r -> assertEquals(ReservationStatus.CONFIRMED, r.getStatus()));
+    }
+
+    @Test
+    void importWritesReservationsInBatches() {
+        int rows = 120;
+        List<ImportReservationRequest> requests = new ArrayList<>();
+        LocalDate checkIn = LocalDate.now().plusDays(500);
+        for (int i = 0; i < rows; i++) {
+            requests.add(importRow(checkIn.plusDays(i * 2L), checkIn.plusDays(i * 2L + 2)));
+        }
+        Statistics statistics = statistics();
+
+        List<Long> ids = reservationService.importReservations(requests);
+
+        assertEquals(rows, ids.size());
+        assertEquals(rows * 2L, statistics.getEntityInsertCount());
+        // 240 rows inserted, but each JDBC batch is prepared once
+        assertTrue(statistics.getPrepareStatementCount() < rows,
+                () -> "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(RESERVATIONS + rows, reservationService.getReservationsByApartment(apartmentId).size());
+    }
+
+    @Test
+    void importRejectsOverlappingStayAndWritesNothing() {
+        LocalDate free = LocalDate.now().plusDays(300);
+        List<ImportReservationRequest> requests = List.of(
+                importRow(free, free.plusDays(2)),
+                importRow(LocalDate.now().plusDays(101), LocalDate.now().plusDays(103)));
+
+        assertThrows(IllegalArgumentException.class, () -> reservationService.importReservations(requests));
+
+        assertEquals(RESERVATIONS, fixtures.reservations(apartmentId).size());
+    }
+
+    private ImportReservationRequest importRow(LocalDate checkIn, LocalDate checkOut) {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Imported");
+        guest.setLastName("Guest");
+        guest.setEmail("imported@example.com");
+        guest.setPhone("+381600000000");
+
+        ImportReservationRequest request = new ImportReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkOut);
+        request.setGuests(2);
+        request.setTotalPrice(new BigDecimal("160.00"));
+        request.setGuestInformation(guest);
+        return request;
+    }
+
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
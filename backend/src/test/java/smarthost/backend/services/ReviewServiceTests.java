@@ -0,0 +1,261 @@
+package smarthost.backend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import smarthost.backend.dto.ApartmentDto;
+import smarthost.backend.dto.RatingSummaryDto;
+import smarthost.backend.dto.ReviewDto;
+import smarthost.backend.dto.ReviewSearchHitDto;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.exceptions.DuplicateReviewException;
+import smarthost.backend.model.GuestInformation;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.CreateReviewRequest;
+import smarthost.backend.response.ReviewPageResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class ReviewServiceTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private RatingStatsService ratingStatsService;
+
+    @Autowired
+    private ReviewSearchService reviewSearchService;
+
+    @Autowired
+    private ApartmentService apartmentService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long ownerId;
+    private Long clientId;
+    private Long apartmentId;
+
+    @BeforeEach
+    void createApartment() {
+        ownerId = fixtures.user("owner").getId();
+        clientId = fixtures.user("client").getId();
+        apartmentId = fixtures.apartment(ownerId, "Review test apartment").getId();
+    }
+
+    @Test
+    void reviewsKeepTheRatingAggregatesUpToDate() {
+        RatingSummaryDto empty = ratingStatsService.getSummary(apartmentId);
+        assertEquals(0, empty.getReviewCount());
+        assertNull(empty.getAverageRating());
+        assertEquals(0, apartmentService.getApartmentsByOwner(ownerId).get(0).getReviewCount());
+
+        reviewService.createReview(review(stay(0), 5));
+        reviewService.createReview(review(stay(1), 4));
+        reviewService.createReview(review(stay(2), 4));
+
+        RatingSummaryDto summary = ratingStatsService.getSummary(apartmentId);
+        assertEquals(3, summary.getReviewCount());
+        assertEquals(new BigDecimal("4.33"), summary.getAverageRating());
+        assertEquals(0, summary.getRatingCounts().get(1));
+        assertEquals(2, summary.getRatingCounts().get(4));
+        assertEquals(1, summary.getRatingCounts().get(5));
+
+        ApartmentDto apartment = apartmentService.getApartmentsByOwner(ownerId).get(0);
+        assertEquals(3, apartment.getReviewCount());
+        assertEquals(new BigDecimal("4.33"), apartment.getAverageRating());
+
+        // Rejected reviews leave the aggregates alone
+        Long reviewed = stay(3);
+        reviewService.createReview(review(reviewed, 1));
+        assertThrows(DuplicateReviewException.class, () -> reviewService.createReview(review(reviewed, 2)));
+        assertThrows(IllegalArgumentException.class, () -> reviewService.createReview(review(stay(4), 6)));
+        summary = ratingStatsService.getSummary(apartmentId);
+        assertEquals(4, summary.getReviewCount());
+        assertEquals(new BigDecimal("3.50"), summary.getAverageRating());
+        assertEquals(1, summary.getRatingCounts().get(1));
+        assertEquals(0, summary.getRatingCounts().get(2));
+
+        assertThrows(RuntimeException.class, () -> ratingStatsService.getSummary(-1L));
+    }
+
+    @Test
+    void createReviewInsertsAndReadsBackInFixedStatements() {
+        Long reservationId = stay(0);
+        Reservation reservation = reservationRepository.findById(reservationId).orElseThrow();
+        GuestInformation guest = new GuestInformation();
+        guest.setReservationId(reservationId);
+        guest.setFirstName("Ana");
+        guest.setLastName("Guest");
+        guest.setEmail("ana@example.com");
+        guest.setPhone("+381600000000");
+        reservation.setGuestInformation(guest);
+        reservationRepository.save(reservation);
+        reviewService.createReview(review(stay(1), 3)); // The apartment's stats row exists from here on
+
+        Statistics statistics = statistics();
+        CreateReviewRequest request = review(reservationId, 5);
+        request.setClientId(null); // Taken from the reservation
+        ReviewDto dto = reviewService.createReview(request);
+
+        // client id, review insert, rating aggregate update, one joined read
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(clientId, dto.getClientId());
+        assertEquals("Review test apartment", dto.getApartment().getName());
+        assertEquals("client", dto.getClient().getFirstName());
+        assertEquals("Ana", dto.getReservation().getGuestInformation().getFirstName());
+
+        statistics = statistics();
+        assertThrows(DuplicateReviewException.class, () -> reviewService.createReview(review(reservationId, 4)));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, ratingStatsService.getSummary(apartmentId).getReviewCount());
+    }
+
+    @Test
+    void reviewPagesWalkEachSortOrderInOneQueryPerPage() {
+        int[] ratings = {3, 5, 1, 5, 4, 2, 3};
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < ratings.length; i++) {
+            created.add(reviewService.createReview(review(stay(i), ratings[i])).getId());
+        }
+
+        Statistics statistics = statistics();
+        ReviewPageResponse first = reviewService.getPage(apartmentId, null, null, 3, null);
+        // A single joined select, whatever the page holds
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(3, first.getItems().size());
+        assertTrue(first.isHasMore());
+        assertEquals("client", first.getItems().get(0).getClient().getFirstName());
+        assertEquals("Review test apartment", first.getItems().get(0).getApartment().getName());
+
+        List<Long> newest = ids(walk(apartmentId, null, "newest", 3));
+        assertEquals(created.size(), newest.size());
+        assertEquals(created.get(created.size() - 1), newest.get(0)); // Same created_at falls back to id
+        assertEquals(ids(walk(apartmentId, null, "newest", 100)), newest);
+        assertEquals(newest, ids(walk(null, clientId, "newest", 2)));
+
+        assertEquals(List.of(5, 5, 4, 3, 3, 2, 1), ratings(walk(apartmentId, null, "highest", 2)));
+        assertEquals(List.of(1, 2, 3, 3, 4, 5, 5), ratings(walk(apartmentId, null, "lowest", 4)));
+        assertEquals(5, reviewService.getById(newest.get(3)).getRating());
+
+        ReviewPageResponse byRating = reviewService.getPage(apartmentId, null, "highest", 2, null);
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.getPage(apartmentId, null, "newest", 2, byRating.getNextCursor()));
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.getPage(apartmentId, null, "newest", 2, "not-a-cursor"));
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.getPage(apartmentId, null, "oldest", 2, null));
+    }
+
+    @Test
+    void searchRanksStemmedKeywordMatchesAndFiltersByApartment() {
+        Long parkingOnly = reviewService.createReview(
+                comment(stay(0), "Parking was easy, we parked right by the entrance")).getId();
+        Long mixed = reviewService.createReview(
+                comment(stay(1), "Lovely view but the street noise kept us up. Parking spot in the garage")).getId();
+        reviewService.createReview(comment(stay(2), "Spotless kitchen and friendly host"));
+
+        Long otherId = fixtures.apartment(ownerId, "Second apartment").getId();
+        Long elsewhere = stay(3);
+        reservationRepository.findById(elsewhere).ifPresent(reservation -> {
+            reservation.setApartmentId(otherId);
+            reservationRepository.save(reservation);
+        });
+        CreateReviewRequest noisy = comment(elsewhere, "Noisy neighbours, noises all night");
+        noisy.setApartmentId(otherId);
+        Long noisyId = reviewService.createReview(noisy).getId();
+
+        List<ReviewSearchHitDto> parking = reviewSearchService.search("PARKING", null, 10);
+        assertEquals(List.of(parkingOnly, mixed), parking.stream().map(hit -> hit.getReview().getId()).toList());
+        assertTrue(parking.get(0).getScore() > parking.get(1).getScore());
+        assertEquals("Review test apartment", parking.get(0).getReview().getApartment().getName());
+
+        List<ReviewSearchHitDto> noise = reviewSearchService.search("noise", null, 10);
+        assertEquals(List.of(noisyId, mixed), noise.stream().map(hit -> hit.getReview().getId()).toList());
+        assertEquals(List.of(mixed), reviewSearchService.search("noise", List.of(apartmentId), 10).stream()
+                .map(hit -> hit.getReview().getId()).toList());
+        assertEquals(1, reviewSearchService.search("parking noise", null, 1).size());
+        assertTrue(reviewSearchService.search("the and", null, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> reviewSearchService.search(" ", null, 10));
+    }
+
+    private CreateReviewRequest comment(Long reservationId, String text) {
+        CreateReviewRequest request = review(reservationId, 4);
+        request.setComment(text);
+        return request;
+    }
+
+    private List<ReviewDto> walk(Long apartment, Long client, String sort, int limit) {
+        List<ReviewDto> items = new ArrayList<>();
+        String cursor = null;
+        ReviewPageResponse page;
+        do {
+            page = reviewService.getPage(apartment, client, sort, limit, cursor);
+            assertFalse(page.getItems().size() > limit);
+            items.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (page.isHasMore());
+        return items;
+    }
+
+    private static List<Long> ids(List<ReviewDto> reviews) {
+        return reviews.stream().map(ReviewDto::getId).toList();
+    }
+
+    private static List<Integer> ratings(List<ReviewDto> reviews) {
+        return reviews.stream().map(ReviewDto::getRating).toList();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private Long stay(int index) {
+        LocalDate checkIn = LocalDate.now().minusDays(60).plusDays(index * 3L);
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(apartmentId);
+        reservation.setClientId(clientId);
+        reservation.setCheckIn(checkIn);
+        reservation.setCheckOut(checkIn.plusDays(2));
+        reservation.setGuests(2);
+        reservation.setTotalPrice(new BigDecimal("160.00"));
+        reservation.setStatus(ReservationStatus.CONFIRMED);
+        return reservationRepository.save(reservation).getId();
+    }
+
+    private CreateReviewRequest review(Long reservationId, int rating) {
+        CreateReviewRequest request = new CreateReviewRequest();
+        request.setReservationId(reservationId);
+        request.setApartmentId(apartmentId);
+        request.setClientId(clientId);
+        request.setRating(rating);
+        request.setComment("Stay " + reservationId);
+        return request;
+    }
+}
@@ -0,0 +1,149 @@
+package smarthost.backend.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import smarthost.backend.dto.GuestInformationDto;
+import smarthost.backend.dto.ReservationDto;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.requests.CreateReservationRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Booking against a local HTTP stub standing in for the Stripe API.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+class StripeCheckoutTests {
+
+    private static final HttpServer STRIPE_STUB = startStub();
+    // "<path> <Idempotency-Key>" of every request the stub received
+    private static final Queue<String> STUB_REQUESTS = new ConcurrentLinkedQueue<>();
+    private static volatile long stubDelayMs;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private Long apartmentId;
+
+    @DynamicPropertySource
+    static void stripeProperties(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api.base", () -> "http://localhost:" + STRIPE_STUB.getAddress().getPort());
+        registry.add("stripe.checkout.timeout-ms", () -> "500");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STRIPE_STUB.stop(0);
+    }
+
+    @BeforeEach
+    void createApartment() {
+        stubDelayMs = 0;
+        STUB_REQUESTS.clear();
+
+        apartmentId = fixtures.apartment("Checkout test apartment").getId();
+    }
+
+    @Test
+    void bookingAttachesCheckoutSession() throws Exception {
+        ReservationDto reservation = reservationService.createReservation(request());
+
+        assertEquals("https://checkout.stripe.test/cs_test_stub", reservation.getCheckoutUrl());
+        Reservation stored = reservationRepository.findById(reservation.getId()).orElseThrow();
+        assertEquals("cs_test_stub", stored.getStripeSessionId());
+        assertEquals(List.of("/v1/checkout/sessions checkout-" + reservation.getId()), List.copyOf(STUB_REQUESTS));
+    }
+
+    @Test
+    void slowStripeReleasesHoldAndExpiresLateSession() throws Exception {
+        stubDelayMs = 2000;
+
+        assertThrows(RuntimeException.class, () -> reservationService.createReservation(request()));
+
+        assertFalse(fixtures.reservations(apartmentId).stream().findAny().isPresent());
+        // The session Stripe creates after the timeout is expired, not left open for payment
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (STUB_REQUESTS.stream().noneMatch(r -> r.startsWith("/v1/checkout/sessions/cs_test_stub/expire"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(STUB_REQUESTS.stream().anyMatch(r -> r.startsWith("/v1/checkout/sessions/cs_test_stub/expire")));
+        assertTrue(STUB_REQUESTS.stream().anyMatch(r -> r.matches("/v1/checkout/sessions checkout-\\d+")));
+    }
+
+    private CreateReservationRequest request() {
+        GuestInformationDto guest = new GuestInformationDto();
+        guest.setFirstName("Guest");
+        guest.setLastName("Test");
+        guest.setEmail("guest@example.com");
+        guest.setPhone("+381600000000");
+
+        LocalDate checkIn = LocalDate.now().plusDays(60);
+        CreateReservationRequest request = new CreateReservationRequest();
+        request.setApartmentId(apartmentId);
+        request.setCheckIn(checkIn);
+        request.setCheckOut(checkIn.plusDays(2));
+        request.setGuests(2);
+        request.setTotalPrice(new BigDecimal("160.00"));
+        request.setGuestInformation(guest);
+        return request;
+    }
+
+    private static HttpServer startStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/checkout/sessions", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                STUB_REQUESTS.add(path + " " + exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+                if (path.equals("/v1/checkout/sessions")) {
+                    try {
+                        Thread.sleep(stubDelayMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = ("{\"id\":\"cs_test_stub\",\"object\":\"checkout.session\","
+                        + "\"url\":\"https://checkout.stripe.test/cs_test_stub\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package smarthost.backend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import smarthost.backend.enums.PaymentStatus;
+import smarthost.backend.enums.ReservationStatus;
+import smarthost.backend.enums.StripeEventStatus;
+import smarthost.backend.model.Payment;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.model.StripeEvent;
+import smarthost.backend.repository.PaymentRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.repository.StripeEventRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Replays recorded Stripe webhook payloads, signed with the test webhook secret, against the endpoint.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class StripeWebhookTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @MockitoSpyBean
+    private StripeEventRepository stripeEventRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Value("${stripe.webhook.secret}")
+    private String webhookSecret;
+
+    private Long apartmentId;
+
+    @BeforeEach
+    void createApartment() {
+        apartmentId = fixtures.apartment("Webhook test apartment").getId();
+    }
+
+    @Test
+    void completedSessionConfirmsOnceDespiteRedelivery() throws Exception {
+        Reservation hold = saveHold(LocalDate.now().plusDays(150));
+        String eventId = "evt_completed_" + hold.getId();
+        String payload = recordedEvent("checkout.session.completed", eventId, hold.getId());
+
+        deliver(payload).andExpect(status().isOk()).andExpect(content().string("Webhook received"));
+        deliver(payload).andExpect(status().isOk()).andExpect(content().string("Duplicate event"));
+
+        awaitTrue(() -> stripeEventRepository.findById(eventId)
+                .map(e -> e.getStatus() == StripeEventStatus.PROCESSED).orElse(false));
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(hold.getId()).orElseThrow().getStatus());
+        List<Payment> payments = paymentRepository.findAll().stream()
+                .filter(p -> hold.getId().equals(p.getReservationId())).toList();
+        assertEquals(1, payments.size());
+        assertEquals("pi_3QfYz6Lk3mP9cW2x0AbCdEfG", payments.get(0).getStripePaymentIntentId());
+    }
+
+    @Test
+    void expiredAndFailedCheckoutsReleaseHoldsInBulk() throws Exception {
+        LocalDate expiredCheckIn = LocalDate.now().plusDays(160);
+        LocalDate failedCheckIn = LocalDate.now().plusDays(170);
+        Reservation expired = saveHold(expiredCheckIn);
+        Reservation failed = saveHold(failedCheckIn);
+        Reservation paid = saveHold(LocalDate.now().plusDays(180));
+        paid.setStatus(ReservationStatus.CONFIRMED);
+        paid.setHoldExpiresAt(null);
+        reservationRepository.save(paid);
+        List.of(expired, failed, paid).forEach(availabilityIndexService::markOccupied);
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, expiredCheckIn, expiredCheckIn.plusDays(2)));
+
+        // Stripe only reports a failed delayed payment after completing the checkout as unpaid
+        String unpaidEventId = "evt_unpaid_" + failed.getId();
+        deliver(recordedEvent("checkout.session.completed.unpaid", unpaidEventId, failed.getId())).andExpect(status().isOk());
+        awaitStatus(unpaidEventId, StripeEventStatus.IGNORED);
+        assertEquals(ReservationStatus.PENDING, reservationRepository.findById(failed.getId()).orElseThrow().getStatus());
+
+        List<String> eventIds = List.of("evt_expired_" + expired.getId(), "evt_failed_" + failed.getId(),
+                "evt_late_expiry_" + paid.getId());
+        deliver(recordedEvent("checkout.session.expired", eventIds.get(0), expired.getId())).andExpect(status().isOk());
+        deliver(recordedEvent("checkout.session.async_payment_failed", eventIds.get(1), failed.getId())).andExpect(status().isOk());
+        deliver(recordedEvent("checkout.session.expired", eventIds.get(2), paid.getId())).andExpect(status().isOk());
+
+        awaitTrue(() -> eventIds.stream().allMatch(id -> stripeEventRepository.findById(id)
+                .map(e -> e.getStatus() == StripeEventStatus.PROCESSED).orElse(false)));
+        assertFalse(reservationRepository.existsById(expired.getId()));
+        assertFalse(reservationRepository.existsById(failed.getId()));
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(paid.getId()).orElseThrow().getStatus());
+        assertEquals(Optional.of(true), availabilityIndexService.isAvailable(apartmentId, expiredCheckIn, expiredCheckIn.plusDays(2)));
+        assertEquals(Optional.of(true), availabilityIndexService.isAvailable(apartmentId, failedCheckIn, failedCheckIn.plusDays(2)));
+    }
+
+    @Test
+    void delayedPaymentConfirmsOnlyWhenItSucceeds() throws Exception {
+        Reservation hold = saveHold(LocalDate.now().plusDays(210));
+        String unpaidEventId = "evt_unpaid_" + hold.getId();
+        String succeededEventId = "evt_async_paid_" + hold.getId();
+
+        deliver(recordedEvent("checkout.session.completed.unpaid", unpaidEventId, hold.getId())).andExpect(status().isOk());
+        awaitStatus(unpaidEventId, StripeEventStatus.IGNORED);
+        assertEquals(ReservationStatus.PENDING, reservationRepository.findById(hold.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(), paymentStatuses(hold.getId()));
+
+        deliver(recordedEvent("checkout.session.async_payment_succeeded", succeededEventId, hold.getId()))
+                .andExpect(status().isOk());
+        awaitStatus(succeededEventId, StripeEventStatus.PROCESSED);
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(hold.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(PaymentStatus.PAID), paymentStatuses(hold.getId()));
+    }
+
+    @Test
+    void lateCompletedEventForRebookedNightsIsRefundedNotConfirmed() throws Exception {
+        LocalDate checkIn = LocalDate.now().plusDays(190);
+        Reservation lapsed = saveHold(checkIn);
+        lapsed.setHoldExpiresAt(LocalDateTime.now().minusMinutes(1));
+        reservationRepository.save(lapsed);
+        // Another guest booked the nights once the lease lapsed
+        Reservation rebooked = saveHold(checkIn);
+        rebooked.setStatus(ReservationStatus.CONFIRMED);
+        rebooked.setHoldExpiresAt(null);
+        availabilityIndexService.markOccupied(reservationRepository.save(rebooked));
+        // A lapsed hold whose nights are still free can still be paid for
+        LocalDate freeCheckIn = LocalDate.now().plusDays(200);
+        Reservation lapsedButFree = saveHold(freeCheckIn);
+        lapsedButFree.setHoldExpiresAt(LocalDateTime.now().minusMinutes(1));
+        reservationRepository.save(lapsedButFree);
+
+        List<String> eventIds = List.of("evt_late_" + lapsed.getId(), "evt_late_" + lapsedButFree.getId());
+        deliver(recordedEvent("checkout.session.completed", eventIds.get(0), lapsed.getId())).andExpect(status().isOk());
+        deliver(recordedEvent("checkout.session.completed", eventIds.get(1), lapsedButFree.getId())).andExpect(status().isOk());
+
+        awaitTrue(() -> eventIds.stream().allMatch(id -> stripeEventRepository.findById(id)
+                .map(e -> e.getStatus() == StripeEventStatus.PROCESSED).orElse(false)));
+        assertEquals(ReservationStatus.CANCELLED, reservationRepository.findById(lapsed.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(PaymentStatus.REFUND_REQUIRED), paymentStatuses(lapsed.getId()));
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(rebooked.getId()).orElseThrow().getStatus());
+        assertEquals(Optional.of(false), availabilityIndexService.isAvailable(apartmentId, checkIn, checkIn.plusDays(2)));
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findById(lapsedButFree.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(PaymentStatus.PAID), paymentStatuses(lapsedButFree.getId()));
+    }
+
+    @Test
+    void eventForMissingReservationFailsWithoutRetries() throws Exception {
+        String eventId = "evt_missing_reservation";
+        deliver(recordedEvent("checkout.session.completed", eventId, 987_654_321L)).andExpect(status().isOk());
+
+        awaitStatus(eventId, StripeEventStatus.FAILED);
+        StripeEvent stored = stripeEventRepository.findById(eventId).orElseThrow();
+        assertEquals(5, stored.getAttempts());
+        assertEquals("Reservation not found", stored.getLastError());
+    }
+
+    @Test
+    void otherIntegrityViolationsAreNotTakenForRedelivery() throws Exception {
+        Reservation hold = saveHold(LocalDate.now().plusDays(220));
+        String eventId = "evt_too_long_" + hold.getId();
+        doThrow(new DataIntegrityViolationException("Data too long for column 'type'"))
+                .when(stripeEventRepository).insertReceived(eq(eventId), any(), any(), any(), any());
+
+        // Not stored, so Stripe must be told to deliver it again
+        deliver(recordedEvent("checkout.session.completed", eventId, hold.getId()))
+                .andExpect(status().isInternalServerError());
+        assertFalse(stripeEventRepository.existsById(eventId));
+    }
+
+    @Test
+    void rejectsBadSignature() throws Exception {
+        String payload = recordedEvent("checkout.session.completed", "evt_forged", 1L);
+
+        mockMvc.perform(post("/webhooks/stripe")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", "t=1,v1=deadbeef")
+                        .content(payload))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Reservation saveHold(LocalDate checkIn) {
+        Reservation reservation = new Reservation();
+        reservation.setApartmentId(apartmentId);
+        reservation.setCheckIn(checkIn);
+        reservation.setCheckOut(checkIn.plusDays(2));
+        reservation.setGuests(2);
+        reservation.setTotalPrice(new BigDecimal("160.00"));
+        reservation.setStatus(ReservationStatus.PENDING);
+        reservation.setHoldExpiresAt(LocalDateTime.now().plusMinutes(30));
+        return reservationRepository.save(reservation);
+    }
+
+    private List<PaymentStatus> paymentStatuses(Long reservationId) {
+        return paymentRepository.findAll().stream()
+                .filter(p -> reservationId.equals(p.getReservationId()))
+                .map(Payment::getStatus)
+                .toList();
+    }
+
+    private void awaitStatus(String eventId, StripeEventStatus expected) throws InterruptedException {
+        awaitTrue(() -> stripeEventRepository.findById(eventId).map(e -> e.getStatus() == expected).orElse(false));
+    }
+
+    /**
+     * A recorded payload from src/test/resources/stripe, named after its event type plus an
+     * optional variant, e.g. "checkout.session.completed.unpaid".
+     */
+    private String recordedEvent(String recording, String eventId, Long reservationId) throws Exception {
+        String recorded = new ClassPathResource("stripe/" + recording + ".json")
+                .getContentAsString(StandardCharsets.UTF_8);
+        return recorded
+                .replaceFirst("\"id\": \"evt_[A-Za-z0-9]+\"", "\"id\": \"" + eventId + "\"")
+                .replace("{{reservationId}}", reservationId.toString());
+    }
+
+    private ResultActions deliver(String payload) throws Exception {
+        return mockMvc.perform(post("/webhooks/stripe")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Stripe-Signature", sign(payload))
+                .content(payload));
+    }
+
+    /**
+     * Stripe-Signature header as Stripe computes it: HMAC-SHA256 of "timestamp.payload".
+     */
+    private String sign(String payload) throws Exception {
+        long timestamp = System.currentTimeMillis() / 1000;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for event processing");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package smarthost.backend.services;
+
+import org.springframework.boot.test.context.TestComponent;
+import smarthost.backend.model.Apartment;
+import smarthost.backend.model.Reservation;
+import smarthost.backend.model.User;
+import smarthost.backend.repository.ApartmentRepository;
+import smarthost.backend.repository.ReservationRepository;
+import smarthost.backend.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Users and apartments the service tests build on. Import it with {@code @Import(TestFixtures.class)}.
+ */
+@TestComponent
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final ReservationRepository reservationRepository;
+
+    public TestFixtures(UserRepository userRepository, ApartmentRepository apartmentRepository,
+                        ReservationRepository reservationRepository) {
+        this.userRepository = userRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.reservationRepository = reservationRepository;
+    }
+
+    /**
+     * A user with a unique email and the given first name.
+     */
+    public User user(String firstName) {
+        User user = new User();
+        user.setEmail(firstName.toLowerCase() + System.nanoTime() + "@example.com");
+        user.setPassword("secret");
+        user.setFirstName(firstName);
+        user.setLastName("Test");
+        return userRepository.save(user);
+    }
+
+    /**
+     * An apartment for four guests at 80.00 a night, owned by the given user.
+     */
+    public Apartment apartment(Long ownerId, String name) {
+        Apartment apartment = new Apartment();
+        apartment.setOwnerId(ownerId);
+        apartment.setName(name);
+        apartment.setAddress("Street 1");
+        apartment.setCity("Belgrade");
+        apartment.setMaxGuests(4);
+        apartment.setBasePrice(new BigDecimal("80.00"));
+        return apartmentRepository.save(apartment);
+    }
+
+    /**
+     * An apartment with a new owner.
+     */
+    public Apartment apartment(String name) {
+        return apartment(user("Owner").getId(), name);
+    }
+
+    /**
+     * Every reservation of an apartment, whatever its status.
+     */
+    public List<Reservation> reservations(Long apartmentId) {
+        return reservationRepository.findAll().stream()
+                .filter(reservation -> apartmentId.equals(reservation.getApartmentId()))
+                .toList();
+    }
+}